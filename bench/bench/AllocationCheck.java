@@ -0,0 +1,119 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import com.sun.management.ThreadMXBean;
+
+import projects.bstOpticalNet.nodes.nodeImplementations.NetworkNode;
+import projects.cbOptNet.CustomGlobal;
+import projects.cbOptNet.nodes.nodeImplementations.CBNetController;
+
+/**
+ * The AllocationCheck verifies that the controller rounds do not allocate once the simulation
+ * reaches its steady state. It runs a batch simulation of the cbOptNet project in this JVM,
+ * with a CBNetController whose controllerStep measures, with the ThreadMXBean, the bytes
+ * allocated by the simulation thread. The first WARMUP_ROUNDS rounds, where the pools and
+ * buffers grow to their working size, are not measured. When the simulation exits the mean
+ * and the largest bytes per round are printed, and the exit status is 1 if the mean exceeds
+ * the given limit. The rounds that alter links still build the lines of the csv logs, so a
+ * few bytes per round remain, while a single object allocated every round already costs 16
+ * bytes. The threads of the controller shards are not measured, so the check is meant for the
+ * sequential commit.
+ * <pre>
+ *  java -cp binaries/bin:binaries/bench:binaries/jdom.jar bench.AllocationCheck maxBytesPerRound [parameters]
+ * </pre>
+ */
+public class AllocationCheck {
+
+    private static final long WARMUP_ROUNDS = 100;
+
+    /* Attributes */
+    private static ThreadMXBean threadBean = null;
+    private static long maxBytesPerRound = 0;
+
+    private static long measuredRounds = 0;
+    private static long totalBytes = 0;
+    private static long maxBytes = 0;
+    private static long maxRound = -1;
+    /* End of Attributes */
+
+    /**
+     * CBNetController measuring the bytes allocated by each of its controllerSteps.
+     */
+    private static class MeasuredController extends CBNetController {
+
+        public MeasuredController (
+            int numNodes, int switchSize, ArrayList<NetworkNode> netNodes, boolean mirrored
+        ) {
+            super(numNodes, switchSize, netNodes, mirrored);
+        }
+
+        @Override
+        public void controllerStep () {
+            long start = threadBean.getCurrentThreadAllocatedBytes();
+            super.controllerStep();
+            long bytes = threadBean.getCurrentThreadAllocatedBytes() - start;
+
+            long round = this.getCurrentRound();
+            if (round < WARMUP_ROUNDS) {
+                return;
+
+            }
+
+            measuredRounds++;
+            totalBytes += bytes;
+            if (bytes > maxBytes) {
+                maxBytes = bytes;
+                maxRound = round;
+
+            }
+        }
+    }
+
+    /**
+     * Prints the measured rounds, halting the JVM with status 1 if they allocated more than
+     * the limit on average. Runs on the shutdown of the simulation.
+     */
+    private static void report () {
+        double meanBytes = (measuredRounds == 0 ? 0 : (double) totalBytes / measuredRounds);
+        System.out.println(
+            "allocation check: " + measuredRounds + " rounds measured, " +
+            String.format("%.2f", meanBytes) + " bytes per round (limit " + maxBytesPerRound +
+            "), max " + maxBytes + " bytes on round " + maxRound
+        );
+
+        if (measuredRounds == 0 || meanBytes > maxBytesPerRound) {
+            Runtime.getRuntime().halt(1);
+
+        }
+    }
+
+    public static void main (String[] args) {
+        if (args.length < 1) {
+            System.out.println("usage: AllocationCheck maxBytesPerRound [sinalgo parameters]");
+            System.exit(1);
+
+        }
+
+        threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            System.out.println("allocation check: the JVM does not measure thread allocations");
+            System.exit(1);
+
+        }
+
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        maxBytesPerRound = Long.parseLong(args[0]);
+
+        String[] sinalgoArgs = new String[args.length + 2];
+        sinalgoArgs[0] = "-batch";
+        sinalgoArgs[1] = "-project";
+        sinalgoArgs[2] = "cbOptNet";
+        System.arraycopy(args, 1, sinalgoArgs, 3, args.length - 1);
+
+        CustomGlobal.controllerFactory = MeasuredController::new;
+        Runtime.getRuntime().addShutdownHook(new Thread(AllocationCheck::report));
+        sinalgo.runtime.Main.main(sinalgoArgs);
+    }
+}
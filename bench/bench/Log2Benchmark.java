@@ -0,0 +1,118 @@
+package bench;
+
+import java.util.Random;
+
+import projects.cbOptNet.nodes.nodeImplementations.CBNetController;
+
+/**
+ * The Log2Benchmark compares the fastLog2 used by the CBNetController to rank the weights
+ * with the exact log2 it replaced. It first reports the largest absolute difference between
+ * the two over random weights up to 2^40 and a sweep of the weights up to 10^8, exiting with
+ * status 1 if it exceeds MAX_ERROR, the bound stated by fastLog2. Then it times both functions
+ * over the weights below the table size, which are looked up, and over the random weights up
+ * to 2^40, which are interpolated, reporting the nanoseconds per call of the last of
+ * REPETITIONS measures, the earlier ones warming the JIT up.
+ * <pre>
+ *  java -cp binaries/bin:binaries/bench bench.Log2Benchmark [seed]
+ * </pre>
+ */
+public class Log2Benchmark {
+
+    private static final int NUM_WEIGHTS = 1 << 20;
+    private static final int PASSES = 10;
+    private static final int REPETITIONS = 8;
+    private static final double MAX_ERROR = 5e-8;
+
+    private static double sink = 0;
+
+    /**
+     * Computes the largest absolute difference between fastLog2 and log2 over the weights and
+     * the sweep of the weights up to 10^8.
+     * @param weights   the weights
+     * @param random    the random source of the sweep steps
+     * @return          the largest absolute difference
+     */
+    private static double maxError (long[] weights, Random random) {
+        double maxError = 0;
+        for (long weight : weights) {
+            maxError = Math.max(
+                maxError, Math.abs(CBNetController.fastLog2(weight) - CBNetController.log2(weight))
+            );
+
+        }
+
+        for (long weight = 1; weight < 100_000_000L; weight += random.nextInt(1000) + 1) {
+            maxError = Math.max(
+                maxError, Math.abs(CBNetController.fastLog2(weight) - CBNetController.log2(weight))
+            );
+
+        }
+
+        return maxError;
+    }
+
+    /**
+     * Times PASSES passes of log2 or fastLog2 over the weights
+     * @param weights   the weights
+     * @param fast      true to time fastLog2, false to time log2
+     * @return          the nanoseconds per call
+     */
+    private static double time (long[] weights, boolean fast) {
+        double sum = 0;
+        long start = System.nanoTime();
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (long weight : weights) {
+                sum += (fast ? CBNetController.fastLog2(weight) : CBNetController.log2(weight));
+
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        sink += sum;
+
+        return (double) elapsed / ((long) PASSES * weights.length);
+    }
+
+    private static void report (String name, long[] weights) {
+        double log2Time = 0;
+        double fastLog2Time = 0;
+
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            log2Time = time(weights, false);
+            fastLog2Time = time(weights, true);
+
+        }
+
+        System.out.printf(
+            "%-10s log2 %6.2f ns/op   fastLog2 %6.2f ns/op%n", name, log2Time, fastLog2Time
+        );
+    }
+
+    public static void main (String[] args) {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+
+        long[] small = new long[NUM_WEIGHTS];
+        long[] large = new long[NUM_WEIGHTS];
+        for (int i = 0; i < NUM_WEIGHTS; i++) {
+            small[i] = random.nextInt(4096);
+            large[i] = (long) Math.pow(2, 40 * random.nextDouble());
+
+        }
+
+        double maxError = maxError(large, random);
+        System.out.printf("max abs error %.3e (bound %.0e)%n", maxError, MAX_ERROR);
+        if (maxError > MAX_ERROR) {
+            System.exit(1);
+
+        }
+
+        report("w < 2^12", small);
+        report("w < 2^40", large);
+
+        if (Double.isNaN(sink)) {
+            System.out.println("unexpected NaN");
+
+        }
+    }
+}
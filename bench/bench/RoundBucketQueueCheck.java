@@ -0,0 +1,230 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.TreeSet;
+
+import projects.bstOpticalNet.nodes.messages.HasMessage;
+import projects.bstOpticalNet.nodes.models.RoundBucketQueue;
+
+/**
+ * The RoundBucketQueueCheck compares the RoundBucketQueue with the TreeSet and PriorityQueue it
+ * replaced as the request registry of the NetworkController, using HasMessages as requests.
+ * First a fuzz applies the same random adds, removals and polls to a RoundBucketQueue and a
+ * TreeSet, comparing the size and the polled requests after every operation, and the full
+ * iteration order every 64 operations or while fewer than 16 requests are stored. The
+ * priorities are drawn from a few fractions of a round, so most requests tie on their
+ * priority and are ordered by their node id, and the rounds range far enough back and forth
+ * to grow and shift the ring. Any difference is printed and the exit status is 1.
+ * Then the three structures are timed on the controller pattern: every round the requests of
+ * the last ROUND_SPAN rounds are inserted, traversed once in order and drained with poll. The
+ * nanoseconds per request of the last of REPETITIONS measures are reported.
+ * <pre>
+ *  java -cp binaries/bin:binaries/bench bench.RoundBucketQueueCheck [seed]
+ * </pre>
+ */
+public class RoundBucketQueueCheck {
+
+    private static final int FUZZ_OPERATIONS = 2_000_000;
+    private static final int FUZZ_ROUNDS = 300;
+    private static final int FUZZ_FRACTIONS = 4;
+
+    private static final int NUM_REQUESTS = 1000;
+    private static final int ROUND_SPAN = 50;
+    private static final int NUM_ROUNDS = 20000;
+    private static final int REPETITIONS = 3;
+
+    private static long sink = 0;
+
+    /**
+     * Runs the fuzz against the TreeSet
+     * @param random    the random source
+     * @return          true if both structures agreed on every operation, false otherwise
+     */
+    private static boolean fuzz (Random random) {
+        RoundBucketQueue<HasMessage> queue = new RoundBucketQueue<>();
+        TreeSet<HasMessage> reference = new TreeSet<>();
+        ArrayList<HasMessage> stored = new ArrayList<>();
+
+        int nextId = 0;
+        for (int op = 0; op < FUZZ_OPERATIONS; op++) {
+            int action = random.nextInt(10);
+
+            if (action < 5 || stored.isEmpty()) {
+                double priority = (
+                    random.nextInt(FUZZ_ROUNDS) +
+                    (double) random.nextInt(FUZZ_FRACTIONS) / FUZZ_FRACTIONS
+                );
+                HasMessage msg = new HasMessage(nextId++, priority, 0);
+
+                queue.add(msg);
+                reference.add(msg);
+                stored.add(msg);
+
+            } else if (action < 8) {
+                int idx = random.nextInt(stored.size());
+                HasMessage msg = stored.get(idx);
+                stored.set(idx, stored.get(stored.size() - 1));
+                stored.remove(stored.size() - 1);
+
+                if (queue.remove(msg) != reference.remove(msg)) {
+                    System.out.println("fuzz: remove differs on operation " + op);
+                    return false;
+
+                }
+
+            } else {
+                HasMessage msg = queue.poll();
+                if (msg != reference.pollFirst()) {
+                    System.out.println("fuzz: poll differs on operation " + op);
+                    return false;
+
+                }
+
+                stored.remove(msg);
+            }
+
+            if (queue.size() != reference.size()) {
+                System.out.println("fuzz: size differs on operation " + op);
+                return false;
+
+            }
+
+            if (op % 64 == 0 || queue.size() < 16) {
+                Iterator<HasMessage> expected = reference.iterator();
+                for (HasMessage msg : queue) {
+                    if (msg != expected.next()) {
+                        System.out.println("fuzz: iteration differs on operation " + op);
+                        return false;
+
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the requests of the benchmark, each one created in one of the last ROUND_SPAN
+     * rounds before round 0
+     * @param random    the random source
+     * @return          the requests
+     */
+    private static HasMessage[] requests (Random random) {
+        HasMessage[] requests = new HasMessage[NUM_REQUESTS];
+        for (int i = 0; i < NUM_REQUESTS; i++) {
+            requests[i] = new HasMessage(i, -random.nextInt(ROUND_SPAN) + random.nextDouble(), 0);
+
+        }
+
+        return requests;
+    }
+
+    private static double timeBuckets (HasMessage[] requests) {
+        RoundBucketQueue<HasMessage> queue = new RoundBucketQueue<>();
+        long start = System.nanoTime();
+
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            for (HasMessage msg : requests) {
+                queue.add(msg);
+
+            }
+
+            for (HasMessage msg : queue) {
+                sink += msg.getCurrId();
+
+            }
+
+            while (!queue.isEmpty()) {
+                sink += queue.poll().getCurrId();
+
+            }
+        }
+
+        return (double) (System.nanoTime() - start) / ((long) NUM_ROUNDS * NUM_REQUESTS);
+    }
+
+    private static double timeTreeSet (HasMessage[] requests) {
+        TreeSet<HasMessage> queue = new TreeSet<>();
+        long start = System.nanoTime();
+
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            for (HasMessage msg : requests) {
+                queue.add(msg);
+
+            }
+
+            for (HasMessage msg : queue) {
+                sink += msg.getCurrId();
+
+            }
+
+            while (!queue.isEmpty()) {
+                sink += queue.pollFirst().getCurrId();
+
+            }
+        }
+
+        return (double) (System.nanoTime() - start) / ((long) NUM_ROUNDS * NUM_REQUESTS);
+    }
+
+    /**
+     * Times the PriorityQueue, whose iteration is not ordered, so the ordered traversal is
+     * the drain itself.
+     * @param requests  the requests inserted every round
+     * @return          the nanoseconds per request
+     */
+    private static double timePriorityQueue (HasMessage[] requests) {
+        PriorityQueue<HasMessage> queue = new PriorityQueue<>();
+        long start = System.nanoTime();
+
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            for (HasMessage msg : requests) {
+                queue.add(msg);
+
+            }
+
+            while (!queue.isEmpty()) {
+                sink += queue.poll().getCurrId();
+
+            }
+        }
+
+        return (double) (System.nanoTime() - start) / ((long) NUM_ROUNDS * NUM_REQUESTS);
+    }
+
+    public static void main (String[] args) {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 1);
+
+        if (!fuzz(random)) {
+            System.exit(1);
+
+        }
+        System.out.println("fuzz: " + FUZZ_OPERATIONS + " operations agree with TreeSet");
+
+        HasMessage[] requests = requests(random);
+        double buckets = 0;
+        double treeSet = 0;
+        double priorityQueue = 0;
+
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            buckets = timeBuckets(requests);
+            treeSet = timeTreeSet(requests);
+            priorityQueue = timePriorityQueue(requests);
+
+        }
+
+        System.out.printf(
+            "RoundBucketQueue %6.2f ns/op   TreeSet %6.2f ns/op   PriorityQueue %6.2f ns/op%n",
+            buckets, treeSet, priorityQueue
+        );
+
+        if (sink == 0) {
+            System.out.println("unexpected empty traversal");
+
+        }
+    }
+}
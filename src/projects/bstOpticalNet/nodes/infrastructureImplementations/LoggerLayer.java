@@ -43,6 +43,9 @@ public abstract class LoggerLayer extends SynchronizerLayer {
     private Logging simulationLog;
     private Logging operationsLog;
 
+    private String logPath;
+    private Logging potentialLog = null;
+
     public abstract int getNumNodes ();
 
     public abstract int getNumSwitches ();
@@ -151,6 +154,19 @@ public abstract class LoggerLayer extends SynchronizerLayer {
 
     }
 
+    /**
+     * Add delta to the number of active ports on the switch_swtid, standing for the
+     * activations and deactivations of the switch ports counted over a whole batch of
+     * link updates.
+     * @param swtId         the switch id
+     * @param delta         the change in active ports
+     */
+    public void logActivePortsDelta (int swtId, long delta) {
+        long value = this.activePortsPerSwitchRound.get(swtId);
+        this.activePortsPerSwitchRound.set(swtId, value + delta);
+
+    }
+
     /**
      * Increment the number of alterations performed on a given round, updating this counter
      * for the parent node, child node and switch involved. An alteration occurs when you remove
@@ -220,6 +236,30 @@ public abstract class LoggerLayer extends SynchronizerLayer {
 
     }
 
+    /**
+     * Logs the network potential at the end of a window of rounds, along with the actual cost
+     * of the window, its routing hops plus rotations, and its amortized cost, the actual cost
+     * plus the change in potential. The potential.csv file is created on the first call.
+     * @param potential     the potential at the end of the window
+     * @param hops          the routing hops of the messages completed in the window
+     * @param rotations     the rotations performed in the window
+     * @param amortizedCost the amortized cost of the window
+     */
+    public void logPotential (double potential, long hops, long rotations, double amortizedCost) {
+        if (this.potentialLog == null) {
+            this.potentialLog = Logging.getLogger(this.logPath + "/potential.csv");
+            this.potentialLog.logln(
+                "project,round,potential,routing_hops,rotations,actual_cost,amortized_cost"
+            );
+
+        }
+
+        this.potentialLog.logln(
+            this.projectName + "," + this.getCurrentRound() + "," + potential + "," + hops +
+            "," + rotations + "," + (hops + rotations) + "," + amortizedCost
+        );
+    }
+
     /* End of Setters Functions */
 
     /* Getters */
@@ -343,6 +383,7 @@ public abstract class LoggerLayer extends SynchronizerLayer {
      * @param path      path to folder where the logger files are stored
      */
     public void setLogPath (String path) {
+        this.logPath = path;
         this.rotationLog = Logging.getLogger(path + "/rotations.csv");
         this.routingLog = Logging.getLogger(path + "/routings.csv");
         this.alterationLog = Logging.getLogger(path + "/alterations.csv");
@@ -384,12 +425,22 @@ public abstract class LoggerLayer extends SynchronizerLayer {
      * Called by the end of round to reset round related information.
      */
     public void resetRoundInfo () {
-        this.activePortsPerSwitchRound = new ArrayList<>(
-            Collections.nCopies(this.getNumSwitches(), 0L)
-        );
-        this.roundAlterationsPerSwitch = new ArrayList<>(
-            Collections.nCopies(this.getNumSwitches(), 0L)
-        );
+        if (
+            this.activePortsPerSwitchRound == null ||
+            this.activePortsPerSwitchRound.size() != this.getNumSwitches()
+        ) {
+            this.activePortsPerSwitchRound = new ArrayList<>(
+                Collections.nCopies(this.getNumSwitches(), 0L)
+            );
+            this.roundAlterationsPerSwitch = new ArrayList<>(
+                Collections.nCopies(this.getNumSwitches(), 0L)
+            );
+
+        } else {
+            Collections.fill(this.activePortsPerSwitchRound, 0L);
+            Collections.fill(this.roundAlterationsPerSwitch, 0L);
+
+        }
 
         this.activeRequests = 0;
         this.currentRoundRotations = 0;
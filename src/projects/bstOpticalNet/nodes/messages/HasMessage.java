@@ -1,17 +1,27 @@
 package projects.bstOpticalNet.nodes.messages;
 
+import java.util.ArrayDeque;
+
+import projects.bstOpticalNet.nodes.models.Prioritized;
 import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.messages.TransferableMessage;
+import sinalgo.tools.Tools;
 
 /**
  * This message informs the controller which nodes want to rout a message
  * in one specific round, where that message is heading towards and the priority
  * of that message.
  */
-public class HasMessage extends Message implements Comparable<HasMessage>  {
+public class HasMessage extends Message implements Comparable<HasMessage>, Prioritized, TransferableMessage {
 
     private int dst;
     private int currId;
     private double priority;
+    private int slot = -1;
+
+    private boolean pooled = false;
+
+    private static ArrayDeque<HasMessage> freeMessages = new ArrayDeque<>();
 
     /**
      * Creates the HasMessage informing that the node with currId has a
@@ -26,6 +36,44 @@ public class HasMessage extends Message implements Comparable<HasMessage>  {
         this.priority = priority;
     }
 
+    /**
+     * Returns a HasMessage informing that the node with currId has a message with priority
+     * to send to the dst node, recycling a freed instance if there is one.
+     * @param currId    the id of the node with the message
+     * @param priority  the priority of the message
+     * @param dst       the id of the destination node
+     * @return          the HasMessage
+     */
+    public static HasMessage fabricate (int currId, double priority, int dst) {
+        HasMessage msg = freeMessages.poll();
+        if (msg == null) {
+            return new HasMessage(currId, priority, dst);
+
+        }
+
+        msg.pooled = false;
+        msg.dst = dst;
+        msg.currId = currId;
+        msg.priority = priority;
+
+        return msg;
+    }
+
+    /**
+     * Returns the HasMessage to the pool, called by the NetworkController once the request
+     * it announces is replaced or withdrawn. The message must not be referenced after this call.
+     * @param msg       the replaced HasMessage
+     */
+    public static void free (HasMessage msg) {
+        if (msg.pooled) {
+            Tools.fatalError("HasMessage freed more than once");
+
+        }
+
+        msg.pooled = true;
+        freeMessages.push(msg);
+    }
+
     /**
      * Getter for the id of the current node holder of the message
      * @return          the id of the node current holder of the message
@@ -35,13 +83,24 @@ public class HasMessage extends Message implements Comparable<HasMessage>  {
     }
 
     /**
-     * Getter for the message priority
+     * Getter for the message priority, used to schedule the request
      * @return          the message priority
      */
-    public double priority () {
+    @Override
+    public double getPriority () {
         return this.priority;
     }
 
+    @Override
+    public int getSlot () {
+        return this.slot;
+    }
+
+    @Override
+    public void setSlot (int slot) {
+        this.slot = slot;
+    }
+
     /**
      * Getter for the message destination node id
      * @return          the destination node id
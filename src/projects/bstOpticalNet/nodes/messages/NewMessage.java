@@ -1,15 +1,54 @@
 package projects.bstOpticalNet.nodes.messages;
 
+import java.util.ArrayDeque;
+
 import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.messages.TransferableMessage;
+import sinalgo.tools.Tools;
 
 /**
  * This message informs the controller a new message entered the network.
  * Used to increase number of active requests and active nodes.
  */
-public class NewMessage extends Message {
+public class NewMessage extends Message implements TransferableMessage {
+
+    private boolean pooled = false;
+
+    private static ArrayDeque<NewMessage> freeMessages = new ArrayDeque<>();
 
     public NewMessage () { }
 
+    /**
+     * Returns a NewMessage, recycling a freed instance if there is one.
+     * @return          the NewMessage
+     */
+    public static NewMessage fabricate () {
+        NewMessage msg = freeMessages.poll();
+        if (msg == null) {
+            return new NewMessage();
+
+        }
+
+        msg.pooled = false;
+
+        return msg;
+    }
+
+    /**
+     * Returns the NewMessage to the pool, called by the NetworkController once it has
+     * counted the message. The message must not be referenced after this call.
+     * @param msg       the consumed NewMessage
+     */
+    public static void free (NewMessage msg) {
+        if (msg.pooled) {
+            Tools.fatalError("NewMessage freed more than once");
+
+        }
+
+        msg.pooled = true;
+        freeMessages.push(msg);
+    }
+
     @Override
     public Message clone () {
         return this;
@@ -1,12 +1,13 @@
 package projects.bstOpticalNet.nodes.messages;
 
 import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.messages.TransferableMessage;
 
 /**
  * Message that will be routed along the network from the src node
  * up to it's destination dst
  */
-public class OpticalNetMessage extends Message implements Comparable<OpticalNetMessage> {
+public class OpticalNetMessage extends Message implements Comparable<OpticalNetMessage>, TransferableMessage {
 
     private int src;
     private int dst;
@@ -1,17 +1,28 @@
 package projects.bstOpticalNet.nodes.messages;
 
+import java.util.ArrayDeque;
+
+import projects.bstOpticalNet.nodes.models.Prioritized;
 import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.messages.TransferableMessage;
+import sinalgo.tools.Tools;
 
 /**
  * Message that informs the NetworkNodes how many times the OpticalNetMessage enclosed
  * should be routed, and where it should be routed to.
  */
-public class RoutingInfoMessage extends Message implements Comparable<RoutingInfoMessage> {
+public class RoutingInfoMessage extends Message implements Comparable<RoutingInfoMessage>, Prioritized, TransferableMessage {
 
     private int nodeId = -1;
     private int routNodeId = -1;
     private int routingTimes = 0;
+    private boolean cutThrough = false;
     private OpticalNetMessage routedMsg = null;
+    private int slot = -1;
+
+    private boolean pooled = false;
+
+    private static ArrayDeque<RoutingInfoMessage> freeMessages = new ArrayDeque<>();
 
     /**
      * Creates a message that should be routed routingTimes.
@@ -21,6 +32,47 @@ public class RoutingInfoMessage extends Message implements Comparable<RoutingInf
         this.routingTimes = routingTimes;
     }
 
+    /**
+     * Returns a message that should be routed routingTimes, recycling a freed instance
+     * if there is one.
+     * @param routingTimes  How many times this message should be routed.
+     * @return              the RoutingInfoMessage
+     */
+    public static RoutingInfoMessage fabricate (int routingTimes) {
+        RoutingInfoMessage msg = freeMessages.poll();
+        if (msg == null) {
+            return new RoutingInfoMessage(routingTimes);
+
+        }
+
+        msg.pooled = false;
+        msg.routingTimes = routingTimes;
+
+        return msg;
+    }
+
+    /**
+     * Returns the RoutingInfoMessage to the pool. Called when the message is discarded, either
+     * by the NetworkNode that received the last routing of the enclosed OpticalNetMessage or by
+     * the NetworkController when the routing was not allowed. The message must not be
+     * referenced after this call.
+     * @param msg           the discarded RoutingInfoMessage
+     */
+    public static void free (RoutingInfoMessage msg) {
+        if (msg.pooled) {
+            Tools.fatalError("RoutingInfoMessage freed more than once");
+
+        }
+
+        msg.nodeId = -1;
+        msg.routNodeId = -1;
+        msg.routingTimes = 0;
+        msg.cutThrough = false;
+        msg.routedMsg = null;
+        msg.pooled = true;
+        freeMessages.push(msg);
+    }
+
     /**
      * Sets the node id from the node owner of the message
      * @param nodeId        the nodeId for the holder node.
@@ -66,6 +118,25 @@ public class RoutingInfoMessage extends Message implements Comparable<RoutingInf
 
     }
 
+    /**
+     * Marks the message as a cut-through routing, in which the holder node routes it through
+     * all of its routingTimes hops in the same round.
+     * @param cutThrough    true if the message crosses every hop in one round
+     */
+    public void setCutThrough (boolean cutThrough) {
+        this.cutThrough = cutThrough;
+
+    }
+
+    /**
+     * Checks if the message is a cut-through routing
+     * @return  true if every hop is crossed in one round, false if one hop is crossed per round
+     */
+    public boolean isCutThrough () {
+        return this.cutThrough;
+
+    }
+
     /**
      * Getter for the id of the message holder node.
      * @return  the nodeId
@@ -115,18 +186,29 @@ public class RoutingInfoMessage extends Message implements Comparable<RoutingInf
      * Getter for the routed message priority
      * @return the routed message priority
      */
-    public double getMessagePriority () {
+    @Override
+    public double getPriority () {
         return this.routedMsg.getPriority();
 
     }
 
+    @Override
+    public int getSlot () {
+        return this.slot;
+    }
+
+    @Override
+    public void setSlot (int slot) {
+        this.slot = slot;
+    }
+
     /**
      * Comparator between two RoutingInfoMessage, first comparing its priority,
      * then its current holder node id.
      */
     @Override
     public int compareTo (RoutingInfoMessage o) {
-        int value = Double.compare(this.getMessagePriority(), o.getMessagePriority());
+        int value = Double.compare(this.getPriority(), o.getPriority());
         if (value == 0) { // In case tie, compare the id of the source node
             return this.nodeId - o.nodeId;
 
@@ -0,0 +1,75 @@
+package projects.bstOpticalNet.nodes.messages;
+
+import java.util.ArrayDeque;
+
+import sinalgo.nodes.messages.Message;
+import sinalgo.nodes.messages.TransferableMessage;
+import sinalgo.tools.Tools;
+
+/**
+ * This message informs the controller that a node no longer has a message waiting
+ * to perform a new operation, withdrawing the HasMessage it announced before.
+ */
+public class WithdrawMessage extends Message implements TransferableMessage {
+
+    private int currId;
+
+    private boolean pooled = false;
+
+    private static ArrayDeque<WithdrawMessage> freeMessages = new ArrayDeque<>();
+
+    /**
+     * Creates the WithdrawMessage for the node with currId
+     * @param currId    the id of the node withdrawing its request
+     */
+    public WithdrawMessage (int currId) {
+        this.currId = currId;
+    }
+
+    /**
+     * Returns a WithdrawMessage for the node with currId, recycling a freed instance
+     * if there is one.
+     * @param currId    the id of the node withdrawing its request
+     * @return          the WithdrawMessage
+     */
+    public static WithdrawMessage fabricate (int currId) {
+        WithdrawMessage msg = freeMessages.poll();
+        if (msg == null) {
+            return new WithdrawMessage(currId);
+
+        }
+
+        msg.pooled = false;
+        msg.currId = currId;
+
+        return msg;
+    }
+
+    /**
+     * Returns the WithdrawMessage to the pool, called by the NetworkController once it has
+     * removed the request. The message must not be referenced after this call.
+     * @param msg       the consumed WithdrawMessage
+     */
+    public static void free (WithdrawMessage msg) {
+        if (msg.pooled) {
+            Tools.fatalError("WithdrawMessage freed more than once");
+
+        }
+
+        msg.pooled = true;
+        freeMessages.push(msg);
+    }
+
+    /**
+     * Getter for the id of the node withdrawing its request
+     * @return          the id of the node
+     */
+    public int getCurrId () {
+        return this.currId;
+    }
+
+    @Override
+    public Message clone () {
+        return this;
+    }
+}
@@ -0,0 +1,303 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.util.Arrays;
+
+/**
+ * A ClusterBatch gathers the link alterations of one round that target the switches of a
+ * single cluster, so the NetworkController can apply them in one pass per cluster. The
+ * removed, swapped and added edges keep their relative order, and the links set on the
+ * switches while adding the edges are recorded in primitive arrays together with the change
+ * in active ports of every switch of the cluster. Batches of different clusters share no
+ * switch, so they can be applied independently.
+ */
+public class ClusterBatch {
+
+    /* Attributes */
+    private final int clusterId;
+    private boolean queued = false;
+
+    private Edge[] removals = new Edge[8];
+    private int numRemovals = 0;
+
+    private Edge[] doubleSwaps = new Edge[8];
+    private int numDoubleSwaps = 0;
+
+    private Edge[] additions = new Edge[8];
+    private int[] additionLinkStarts = new int[9];
+    private int numAdditions = 0;
+
+    private int[] linkFromIds = new int[8];
+    private int[] linkToIds = new int[8];
+    private int[] linkSwtOffsets = new int[8];
+    private boolean[] linkInitial = new boolean[8];
+    private int numLinks = 0;
+
+    private long[] portDeltas;
+    /* End of Attributes */
+
+    /**
+     * Creates the batch of the cluster clusterId, whose cluster holds numSwitches switches.
+     * @param clusterId     the cluster id
+     * @param numSwitches   the number of switches in the cluster
+     */
+    public ClusterBatch (int clusterId, int numSwitches) {
+        this.clusterId = clusterId;
+        this.portDeltas = new long[numSwitches];
+    }
+
+    /* Getters */
+
+    /**
+     * Getter for the cluster id of the batch
+     * @return          the cluster id
+     */
+    public int getClusterId () {
+        return this.clusterId;
+    }
+
+    /**
+     * Checks if the batch was already queued for the current round
+     * @return          true if it is queued, false otherwise
+     */
+    public boolean isQueued () {
+        return this.queued;
+    }
+
+    /**
+     * Getter for the number of removed edges
+     * @return          the number of removals
+     */
+    public int getNumRemovals () {
+        return this.numRemovals;
+    }
+
+    /**
+     * Getter for the i-th removed edge
+     * @param i         the position of the edge in the batch
+     * @return          the Edge
+     */
+    public Edge getRemoval (int i) {
+        return this.removals[i];
+    }
+
+    /**
+     * Getter for the number of double swapped edges
+     * @return          the number of double swaps
+     */
+    public int getNumDoubleSwaps () {
+        return this.numDoubleSwaps;
+    }
+
+    /**
+     * Getter for the i-th double swapped edge
+     * @param i         the position of the edge in the batch
+     * @return          the Edge
+     */
+    public Edge getDoubleSwap (int i) {
+        return this.doubleSwaps[i];
+    }
+
+    /**
+     * Getter for the number of added edges
+     * @return          the number of additions
+     */
+    public int getNumAdditions () {
+        return this.numAdditions;
+    }
+
+    /**
+     * Getter for the i-th added edge
+     * @param i         the position of the edge in the batch
+     * @return          the Edge
+     */
+    public Edge getAddition (int i) {
+        return this.additions[i];
+    }
+
+    /**
+     * Getter for the position of the first link set by the i-th added edge
+     * @param i         the position of the edge in the batch
+     * @return          the position of the link
+     */
+    public int getAdditionLinkStart (int i) {
+        return this.additionLinkStarts[i];
+    }
+
+    /**
+     * Getter for the position after the last link set by the i-th added edge
+     * @param i         the position of the edge in the batch
+     * @return          the position after the last link
+     */
+    public int getAdditionLinkEnd (int i) {
+        return (i + 1 < this.numAdditions ? this.additionLinkStarts[i + 1] : this.numLinks);
+    }
+
+    /**
+     * Getter for the id of the node connected to the input port of the i-th link
+     * @param i         the position of the link in the batch
+     * @return          the fromNode id
+     */
+    public int getLinkFromId (int i) {
+        return this.linkFromIds[i];
+    }
+
+    /**
+     * Getter for the id of the node connected to the output port of the i-th link
+     * @param i         the position of the link in the batch
+     * @return          the toNode id
+     */
+    public int getLinkToId (int i) {
+        return this.linkToIds[i];
+    }
+
+    /**
+     * Getter for the offset of the switch holding the i-th link
+     * @param i         the position of the link in the batch
+     * @return          the switch offset
+     */
+    public int getLinkSwtOffset (int i) {
+        return this.linkSwtOffsets[i];
+    }
+
+    /**
+     * Checks if the i-th link belongs to the initial configuration
+     * @param i         the position of the link in the batch
+     * @return          true if the link is initial, false otherwise
+     */
+    public boolean isLinkInitial (int i) {
+        return this.linkInitial[i];
+    }
+
+    /**
+     * Getter for the change in active ports of the switch at offset swtOffset of the cluster
+     * @param swtOffset the switch offset
+     * @return          the change in active ports
+     */
+    public long getPortDelta (int swtOffset) {
+        return this.portDeltas[swtOffset];
+    }
+
+    /**
+     * Getter for the number of switches in the cluster
+     * @return          the number of switches
+     */
+    public int getNumSwitches () {
+        return this.portDeltas.length;
+    }
+    /* End of Getters */
+
+    /* Setters */
+
+    /**
+     * Marks the batch as queued, or not, for the current round
+     * @param queued    true if the batch is queued
+     */
+    public void setQueued (boolean queued) {
+        this.queued = queued;
+    }
+
+    /**
+     * Adds an edge to be removed from the cluster
+     * @param edge      the Edge
+     */
+    public void addRemoval (Edge edge) {
+        if (this.numRemovals == this.removals.length) {
+            this.removals = Arrays.copyOf(this.removals, 2 * this.numRemovals);
+
+        }
+
+        this.removals[this.numRemovals++] = edge;
+    }
+
+    /**
+     * Adds an edge to be double swapped in the cluster
+     * @param edge      the Edge
+     */
+    public void addDoubleSwap (Edge edge) {
+        if (this.numDoubleSwaps == this.doubleSwaps.length) {
+            this.doubleSwaps = Arrays.copyOf(this.doubleSwaps, 2 * this.numDoubleSwaps);
+
+        }
+
+        this.doubleSwaps[this.numDoubleSwaps++] = edge;
+    }
+
+    /**
+     * Adds an edge to be added to the cluster
+     * @param edge      the Edge
+     * @return          the position of the edge among the additions of the batch
+     */
+    public int addAddition (Edge edge) {
+        if (this.numAdditions == this.additions.length) {
+            this.additions = Arrays.copyOf(this.additions, 2 * this.numAdditions);
+            this.additionLinkStarts = Arrays.copyOf(
+                this.additionLinkStarts, 2 * this.numAdditions + 1
+            );
+
+        }
+
+        this.additions[this.numAdditions] = edge;
+
+        return this.numAdditions++;
+    }
+
+    /**
+     * Marks the start of the links set by the i-th added edge. The additions must be applied
+     * in order.
+     * @param i         the position of the edge in the batch
+     */
+    public void startAddition (int i) {
+        this.additionLinkStarts[i] = this.numLinks;
+    }
+
+    /**
+     * Records a link set on one of the switches of the cluster
+     * @param fromId    the id of the node connected to the input port
+     * @param toId      the id of the node connected to the output port
+     * @param swtOffset the offset of the switch holding the link
+     * @param initial   true if the link belongs to the initial configuration
+     */
+    public void addLink (int fromId, int toId, int swtOffset, boolean initial) {
+        if (this.numLinks == this.linkFromIds.length) {
+            int capacity = 2 * this.numLinks;
+
+            this.linkFromIds = Arrays.copyOf(this.linkFromIds, capacity);
+            this.linkToIds = Arrays.copyOf(this.linkToIds, capacity);
+            this.linkSwtOffsets = Arrays.copyOf(this.linkSwtOffsets, capacity);
+            this.linkInitial = Arrays.copyOf(this.linkInitial, capacity);
+
+        }
+
+        this.linkFromIds[this.numLinks] = fromId;
+        this.linkToIds[this.numLinks] = toId;
+        this.linkSwtOffsets[this.numLinks] = swtOffset;
+        this.linkInitial[this.numLinks] = initial;
+        this.numLinks++;
+    }
+
+    /**
+     * Adds delta to the change in active ports of the switch at offset swtOffset
+     * @param swtOffset the switch offset
+     * @param delta     the number of ports activated, negative if they were deactivated
+     */
+    public void addPortDelta (int swtOffset, long delta) {
+        this.portDeltas[swtOffset] += delta;
+    }
+
+    /**
+     * Empties the batch for the next round. The edges must have been returned to the pool.
+     */
+    public void clear () {
+        Arrays.fill(this.removals, 0, this.numRemovals, null);
+        Arrays.fill(this.doubleSwaps, 0, this.numDoubleSwaps, null);
+        Arrays.fill(this.additions, 0, this.numAdditions, null);
+        Arrays.fill(this.portDeltas, 0);
+
+        this.numRemovals = 0;
+        this.numDoubleSwaps = 0;
+        this.numAdditions = 0;
+        this.numLinks = 0;
+        this.queued = false;
+    }
+    /* End of Setters */
+}
@@ -0,0 +1,155 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.util.Arrays;
+
+import sinalgo.tools.logging.Logging;
+
+/**
+ * The ContentionProfiler records why the requests handled by the NetworkController are
+ * stalled. Every rotation or routing denied because one of its nodes was already locked is
+ * stored with the blocking node, the reason it was locked and how many rounds the request
+ * has been waiting. Events and histograms are kept in primitive arrays and only written to
+ * the csv files at the end of the simulation.
+ */
+public class ContentionProfiler {
+
+    /* Denial reasons */
+    public static final int LOCKED_BY_ROUTING = 0;
+    public static final int LOCKED_BY_PEER = 1;
+
+    /* Denied operations */
+    public static final int ROTATION = 0;
+    public static final int ROUTING = 1;
+
+    private static final int MAX_WAIT_BUCKET = 64;
+
+    /* Attributes */
+    private long[] eventRounds = new long[1024];
+    private int[] eventRequests = new int[1024];
+    private int[] eventBlockingNodes = new int[1024];
+    private byte[] eventReasons = new byte[1024];
+    private byte[] eventOperations = new byte[1024];
+    private int[] eventWaitRounds = new int[1024];
+    private int numEvents = 0;
+
+    private int[] waitRounds;
+    private long[] blockedByRouting;
+    private long[] blockedByPeer;
+    private long[] waitHistogram = new long[MAX_WAIT_BUCKET + 1];
+
+    private Logging eventsLog;
+    private Logging nodesLog;
+    private Logging waitLog;
+    /* End of Attributes */
+
+    /**
+     * Creates the profiler for a network with numNodes nodes, storing its results on the
+     * folder given by path.
+     * @param numNodes  the number of nodes in the network, including the control root
+     * @param path      path to the folder where the csv files are stored
+     */
+    public ContentionProfiler (int numNodes, String path) {
+        this.waitRounds = new int[numNodes];
+        this.blockedByRouting = new long[numNodes];
+        this.blockedByPeer = new long[numNodes];
+
+        this.eventsLog = Logging.getLogger(path + "/contention_events.csv");
+        this.nodesLog = Logging.getLogger(path + "/contention_per_node.csv");
+        this.waitLog = Logging.getLogger(path + "/contention_wait_rounds.csv");
+    }
+
+    /**
+     * Records that the request of node requestId was denied a rotation or a routing, because
+     * blockingId was already locked this round.
+     * @param round         the current round
+     * @param requestId     the id of the node with the request
+     * @param blockingId    the id of the locked node
+     * @param reason        LOCKED_BY_ROUTING or LOCKED_BY_PEER
+     * @param operation     ROTATION or ROUTING
+     */
+    public void recordDenial (long round, int requestId, int blockingId, int reason, int operation) {
+        if (this.numEvents == this.eventRounds.length) {
+            int capacity = 2 * this.numEvents;
+
+            this.eventRounds = Arrays.copyOf(this.eventRounds, capacity);
+            this.eventRequests = Arrays.copyOf(this.eventRequests, capacity);
+            this.eventBlockingNodes = Arrays.copyOf(this.eventBlockingNodes, capacity);
+            this.eventReasons = Arrays.copyOf(this.eventReasons, capacity);
+            this.eventOperations = Arrays.copyOf(this.eventOperations, capacity);
+            this.eventWaitRounds = Arrays.copyOf(this.eventWaitRounds, capacity);
+
+        }
+
+        this.eventRounds[this.numEvents] = round;
+        this.eventRequests[this.numEvents] = requestId;
+        this.eventBlockingNodes[this.numEvents] = blockingId;
+        this.eventReasons[this.numEvents] = (byte) reason;
+        this.eventOperations[this.numEvents] = (byte) operation;
+        this.eventWaitRounds[this.numEvents] = this.waitRounds[requestId];
+        this.numEvents++;
+
+        if (reason == LOCKED_BY_ROUTING) {
+            this.blockedByRouting[blockingId]++;
+
+        } else {
+            this.blockedByPeer[blockingId]++;
+
+        }
+    }
+
+    /**
+     * Closes the round of the request of node requestId. A request that was not granted
+     * waits one more round, a granted one has its waiting time added to the histogram.
+     * @param requestId     the id of the node with the request
+     * @param granted       true if the request performed a rotation or routing this round
+     */
+    public void endRequestRound (int requestId, boolean granted) {
+        if (granted) {
+            this.waitHistogram[Math.min(this.waitRounds[requestId], MAX_WAIT_BUCKET)]++;
+            this.waitRounds[requestId] = 0;
+
+        } else {
+            this.waitRounds[requestId]++;
+
+        }
+    }
+
+    /**
+     * Writes the recorded events, the number of denials caused by each node and the
+     * histogram of rounds waited by the granted requests, where waits of MAX_WAIT_BUCKET
+     * rounds or more share the last bucket.
+     * @param projectName   the project name, first column of every line
+     */
+    public void export (String projectName) {
+        this.eventsLog.logln("project,round,request,blocking_node,reason,operation,wait_rounds");
+        for (int i = 0; i < this.numEvents; i++) {
+            this.eventsLog.logln(
+                projectName + "," + this.eventRounds[i] + "," + this.eventRequests[i] + "," +
+                this.eventBlockingNodes[i] + "," +
+                (this.eventReasons[i] == LOCKED_BY_ROUTING ? "routing" : "peer") + "," +
+                (this.eventOperations[i] == ROTATION ? "rotation" : "routing") + "," +
+                this.eventWaitRounds[i]
+            );
+
+        }
+
+        this.nodesLog.logln("project,node,blocked_by_routing,blocked_by_peer");
+        for (int node = 0; node < this.blockedByRouting.length; node++) {
+            if (this.blockedByRouting[node] != 0 || this.blockedByPeer[node] != 0) {
+                this.nodesLog.logln(
+                    projectName + "," + node + "," +
+                    this.blockedByRouting[node] + "," + this.blockedByPeer[node]
+                );
+
+            }
+        }
+
+        this.waitLog.logln("project,wait_rounds,requests");
+        for (int wait = 0; wait <= MAX_WAIT_BUCKET; wait++) {
+            if (this.waitHistogram[wait] != 0) {
+                this.waitLog.logln(projectName + "," + wait + "," + this.waitHistogram[wait]);
+
+            }
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.util.Arrays;
+
+/**
+ * A ControllerShard owns the subtree of the InfraTree rooted at one node for the duration of
+ * a controller round. The requests whose rotations and routings stay inside that subtree are
+ * committed by the shard, possibly on a worker thread. Every effect that would leave the
+ * subtree, namely the edges queued for the switches, the routing grants sent to the nodes,
+ * the logger counters and the denials seen by the contention profiler, is written to the
+ * shard journal instead. The journal is split by request, so the NetworkController replays
+ * the requests of every shard in its planning order once every shard is done. The journal is
+ * kept in primitive arrays and reused every round.
+ */
+public class ControllerShard {
+
+    /* Edge queues */
+    public static final int RMV_EDGES = 0;
+    public static final int SWAP_EDGES = 1;
+    public static final int DOUBLE_SWAP_EDGES = 2;
+    public static final int ADD_EDGES = 3;
+    public static final int ASSERT_ALTERATIONS = 4;
+
+    /* Journals */
+    public static final int JOURNAL_EDGES = 0;
+    public static final int JOURNAL_ROUTINGS = 1;
+    public static final int JOURNAL_ROTATIONS = 2;
+    public static final int JOURNAL_OPERATIONS = 3;
+    public static final int JOURNAL_ROTATION_EVENTS = 4;
+    public static final int JOURNAL_ACTIVE_REQUESTS = 5;
+    public static final int JOURNAL_DENIALS = 6;
+
+    /* Attributes */
+    private int rootId = -1;
+    private int minId = 0;
+    private int maxId = -1;
+
+    private int[] requests = new int[16];
+    private int[] waves = new int[16];
+    private int numRequests = 0;
+
+    private int[] requestIds = new int[16];
+    private int[] journalEnds = new int[16 * JOURNAL_SIZE];
+    private int numCommitted = 0;
+    private int numReplayed = 0;
+
+    private byte[] edgeQueues = new byte[64];
+    private int[] edgeFromIds = new int[64];
+    private int[] edgeToIds = new int[64];
+    private int[] edgeSwtOffsets = new int[64];
+    private byte[] edgeFlags = new byte[64];
+    private int numEdges = 0;
+
+    private int[] routingNodeIds = new int[16];
+    private int[] routingNxtNodeIds = new int[16];
+    private int[] routingTimes = new int[16];
+    private boolean[] routingCutThrough = new boolean[16];
+    private int numRoutings = 0;
+
+    private long[] rotations = new long[16];
+    private int numRotations = 0;
+
+    private String[] operations = new String[16];
+    private int numOperations = 0;
+
+    private int[] rotationEvents = new int[16 * ROTATION_EVENT_SIZE];
+    private int numRotationEvents = 0;
+
+    private int activeRequests = 0;
+
+    private int[] denialBlockingIds = new int[16];
+    private byte[] denialReasons = new byte[16];
+    private byte[] denialOperations = new byte[16];
+    private int numDenials = 0;
+    private boolean routingAttempt = false;
+
+    private InfraNode[] routNodes = new InfraNode[4];
+    /* End of Attributes */
+
+    private static final byte DOWNWARD = 1;
+    private static final byte INITIAL = 2;
+    private static final int ROTATION_EVENT_SIZE = 6;
+    private static final int JOURNAL_SIZE = 7;
+
+    /**
+     * Assigns the subtree rooted at the node rootId to the shard, whose keys range from
+     * minId to maxId, and empties its requests and journal.
+     * @param rootId    the id of the subtree root
+     * @param minId     the smallest id in the subtree
+     * @param maxId     the largest id in the subtree
+     */
+    public void reset (int rootId, int minId, int maxId) {
+        this.rootId = rootId;
+        this.minId = minId;
+        this.maxId = maxId;
+
+        this.numRequests = 0;
+        this.numCommitted = 0;
+        this.numReplayed = 0;
+        this.numEdges = 0;
+        this.numRoutings = 0;
+        this.numRotations = 0;
+        this.numRotationEvents = 0;
+        this.activeRequests = 0;
+        this.numDenials = 0;
+        this.routingAttempt = false;
+
+        Arrays.fill(this.operations, 0, this.numOperations, null);
+        this.numOperations = 0;
+    }
+
+    /* Getters */
+
+    /**
+     * Getter for the id of the subtree root
+     * @return          the root id
+     */
+    public int getRootId () {
+        return this.rootId;
+    }
+
+    /**
+     * Getter for the smallest id in the subtree
+     * @return          the smallest id
+     */
+    public int getMinId () {
+        return this.minId;
+    }
+
+    /**
+     * Getter for the largest id in the subtree
+     * @return          the largest id
+     */
+    public int getMaxId () {
+        return this.maxId;
+    }
+
+    /**
+     * Checks if the node is in the subtree owned by the shard
+     * @param id        the InfraNode id
+     * @return          true if the shard owns the node, false otherwise
+     */
+    public boolean owns (int id) {
+        return this.minId <= id && id <= this.maxId;
+    }
+
+    /**
+     * Getter for the number of requests assigned to the shard
+     * @return          the number of requests
+     */
+    public int getNumRequests () {
+        return this.numRequests;
+    }
+
+    /**
+     * Getter for the i-th request assigned to the shard
+     * @param i         the position of the request in the shard
+     * @return          the index of the request in the controller planning order
+     */
+    public int getRequest (int i) {
+        return this.requests[i];
+    }
+
+    /**
+     * Getter for the number of requests already committed by the shard
+     * @return          the number of committed requests
+     */
+    public int getNumCommitted () {
+        return this.numCommitted;
+    }
+
+    /**
+     * Checks if the next request to be committed by the shard belongs to the wave
+     * @param wave      the wave
+     * @return          true if there is a request left in the wave, false otherwise
+     */
+    public boolean hasRequestInWave (int wave) {
+        return this.numCommitted < this.numRequests && this.waves[this.numCommitted] == wave;
+    }
+
+    /**
+     * Getter for the id of the node with the j-th request committed by the shard
+     * @param j         the position of the request in the shard
+     * @return          the node id
+     */
+    public int getRequestId (int j) {
+        return this.requestIds[j];
+    }
+
+    /**
+     * Getter for the position in one of the journals where the entries of the j-th request
+     * committed by the shard start
+     * @param j         the position of the request in the shard
+     * @param journal   JOURNAL_EDGES, JOURNAL_ROUTINGS, JOURNAL_ROTATIONS, JOURNAL_OPERATIONS,
+     *                  JOURNAL_ROTATION_EVENTS, JOURNAL_ACTIVE_REQUESTS or JOURNAL_DENIALS
+     * @return          the position of the first entry of the request
+     */
+    public int getJournalStart (int j, int journal) {
+        return (j == 0 ? 0 : this.journalEnds[(j - 1) * JOURNAL_SIZE + journal]);
+    }
+
+    /**
+     * Getter for the position in one of the journals where the entries of the j-th request
+     * committed by the shard end
+     * @param j         the position of the request in the shard
+     * @param journal   the journal, as in getJournalStart
+     * @return          the position after the last entry of the request
+     */
+    public int getJournalEnd (int j, int journal) {
+        return this.journalEnds[j * JOURNAL_SIZE + journal];
+    }
+
+    /**
+     * Getter for the position of the next request of the shard to be replayed, advancing it.
+     * @return          the position of the request in the shard
+     */
+    public int nextReplayedRequest () {
+        return this.numReplayed++;
+    }
+
+    /**
+     * Getter for the queue the i-th edge of the journal goes to
+     * @param i         the position of the edge in the journal
+     * @return          RMV_EDGES, SWAP_EDGES, DOUBLE_SWAP_EDGES, ADD_EDGES or ASSERT_ALTERATIONS
+     */
+    public int getEdgeQueue (int i) {
+        return this.edgeQueues[i];
+    }
+
+    /**
+     * Getter for the id of the node connected to the input port of the i-th edge
+     * @param i         the position of the edge in the journal
+     * @return          the fromNode id
+     */
+    public int getEdgeFromId (int i) {
+        return this.edgeFromIds[i];
+    }
+
+    /**
+     * Getter for the id of the node connected to the output port of the i-th edge
+     * @param i         the position of the edge in the journal
+     * @return          the toNode id
+     */
+    public int getEdgeToId (int i) {
+        return this.edgeToIds[i];
+    }
+
+    /**
+     * Getter for the switch offset of the i-th edge
+     * @param i         the position of the edge in the journal
+     * @return          the switch offset, -1 if it is not yet known
+     */
+    public int getEdgeSwtOffset (int i) {
+        return this.edgeSwtOffsets[i];
+    }
+
+    /**
+     * Checks if the i-th edge is downward
+     * @param i         the position of the edge in the journal
+     * @return          true if the edge is downward, false otherwise
+     */
+    public boolean isEdgeDownward (int i) {
+        return (this.edgeFlags[i] & DOWNWARD) != 0;
+    }
+
+    /**
+     * Checks if the i-th edge belongs to the initial configuration
+     * @param i         the position of the edge in the journal
+     * @return          true if the edge is initial, false otherwise
+     */
+    public boolean isEdgeInitial (int i) {
+        return (this.edgeFlags[i] & INITIAL) != 0;
+    }
+
+    /**
+     * Getter for the id of the node allowed to rout in the i-th routing
+     * @param i         the position of the routing in the journal
+     * @return          the node id
+     */
+    public int getRoutingNodeId (int i) {
+        return this.routingNodeIds[i];
+    }
+
+    /**
+     * Getter for the id of the next node in the path of the i-th routing
+     * @param i         the position of the routing in the journal
+     * @return          the next node id
+     */
+    public int getRoutingNxtNodeId (int i) {
+        return this.routingNxtNodeIds[i];
+    }
+
+    /**
+     * Getter for the number of times the message of the i-th routing is routed
+     * @param i         the position of the routing in the journal
+     * @return          the routing times
+     */
+    public int getRoutingTimes (int i) {
+        return this.routingTimes[i];
+    }
+
+    /**
+     * Checks if the i-th routing crosses all of its hops in one round
+     * @param i         the position of the routing in the journal
+     * @return          true if it is a cut-through routing, false otherwise
+     */
+    public boolean isRoutingCutThrough (int i) {
+        return this.routingCutThrough[i];
+    }
+
+    /**
+     * Getter for the i-th logged rotation
+     * @param i         the position of the rotation in the journal
+     * @return          how many rotations it represents
+     */
+    public long getRotation (int i) {
+        return this.rotations[i];
+    }
+
+    /**
+     * Getter for the name of the i-th operation performed by the shard
+     * @param i         the position of the operation in the journal
+     * @return          the operation name
+     */
+    public String getOperation (int i) {
+        return this.operations[i];
+    }
+
+    /**
+     * Getter for a field of the i-th rotation event, in the order given to journalRotationEvent
+     * @param i         the position of the event in the journal
+     * @param field     the field, from 0 for the rotation to 5 for the destination id
+     * @return          the field value
+     */
+    public int getRotationEventField (int i, int field) {
+        return this.rotationEvents[i * ROTATION_EVENT_SIZE + field];
+    }
+
+    /**
+     * Getter for the id of the locked node that denied the i-th denial of the journal
+     * @param i         the position of the denial in the journal
+     * @return          the blocking node id
+     */
+    public int getDenialBlockingId (int i) {
+        return this.denialBlockingIds[i];
+    }
+
+    /**
+     * Getter for the reason of the i-th denial of the journal
+     * @param i         the position of the denial in the journal
+     * @return          the reason, as defined by ContentionProfiler
+     */
+    public int getDenialReason (int i) {
+        return this.denialReasons[i];
+    }
+
+    /**
+     * Getter for the operation denied by the i-th denial of the journal
+     * @param i         the position of the denial in the journal
+     * @return          the operation, as defined by ContentionProfiler
+     */
+    public int getDenialOperation (int i) {
+        return this.denialOperations[i];
+    }
+
+    /**
+     * Checks if the shard is locking the path of a routing
+     * @return          true if a routing path is being locked, false otherwise
+     */
+    public boolean isRoutingAttempt () {
+        return this.routingAttempt;
+    }
+
+    /**
+     * Getter for the scratch array where the shard collects the nodes in a routing path.
+     * Growing the array keeps the nodes already collected.
+     * @param size      the minimum size of the array
+     * @return          the scratch array
+     */
+    public InfraNode[] getRoutNodes (int size) {
+        if (this.routNodes.length < size) {
+            this.routNodes = Arrays.copyOf(this.routNodes, size);
+
+        }
+
+        return this.routNodes;
+    }
+    /* End of Getters */
+
+    /* Setters */
+
+    /**
+     * Assigns a request to the shard. Requests must be added in the controller planning order,
+     * with non decreasing waves.
+     * @param request   the index of the request in the controller planning order
+     * @param wave      the wave in which the request is committed
+     */
+    public void addRequest (int request, int wave) {
+        if (this.numRequests == this.requests.length) {
+            this.requests = Arrays.copyOf(this.requests, 2 * this.numRequests);
+            this.waves = Arrays.copyOf(this.waves, 2 * this.numRequests);
+
+        }
+
+        this.requests[this.numRequests] = request;
+        this.waves[this.numRequests++] = wave;
+    }
+
+    /**
+     * Starts the journal of the next request committed by the shard
+     * @param requestId the id of the node with the request
+     */
+    public void beginRequest (int requestId) {
+        if (this.numCommitted == this.requestIds.length) {
+            this.requestIds = Arrays.copyOf(this.requestIds, 2 * this.numCommitted);
+            this.journalEnds = Arrays.copyOf(this.journalEnds, 2 * this.numCommitted * JOURNAL_SIZE);
+
+        }
+
+        this.requestIds[this.numCommitted] = requestId;
+        this.routingAttempt = false;
+    }
+
+    /**
+     * Closes the journal of the request started by beginRequest
+     */
+    public void endRequest () {
+        int pos = this.numCommitted * JOURNAL_SIZE;
+
+        this.journalEnds[pos + JOURNAL_EDGES] = this.numEdges;
+        this.journalEnds[pos + JOURNAL_ROUTINGS] = this.numRoutings;
+        this.journalEnds[pos + JOURNAL_ROTATIONS] = this.numRotations;
+        this.journalEnds[pos + JOURNAL_OPERATIONS] = this.numOperations;
+        this.journalEnds[pos + JOURNAL_ROTATION_EVENTS] = this.numRotationEvents;
+        this.journalEnds[pos + JOURNAL_ACTIVE_REQUESTS] = this.activeRequests;
+        this.journalEnds[pos + JOURNAL_DENIALS] = this.numDenials;
+        this.numCommitted++;
+    }
+
+    /**
+     * Setter for the routing attempt flag, read when a denial is written to the journal
+     * @param routingAttempt    true while a routing path is being locked
+     */
+    public void setRoutingAttempt (boolean routingAttempt) {
+        this.routingAttempt = routingAttempt;
+    }
+
+    /**
+     * Writes an edge to the journal
+     * @param queue         the queue the edge goes to
+     * @param fromId        the id of the node connected to the input port
+     * @param toId          the id of the node connected to the output port
+     * @param downward      true if toNode is a child of fromNode
+     * @param initial       true if the edge belongs to the initial configuration
+     * @param swtOffset     the offset of the switch implementing the edge
+     */
+    public void journalEdge (
+        int queue, int fromId, int toId, boolean downward, boolean initial, int swtOffset
+    ) {
+        if (this.numEdges == this.edgeQueues.length) {
+            int capacity = 2 * this.numEdges;
+
+            this.edgeQueues = Arrays.copyOf(this.edgeQueues, capacity);
+            this.edgeFromIds = Arrays.copyOf(this.edgeFromIds, capacity);
+            this.edgeToIds = Arrays.copyOf(this.edgeToIds, capacity);
+            this.edgeSwtOffsets = Arrays.copyOf(this.edgeSwtOffsets, capacity);
+            this.edgeFlags = Arrays.copyOf(this.edgeFlags, capacity);
+
+        }
+
+        this.edgeQueues[this.numEdges] = (byte) queue;
+        this.edgeFromIds[this.numEdges] = fromId;
+        this.edgeToIds[this.numEdges] = toId;
+        this.edgeSwtOffsets[this.numEdges] = swtOffset;
+        this.edgeFlags[this.numEdges] = (byte) ((downward ? DOWNWARD : 0) | (initial ? INITIAL : 0));
+        this.numEdges++;
+    }
+
+    /**
+     * Writes a routing grant to the journal
+     * @param nodeId        the id of the node allowed to rout
+     * @param nxtNodeId     the id of the next node in the message path
+     * @param times         the number of times the message should be routed
+     * @param cutThrough    true if the message crosses every hop in one round
+     */
+    public void journalRouting (int nodeId, int nxtNodeId, int times, boolean cutThrough) {
+        if (this.numRoutings == this.routingNodeIds.length) {
+            int capacity = 2 * this.numRoutings;
+
+            this.routingNodeIds = Arrays.copyOf(this.routingNodeIds, capacity);
+            this.routingNxtNodeIds = Arrays.copyOf(this.routingNxtNodeIds, capacity);
+            this.routingTimes = Arrays.copyOf(this.routingTimes, capacity);
+            this.routingCutThrough = Arrays.copyOf(this.routingCutThrough, capacity);
+
+        }
+
+        this.routingNodeIds[this.numRoutings] = nodeId;
+        this.routingNxtNodeIds[this.numRoutings] = nxtNodeId;
+        this.routingTimes[this.numRoutings] = times;
+        this.routingCutThrough[this.numRoutings] = cutThrough;
+        this.numRoutings++;
+    }
+
+    /**
+     * Writes a rotation to the journal
+     * @param num       how many rotations it represents
+     */
+    public void journalRotation (long num) {
+        if (this.numRotations == this.rotations.length) {
+            this.rotations = Arrays.copyOf(this.rotations, 2 * this.numRotations);
+
+        }
+
+        this.rotations[this.numRotations++] = num;
+    }
+
+    /**
+     * Writes the name of a performed operation to the journal
+     * @param operation the operation name
+     */
+    public void journalOperation (String operation) {
+        if (this.numOperations == this.operations.length) {
+            this.operations = Arrays.copyOf(this.operations, 2 * this.numOperations);
+
+        }
+
+        this.operations[this.numOperations++] = operation;
+    }
+
+    /**
+     * Writes a rotation to the journal of the event log
+     * @param rotation  the ordinal of the Rotation performed
+     * @param x         the id of the node with the message
+     * @param y         the id of its parent before the rotation
+     * @param z         the id of its grandparent before the rotation
+     * @param w         the id of its great-grandparent before the rotation
+     * @param dst       the id of the message destination
+     */
+    public void journalRotationEvent (int rotation, int x, int y, int z, int w, int dst) {
+        int pos = this.numRotationEvents * ROTATION_EVENT_SIZE;
+        if (pos == this.rotationEvents.length) {
+            this.rotationEvents = Arrays.copyOf(this.rotationEvents, 2 * pos);
+
+        }
+
+        this.rotationEvents[pos] = rotation;
+        this.rotationEvents[pos + 1] = x;
+        this.rotationEvents[pos + 2] = y;
+        this.rotationEvents[pos + 3] = z;
+        this.rotationEvents[pos + 4] = w;
+        this.rotationEvents[pos + 5] = dst;
+        this.numRotationEvents++;
+    }
+
+    /**
+     * Counts one more request granted by the shard
+     */
+    public void journalActiveRequest () {
+        this.activeRequests++;
+    }
+
+    /**
+     * Writes to the journal a denial of the request being committed
+     * @param blockingId    the id of the locked node
+     * @param reason        the reason, as defined by ContentionProfiler
+     * @param operation     the operation denied, as defined by ContentionProfiler
+     */
+    public void journalDenial (int blockingId, int reason, int operation) {
+        if (this.numDenials == this.denialBlockingIds.length) {
+            int capacity = 2 * this.numDenials;
+
+            this.denialBlockingIds = Arrays.copyOf(this.denialBlockingIds, capacity);
+            this.denialReasons = Arrays.copyOf(this.denialReasons, capacity);
+            this.denialOperations = Arrays.copyOf(this.denialOperations, capacity);
+
+        }
+
+        this.denialBlockingIds[this.numDenials] = blockingId;
+        this.denialReasons[this.numDenials] = (byte) reason;
+        this.denialOperations[this.numDenials] = (byte) operation;
+        this.numDenials++;
+    }
+    /* End of Setters */
+}
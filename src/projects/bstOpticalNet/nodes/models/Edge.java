@@ -1,5 +1,8 @@
 package projects.bstOpticalNet.nodes.models;
 
+import java.util.ArrayDeque;
+
+import sinalgo.tools.Tools;
 
 /**
  * These edges are used to remove and add switch links before the end of the controller step.
@@ -14,6 +17,9 @@ public class Edge {
     private boolean initial;
     private int swtOffset = -1;
 
+    private boolean pooled = false;
+
+    private static ArrayDeque<Edge> freeEdges = new ArrayDeque<>();
 
     public Edge (InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial) {
         this(fromNode, toNode, downward, initial, -1);
@@ -27,6 +33,81 @@ public class Edge {
         this.swtOffset = swtOffset;
     }
 
+    /**
+     * Returns an Edge between fromNode and toNode, recycling a freed instance if there is one.
+     * @param fromNode  the node connected to the input port
+     * @param toNode    the node connected to the output port
+     * @param downward  true if toNode is a child of fromNode
+     * @param initial   true if the edge belongs to the initial configuration
+     * @return          the Edge
+     */
+    public static Edge fabricate (InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial) {
+        return fabricate(fromNode, toNode, downward, initial, -1);
+    }
+
+    /**
+     * Returns an Edge between fromNode and toNode, recycling a freed instance if there is one.
+     * @param fromNode  the node connected to the input port
+     * @param toNode    the node connected to the output port
+     * @param downward  true if toNode is a child of fromNode
+     * @param initial   true if the edge belongs to the initial configuration
+     * @param swtOffset the offset of the switch implementing the edge
+     * @return          the Edge
+     */
+    public static Edge fabricate (
+        InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial, int swtOffset
+    ) {
+        Edge edge = freeEdges.poll();
+        if (edge == null) {
+            return new Edge(fromNode, toNode, downward, initial, swtOffset);
+
+        }
+
+        edge.pooled = false;
+        edge.fromNode = fromNode;
+        edge.toNode = toNode;
+        edge.downward = downward;
+        edge.initial = initial;
+        edge.swtOffset = swtOffset;
+
+        return edge;
+    }
+
+    /**
+     * Returns the Edge to the pool once the controller has applied it to the switches.
+     * The edge must not be referenced after this call.
+     * @param edge      the consumed Edge
+     */
+    public static void free (Edge edge) {
+        if (edge.pooled) {
+            Tools.fatalError("Edge freed more than once");
+
+        }
+
+        edge.pooled = true;
+        edge.fromNode = null;
+        edge.toNode = null;
+        freeEdges.push(edge);
+    }
+
+    /**
+     * Encodes the directed edge between two node ids as a single primitive key
+     * @param fromId    the id of the node connected to the input port
+     * @param toId      the id of the node connected to the output port
+     * @return          the edge key
+     */
+    public static long encode (int fromId, int toId) {
+        return ((long) fromId << 32) | (toId & 0xffffffffL);
+    }
+
+    /**
+     * Getter for the primitive key of this edge
+     * @return          the edge key
+     */
+    public long getKey () {
+        return encode(this.getFromNodeId(), this.getToNodeId());
+    }
+
     public InfraNode getFromNode () {
         return this.fromNode;
 
@@ -0,0 +1,129 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * Open addressing set of edge keys, as encoded by Edge.encode. It is used by the
+ * NetworkController to filter redundant link updates within a round, and is cleared
+ * in time proportional to the number of stored keys, so it can be reused every round
+ * without allocating.
+ */
+public class EdgeSet {
+
+    /* Attributes */
+    private long[] keys;
+    private boolean[] filled;
+    private int[] usedSlots;
+    private int size = 0;
+    /* End of Attributes */
+
+    /* Constructors */
+
+    /**
+     * Creates an empty set.
+     */
+    public EdgeSet () {
+        this(64);
+    }
+
+    /**
+     * Creates an empty set able to hold capacity / 2 keys before growing.
+     * @param capacity  the initial number of slots, rounded up to a power of two
+     */
+    public EdgeSet (int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        this.keys = new long[slots];
+        this.filled = new boolean[slots];
+        this.usedSlots = new int[slots];
+    }
+    /* End of Constructors */
+
+    /**
+     * Adds the key to the set
+     * @param key       the edge key
+     * @return          true if the key was not in the set, false otherwise
+     */
+    public boolean add (long key) {
+        int slot = this.findSlot(key);
+        if (this.filled[slot]) {
+            return false;
+
+        }
+
+        this.keys[slot] = key;
+        this.filled[slot] = true;
+        this.usedSlots[this.size++] = slot;
+
+        if (2 * this.size > this.keys.length) {
+            this.grow();
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if the key is in the set
+     * @param key       the edge key
+     * @return          true if the key is in the set, false otherwise
+     */
+    public boolean contains (long key) {
+        return this.filled[this.findSlot(key)];
+    }
+
+    /**
+     * Getter for the number of keys in the set
+     * @return          the number of keys
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * Removes every key from the set, keeping its capacity.
+     */
+    public void clear () {
+        for (int i = 0; i < this.size; i++) {
+            this.filled[this.usedSlots[i]] = false;
+
+        }
+
+        this.size = 0;
+    }
+
+    /**
+     * Getter for the slot storing the key, or the empty slot where it would be stored.
+     * @param key       the edge key
+     * @return          the slot index
+     */
+    private int findSlot (long key) {
+        int mask = this.keys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+
+        while (this.filled[slot] && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+
+        }
+
+        return slot;
+    }
+
+    /**
+     * Doubles the number of slots, reinserting the stored keys.
+     */
+    private void grow () {
+        long[] oldKeys = this.keys;
+        int[] oldUsedSlots = this.usedSlots;
+        int oldSize = this.size;
+
+        this.keys = new long[2 * oldKeys.length];
+        this.filled = new boolean[2 * oldKeys.length];
+        this.usedSlots = new int[2 * oldKeys.length];
+        this.size = 0;
+
+        for (int i = 0; i < oldSize; i++) {
+            this.add(oldKeys[oldUsedSlots[i]]);
+
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package projects.bstOpticalNet.nodes.models;
+
+import sinalgo.tools.logging.Logging;
+
+/**
+ * The EpsilonTuner adjusts the rotation threshold of the CBNetController while the simulation
+ * runs. The rounds are split into windows of a fixed length, and at the end of each window
+ * the completed requests per round are compared with the ones of the previous window. The
+ * cost of a completed request, its routing hops plus its share of the switch alterations,
+ * breaks the ties between windows whose throughput differs by less than TOLERANCE.
+ * The threshold is moved by a hill climbing: a window better than the previous one keeps the
+ * direction of the last move and doubles the step, up to INITIAL_STEP, a worse one reverses
+ * it and halves the step, so the tuner settles on a steady workload and still follows a
+ * shifting one. The first move lowers epsilon, rotating less, when the alterations outnumber
+ * the routing hops, and raises it, rotating more, otherwise.
+ * Every window is written to the epsilon.csv file with the epsilon it ran with, so the
+ * trajectory of a run can be replayed.
+ */
+public class EpsilonTuner {
+
+    private static final double MIN_EPSILON = -10;
+    private static final double MAX_EPSILON = 0;
+    private static final double INITIAL_STEP = 0.5;
+    private static final double MIN_STEP = 0.0625;
+    private static final double TOLERANCE = 0.02;
+
+    /* Attributes */
+    private final long windowRounds;
+    private double epsilon;
+    private double step = INITIAL_STEP;
+    private int direction = 0;
+
+    private long windowStart = -1;
+    private long windowCompleted = 0;
+    private long windowHops = 0;
+    private double windowStartAlterations = 0;
+
+    private double lastThroughput = -1;
+    private double lastCost = -1;
+
+    private Logging epsilonLog;
+    /* End of Attributes */
+
+    /**
+     * Creates the tuner starting from the given threshold, storing the trajectory on the
+     * folder given by path.
+     * @param epsilon       the initial rotation threshold
+     * @param windowRounds  the number of rounds between two adjustments
+     * @param path          path to the folder where the csv file is stored
+     */
+    public EpsilonTuner (double epsilon, long windowRounds, String path) {
+        this.epsilon = epsilon;
+        this.windowRounds = Math.max(windowRounds, 1);
+
+        this.epsilonLog = Logging.getLogger(path + "/epsilon.csv");
+        this.epsilonLog.logln(
+            "project,round,epsilon,rounds,completed_requests,routing_hops,alterations,throughput"
+        );
+    }
+
+    /**
+     * Records a completed request
+     * @param hops      how many times the message was routed
+     */
+    public void recordCompletion (long hops) {
+        this.windowCompleted++;
+        this.windowHops += hops;
+    }
+
+    /**
+     * Called once per round, before the rotations of the round are decided. Closes the
+     * window if it reached its length, logging it and adjusting the threshold.
+     * @param projectName   the project name, first column of every line
+     * @param round         the current round
+     * @param alterations   the number of switch alterations performed so far
+     * @return              the threshold for this round
+     */
+    public double startRound (String projectName, long round, double alterations) {
+        if (this.windowStart < 0) {
+            this.windowStart = round;
+            this.windowStartAlterations = alterations;
+
+        } else if (round - this.windowStart >= this.windowRounds) {
+            long rounds = round - this.windowStart;
+            double windowAlterations = alterations - this.windowStartAlterations;
+
+            this.epsilonLog.logln(
+                projectName + "," + round + "," + this.epsilon + "," + rounds + "," +
+                this.windowCompleted + "," + this.windowHops + "," + (long) windowAlterations +
+                "," + ((double) this.windowCompleted / rounds)
+            );
+
+            this.adjust(rounds, windowAlterations);
+
+            this.windowStart = round;
+            this.windowStartAlterations = alterations;
+            this.windowCompleted = 0;
+            this.windowHops = 0;
+        }
+
+        return this.epsilon;
+    }
+
+    /**
+     * Moves the threshold after a window of the given length. Windows without completed
+     * requests carry no information and leave it unchanged.
+     * @param rounds        the length of the window
+     * @param alterations   the switch alterations performed in the window
+     */
+    private void adjust (long rounds, double alterations) {
+        if (this.windowCompleted == 0) {
+            return;
+
+        }
+
+        double throughput = (double) this.windowCompleted / rounds;
+        double cost = (this.windowHops + alterations) / this.windowCompleted;
+
+        if (this.direction == 0) {
+            this.direction = (alterations > this.windowHops ? -1 : 1);
+
+        } else {
+            double change = throughput - this.lastThroughput;
+            boolean better = (
+                Math.abs(change) > TOLERANCE * this.lastThroughput ? change > 0 :
+                cost < this.lastCost
+            );
+
+            if (better) {
+                this.step = Math.min(this.step * 2, INITIAL_STEP);
+
+            } else {
+                this.direction = -this.direction;
+                this.step = Math.max(this.step / 2, MIN_STEP);
+
+            }
+        }
+
+        this.lastThroughput = throughput;
+        this.lastCost = cost;
+
+        this.epsilon = Math.min(
+            Math.max(this.epsilon + this.direction * this.step, MIN_EPSILON), MAX_EPSILON
+        );
+    }
+
+    /**
+     * Getter for the current threshold
+     * @return          the rotation threshold
+     */
+    public double getEpsilon () {
+        return this.epsilon;
+    }
+}
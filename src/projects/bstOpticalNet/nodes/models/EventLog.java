@@ -0,0 +1,194 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import sinalgo.tools.Tools;
+
+/**
+ * The EventLog writes the reconfigurations and routings of a simulation to a binary file, so
+ * the network can be analyzed offline by the EventLogReader without simulating it again.
+ * The file starts with a HEADER_SIZE bytes header describing the network, followed by
+ * records of RECORD_SIZE bytes, in the order the events happened:
+ * <pre>
+ *  long round | byte type | byte flags | byte rotation | byte unused | int a, b, c, d, e
+ * </pre>
+ * A ROTATION record holds the node with the message, its parent, grandparent and
+ * great-grandparent before the rotation and the message destination on a to e. The LINK_ADD,
+ * LINK_REMOVE and LINK_SWAP records hold the node connected to the input port, the node
+ * connected to the output port and the switch id on a to c, with the DOWNWARD flag set when
+ * the output node is a child of the input node. A ROUTING record holds the node that sent the
+ * message, the node that received it and the switch id on a to c. Missing nodes are stored
+ * as -1. The records are buffered and written through a FileChannel.
+ */
+public class EventLog {
+
+    /* Record types */
+    public static final byte ROTATION = 0;
+    public static final byte LINK_ADD = 1;
+    public static final byte LINK_REMOVE = 2;
+    public static final byte LINK_SWAP = 3;
+    public static final byte ROUTING = 4;
+
+    /* Record flags */
+    public static final byte DOWNWARD = 1;
+    public static final byte INITIAL = 2;
+
+    public static final long MAGIC = 0x4f50544e45545631L;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 32;
+
+    private static final int BUFFER_RECORDS = 4096;
+
+    /* Attributes */
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+    private long numRecords = 0;
+    /* End of Attributes */
+
+    /**
+     * Creates the event log on the file given by path and writes its header.
+     * @param path          the path to the binary file
+     * @param numNodes      the number of nodes in the network
+     * @param numSwitches   the number of switches in the network
+     * @param switchSize    the number of input/output ports in each switch
+     * @param clusterSize   the number of nodes in each cluster of type 1
+     * @param mirrored      true if the network is mirrored
+     */
+    public EventLog (
+        String path, int numNodes, int numSwitches, int switchSize, int clusterSize,
+        boolean mirrored
+    ) {
+        try {
+            this.channel = FileChannel.open(
+                Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            );
+
+        } catch (IOException e) {
+            Tools.fatalError("Could not open the event log " + path + ": " + e.getMessage());
+
+        }
+
+        this.buffer.putLong(MAGIC);
+        this.buffer.putInt(VERSION);
+        this.buffer.putInt(numNodes);
+        this.buffer.putInt(numSwitches);
+        this.buffer.putInt(switchSize);
+        this.buffer.putInt(clusterSize);
+        this.buffer.putInt(mirrored ? 1 : 0);
+    }
+
+    /**
+     * Getter for the number of records written so far
+     * @return          the number of records
+     */
+    public long getNumRecords () {
+        return this.numRecords;
+    }
+
+    /**
+     * Writes a rotation performed by the controller
+     * @param round     the current round
+     * @param rotation  the Rotation performed
+     * @param x         the id of the node with the message
+     * @param y         the id of its parent before the rotation
+     * @param z         the id of its grandparent before the rotation
+     * @param w         the id of its great-grandparent before the rotation
+     * @param dst       the id of the message destination
+     */
+    public void recordRotation (
+        long round, Rotation rotation, int x, int y, int z, int w, int dst
+    ) {
+        this.record(round, ROTATION, (byte) 0, (byte) rotation.ordinal(), x, y, z, w, dst);
+    }
+
+    /**
+     * Writes a link added, removed or swapped on a switch
+     * @param round     the current round
+     * @param type      LINK_ADD, LINK_REMOVE or LINK_SWAP
+     * @param fromId    the id of the node connected to the input port
+     * @param toId      the id of the node connected to the output port
+     * @param swtId     the switch id
+     * @param downward  true if toNode is a child of fromNode
+     * @param initial   true if the link belongs to the initial configuration
+     */
+    public void recordLink (
+        long round, byte type, int fromId, int toId, int swtId, boolean downward, boolean initial
+    ) {
+        byte flags = (byte) ((downward ? DOWNWARD : 0) | (initial ? INITIAL : 0));
+
+        this.record(round, type, flags, (byte) 0, fromId, toId, swtId, 0, 0);
+    }
+
+    /**
+     * Writes a routing hop of a message
+     * @param round     the current round
+     * @param fromId    the id of the node that sent the message
+     * @param toId      the id of the node that received the message
+     * @param swtId     the switch id
+     */
+    public void recordRouting (long round, int fromId, int toId, int swtId) {
+        this.record(round, ROUTING, (byte) 0, (byte) 0, fromId, toId, swtId, 0, 0);
+    }
+
+    private void record (
+        long round, byte type, byte flags, byte rotation, int a, int b, int c, int d, int e
+    ) {
+        if (this.buffer.remaining() < RECORD_SIZE) {
+            this.flush();
+
+        }
+
+        this.buffer.putLong(round);
+        this.buffer.put(type);
+        this.buffer.put(flags);
+        this.buffer.put(rotation);
+        this.buffer.put((byte) 0);
+        this.buffer.putInt(a);
+        this.buffer.putInt(b);
+        this.buffer.putInt(c);
+        this.buffer.putInt(d);
+        this.buffer.putInt(e);
+        this.numRecords++;
+    }
+
+    /**
+     * Writes the buffered records to the file
+     */
+    public void flush () {
+        this.buffer.flip();
+
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+
+            }
+
+        } catch (IOException e) {
+            Tools.fatalError("Could not write the event log: " + e.getMessage());
+
+        }
+
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes the buffered records and closes the file
+     */
+    public void close () {
+        this.flush();
+
+        try {
+            this.channel.close();
+
+        } catch (IOException e) {
+            Tools.fatalError("Could not close the event log: " + e.getMessage());
+
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The EventLogReader rebuilds the tree and the active links of the switches of a simulation
+ * from the binary file written by the EventLog. The records are applied in order up to the
+ * requested round, so moving forward only reads the new records, while moving back replays
+ * the file from its start. Every link added to a switch replaces the active links using the
+ * same input or output port, as NetworkSwitch does, and the tree follows the direction of the
+ * links: a downward link sets a child and an upward link sets the parent of its input node.
+ * The node without a parent is the root of the tree.
+ * It can also be run on its own, printing the tree and the active links at a round:
+ * <pre>
+ *  java projects.bstOpticalNet.nodes.models.EventLogReader events.bin [round]
+ * </pre>
+ */
+public class EventLogReader {
+
+    private static final int BUFFER_RECORDS = 4096;
+
+    /* Attributes */
+    private final String path;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * EventLog.RECORD_SIZE);
+
+    private int numNodes;
+    private int numSwitches;
+    private int switchSize;
+    private int clusterSize;
+    private boolean mirrored;
+
+    private int[] parent;
+    private int[] leftChild;
+    private int[] rightChild;
+    private HashMap<Long, Integer> inputLinks = new HashMap<>();
+    private HashMap<Long, Integer> outputLinks = new HashMap<>();
+
+    private long round = -1;
+    private long numRotations = 0;
+    private long numRoutings = 0;
+    private long numLinkUpdates = 0;
+
+    private boolean pending = false;
+    private long pendingRound;
+    private byte pendingType;
+    private byte pendingFlags;
+    private int pendingA;
+    private int pendingB;
+    private int pendingC;
+    /* End of Attributes */
+
+    /**
+     * Opens the event log on the file given by path and reads its header.
+     * @param path      the path to the binary file
+     * @throws IOException  if the file can't be read or is not an event log
+     */
+    public EventLogReader (String path) throws IOException {
+        this.path = path;
+        this.open();
+
+        this.parent = new int[this.numNodes];
+        this.leftChild = new int[this.numNodes];
+        this.rightChild = new int[this.numNodes];
+        this.reset();
+    }
+
+    private void open () throws IOException {
+        this.channel = FileChannel.open(Paths.get(this.path), StandardOpenOption.READ);
+
+        ByteBuffer header = ByteBuffer.allocate(EventLog.HEADER_SIZE);
+        while (header.hasRemaining() && this.channel.read(header) != -1);
+        header.flip();
+
+        if (
+            header.remaining() < EventLog.HEADER_SIZE || header.getLong() != EventLog.MAGIC ||
+            header.getInt() != EventLog.VERSION
+        ) {
+            throw new IOException(this.path + " is not an event log");
+
+        }
+
+        this.numNodes = header.getInt();
+        this.numSwitches = header.getInt();
+        this.switchSize = header.getInt();
+        this.clusterSize = header.getInt();
+        this.mirrored = header.getInt() != 0;
+
+        this.buffer.clear();
+        this.buffer.flip();
+    }
+
+    private void reset () {
+        Arrays.fill(this.parent, -1);
+        Arrays.fill(this.leftChild, -1);
+        Arrays.fill(this.rightChild, -1);
+        this.inputLinks.clear();
+        this.outputLinks.clear();
+
+        this.round = -1;
+        this.numRotations = 0;
+        this.numRoutings = 0;
+        this.numLinkUpdates = 0;
+        this.pending = false;
+    }
+
+    /**
+     * Rebuilds the network as it was at the end of the given round.
+     * @param round     the round
+     * @throws IOException  if the file can't be read
+     */
+    public void replayTo (long round) throws IOException {
+        if (round < this.round) {
+            this.channel.close();
+            this.open();
+            this.reset();
+
+        }
+
+        while (this.nextRecord()) {
+            if (this.pendingRound > round) {
+                break;
+
+            }
+
+            this.apply();
+            this.pending = false;
+        }
+
+        this.round = round;
+    }
+
+    /**
+     * Reads the next record into the pending fields, unless a record read before is still
+     * pending.
+     * @return          true if there is a pending record, false at the end of the file
+     * @throws IOException  if the file can't be read
+     */
+    private boolean nextRecord () throws IOException {
+        if (this.pending) {
+            return true;
+
+        } else if (this.buffer.remaining() < EventLog.RECORD_SIZE) {
+            this.buffer.compact();
+            while (this.buffer.hasRemaining() && this.channel.read(this.buffer) != -1);
+            this.buffer.flip();
+
+            if (this.buffer.remaining() < EventLog.RECORD_SIZE) {
+                return false;
+
+            }
+        }
+
+        this.pendingRound = this.buffer.getLong();
+        this.pendingType = this.buffer.get();
+        this.pendingFlags = this.buffer.get();
+        this.buffer.getShort();
+        this.pendingA = this.buffer.getInt();
+        this.pendingB = this.buffer.getInt();
+        this.pendingC = this.buffer.getInt();
+        this.buffer.getLong();
+        this.pending = true;
+
+        return true;
+    }
+
+    private void apply () {
+        int fromId = this.pendingA, toId = this.pendingB, swtId = this.pendingC;
+        boolean downward = (this.pendingFlags & EventLog.DOWNWARD) != 0;
+
+        if (this.pendingType == EventLog.ROTATION) {
+            this.numRotations++;
+
+        } else if (this.pendingType == EventLog.ROUTING) {
+            this.numRoutings++;
+
+        } else if (this.pendingType == EventLog.LINK_ADD) {
+            Integer oldTo = this.inputLinks.remove(this.portKey(swtId, fromId));
+            if (oldTo != null) {
+                this.outputLinks.remove(this.portKey(swtId, oldTo));
+
+            }
+
+            Integer oldFrom = this.outputLinks.remove(this.portKey(swtId, toId));
+            if (oldFrom != null) {
+                this.inputLinks.remove(this.portKey(swtId, oldFrom));
+
+            }
+
+            this.inputLinks.put(this.portKey(swtId, fromId), toId);
+            this.outputLinks.put(this.portKey(swtId, toId), fromId);
+
+            if (downward) {
+                this.setChild(fromId, toId, toId);
+
+            } else {
+                this.parent[fromId] = toId;
+
+            }
+
+            this.numLinkUpdates++;
+
+        } else if (this.pendingType == EventLog.LINK_REMOVE) {
+            if ((this.pendingFlags & EventLog.INITIAL) == 0) {
+                this.inputLinks.remove(this.portKey(swtId, fromId));
+                this.outputLinks.remove(this.portKey(swtId, toId));
+
+            }
+
+            if (downward) {
+                this.setChild(fromId, toId, -1);
+
+            } else {
+                this.parent[fromId] = -1;
+
+            }
+
+            this.numLinkUpdates++;
+
+        } else if (this.pendingType == EventLog.LINK_SWAP) {
+            this.setChild(fromId, toId, toId);
+            this.setChild(toId, fromId, -1);
+            this.parent[toId] = fromId;
+            this.parent[fromId] = -1;
+
+            this.numLinkUpdates++;
+
+        }
+    }
+
+    private void setChild (int nodeId, int childId, int value) {
+        if (nodeId > childId) {
+            this.leftChild[nodeId] = value;
+
+        } else {
+            this.rightChild[nodeId] = value;
+
+        }
+    }
+
+    private long portKey (int swtId, int nodeId) {
+        return ((long) swtId << 32) | (nodeId & 0xffffffffL);
+    }
+
+    /* Getters */
+
+    /**
+     * Getter for the round the network was rebuilt at
+     * @return          the round, or -1 before the first replay
+     */
+    public long getRound () {
+        return this.round;
+    }
+
+    public int getNumNodes () {
+        return this.numNodes;
+    }
+
+    public int getNumSwitches () {
+        return this.numSwitches;
+    }
+
+    public int getSwitchSize () {
+        return this.switchSize;
+    }
+
+    public int getClusterSize () {
+        return this.clusterSize;
+    }
+
+    public boolean isMirrored () {
+        return this.mirrored;
+    }
+
+    /**
+     * Getter for the parent of a node
+     * @param nodeId    the InfraNode id
+     * @return          the parent id, or -1 if the node is the root
+     */
+    public int getParentId (int nodeId) {
+        return this.parent[nodeId];
+    }
+
+    /**
+     * Getter for the left child of a node
+     * @param nodeId    the InfraNode id
+     * @return          the left child id, or -1 if there is none
+     */
+    public int getLeftChildId (int nodeId) {
+        return this.leftChild[nodeId];
+    }
+
+    /**
+     * Getter for the right child of a node
+     * @param nodeId    the InfraNode id
+     * @return          the right child id, or -1 if there is none
+     */
+    public int getRightChildId (int nodeId) {
+        return this.rightChild[nodeId];
+    }
+
+    /**
+     * Getter for the root of the tree
+     * @return          the id of the node without a parent, or -1 if there is none
+     */
+    public int getRootId () {
+        for (int nodeId = 0; nodeId < this.numNodes; nodeId++) {
+            if (this.parent[nodeId] == -1) {
+                return nodeId;
+
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Getter for the node connected through an active link to the output port of a switch,
+     * from the input port of the node fromId
+     * @param swtId     the switch id
+     * @param fromId    the id of the node connected to the input port
+     * @return          the id of the node on the output port, or -1 if the port is inactive
+     */
+    public int getLinkedOutputId (int swtId, int fromId) {
+        Integer toId = this.inputLinks.get(this.portKey(swtId, fromId));
+
+        return (toId == null ? -1 : toId);
+    }
+
+    /**
+     * Getter for the number of active links over every switch
+     * @return          the number of active links
+     */
+    public int getNumActiveLinks () {
+        return this.inputLinks.size();
+    }
+
+    /**
+     * Getter for the number of rotations replayed so far
+     * @return          the number of rotations
+     */
+    public long getNumRotations () {
+        return this.numRotations;
+    }
+
+    /**
+     * Getter for the number of routing hops replayed so far
+     * @return          the number of routings
+     */
+    public long getNumRoutings () {
+        return this.numRoutings;
+    }
+
+    /**
+     * Getter for the number of link additions, removals and swaps replayed so far
+     * @return          the number of link updates
+     */
+    public long getNumLinkUpdates () {
+        return this.numLinkUpdates;
+    }
+    /* End of Getters */
+
+    /**
+     * Closes the file
+     * @throws IOException  if the file can't be closed
+     */
+    public void close () throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Prints the tree and the active links at the given round, or at the end of the
+     * simulation if no round is given.
+     * @param args      the path to the event log and, optionally, the round
+     * @throws IOException  if the file can't be read
+     */
+    public static void main (String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: EventLogReader <events.bin> [round]");
+            return;
+
+        }
+
+        EventLogReader reader = new EventLogReader(args[0]);
+        reader.replayTo(args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE);
+
+        System.out.println(
+            "round," + reader.getRound() + ",rotations," + reader.getNumRotations() +
+            ",routings," + reader.getNumRoutings() + ",active-links," + reader.getNumActiveLinks()
+        );
+        System.out.println("root," + reader.getRootId());
+        System.out.println("node,parent,left_child,right_child");
+        for (int nodeId = 0; nodeId < reader.getNumNodes(); nodeId++) {
+            System.out.println(
+                nodeId + "," + reader.getParentId(nodeId) + "," +
+                reader.getLeftChildId(nodeId) + "," + reader.getRightChildId(nodeId)
+            );
+
+        }
+
+        reader.close();
+    }
+}
@@ -0,0 +1,179 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * FreePorts keeps, for every node attached to a cluster, one bitset of the switches of the
+ * cluster where the input port of the node is free and one where its output port is free,
+ * with the bit of each switch given by its offset in the cluster. The switches keep the
+ * bitsets up to date as their links are activated and deactivated, so the NetworkController
+ * finds a switch able to hold an edge with a few word operations instead of querying every
+ * switch of the cluster.
+ * The nodes of a cluster come from at most two id ranges of the same size, the first one
+ * mapped to the local ids 0 to size - 1 and the second one to size to 2 * size - 1.
+ */
+public class FreePorts {
+
+    /* Attributes */
+    private final int minId1;
+    private final int minId2;
+    private final int size;
+    private final int numWords;
+
+    private long[] freeInputs;
+    private long[] freeOutputs;
+    /* End of Attributes */
+
+    /**
+     * Creates the bitsets of a cluster with numSwitches switches whose nodes have ids in the
+     * ranges minId1 to minId1 + size - 1 and minId2 to minId2 + size - 1, with every port
+     * busy. On clusters of type 1 both ranges are the same.
+     * @param minId1        the smallest id in the first range of nodes
+     * @param minId2        the smallest id in the second range of nodes
+     * @param size          the number of nodes in each range
+     * @param numSwitches   the number of switches in the cluster
+     */
+    public FreePorts (int minId1, int minId2, int size, int numSwitches) {
+        this.minId1 = minId1;
+        this.minId2 = minId2;
+        this.size = size;
+        this.numWords = (numSwitches + 63) >>> 6;
+
+        int numLocalIds = (minId1 == minId2 ? size : 2 * size);
+        this.freeInputs = new long[numLocalIds * this.numWords];
+        this.freeOutputs = new long[numLocalIds * this.numWords];
+    }
+
+    /**
+     * Maps the id of a node to the position of its first word in the bitsets
+     * @param netId     the network node id
+     * @return          the position of the first word, or -1 if the node is not in the cluster
+     */
+    private int wordIndex (int netId) {
+        if (netId >= this.minId1 && netId < this.minId1 + this.size) {
+            return (netId - this.minId1) * this.numWords;
+
+        } else if (
+            this.minId1 != this.minId2 && netId >= this.minId2 && netId < this.minId2 + this.size
+        ) {
+            return (this.size + netId - this.minId2) * this.numWords;
+
+        }
+
+        return -1;
+    }
+
+    /* Getters */
+
+    /**
+     * Finds the first switch of the cluster where both the input port of in and the output
+     * port of out are free.
+     * @param in        the id of the node connected to the input port
+     * @param out       the id of the node connected to the output port
+     * @return          the offset of the switch, or -1 if there is none
+     */
+    public int findBoth (int in, int out) {
+        int inWord = this.wordIndex(in);
+        int outWord = this.wordIndex(out);
+        if (inWord == -1 || outWord == -1) {
+            return -1;
+
+        }
+
+        for (int w = 0; w < this.numWords; w++) {
+            long word = this.freeInputs[inWord + w] & this.freeOutputs[outWord + w];
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the last switch of the cluster where the input port of in is free.
+     * @param in        the id of the node connected to the input port
+     * @return          the offset of the switch, or -1 if there is none
+     */
+    public int findLastInput (int in) {
+        return this.findLast(this.freeInputs, this.wordIndex(in));
+    }
+
+    /**
+     * Finds the last switch of the cluster where the output port of out is free.
+     * @param out       the id of the node connected to the output port
+     * @return          the offset of the switch, or -1 if there is none
+     */
+    public int findLastOutput (int out) {
+        return this.findLast(this.freeOutputs, this.wordIndex(out));
+    }
+
+    private int findLast (long[] bitset, int firstWord) {
+        if (firstWord == -1) {
+            return -1;
+
+        }
+
+        for (int w = this.numWords - 1; w >= 0; w--) {
+            long word = bitset[firstWord + w];
+            if (word != 0) {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+
+            }
+        }
+
+        return -1;
+    }
+    /* End of Getters */
+
+    /* Setters */
+
+    /**
+     * Marks every port of the switch at offset swtOffset as free, the switch having its input
+     * ports connected to the nodes minInputId to minInputId + size - 1 and its output ports
+     * to the nodes minOutputId to minOutputId + size - 1.
+     * @param minInputId    the smallest id connected to the input ports
+     * @param minOutputId   the smallest id connected to the output ports
+     * @param swtOffset     the switch offset
+     */
+    public void setSwitchFree (int minInputId, int minOutputId, int swtOffset) {
+        for (int i = 0; i < this.size; i++) {
+            this.setInputFree(minInputId + i, swtOffset, true);
+            this.setOutputFree(minOutputId + i, swtOffset, true);
+
+        }
+    }
+
+    /**
+     * Marks the input port of the node in on the switch at offset swtOffset as free or busy
+     * @param in        the network node id
+     * @param swtOffset the switch offset
+     * @param free      true if the port is free
+     */
+    public void setInputFree (int in, int swtOffset, boolean free) {
+        this.setBit(this.freeInputs, this.wordIndex(in), swtOffset, free);
+    }
+
+    /**
+     * Marks the output port of the node out on the switch at offset swtOffset as free or busy
+     * @param out       the network node id
+     * @param swtOffset the switch offset
+     * @param free      true if the port is free
+     */
+    public void setOutputFree (int out, int swtOffset, boolean free) {
+        this.setBit(this.freeOutputs, this.wordIndex(out), swtOffset, free);
+    }
+
+    private void setBit (long[] bitset, int firstWord, int swtOffset, boolean free) {
+        int w = firstWord + (swtOffset >>> 6);
+        long bit = 1L << swtOffset;
+
+        if (free) {
+            bitset[w] |= bit;
+
+        } else {
+            bitset[w] &= ~bit;
+
+        }
+    }
+    /* End of Setters */
+}
@@ -5,68 +5,30 @@ import sinalgo.tools.Tools;
 /**
  * InfraNodes are used by the NetworkController to represent the current
  * network topology. They store the left and right child and it's parent,
- * as well as their subtree min and max id.
+ * as well as their subtree min and max id. The information is kept in the
+ * arrays of the InfraTree the node belongs to, the InfraNode being a view over
+ * its index. Missing links point to the tree sentinel, a node with id -1 whose
+ * information can't be modified.
  */
 public class InfraNode implements Comparable<InfraNode> {
 
     /* Attributes */
-    private InfraNode parent = null;
-    private int pSwtOffset = -1;
-    private InfraNode leftChild = null;
-    private int lcSwtOffset = -1;
-    private InfraNode rightChild = null;
-    private int rcSwtOffset = -1;
-
-    private int minId = -1;
-    private int maxId = -1;
-
-    private long weight = 0;
-
-    private int id = 0;
-    private static int ID = 0;
+    private final InfraTree tree;
+    private final int idx;
+    private final int id;
     /* End of Attributes */
 
     /* Constructors */
 
     /**
-     * Create a InfraNode unitialized, without children nor parents.
-     */
-    public InfraNode () {
-        this.id = ID++;
-        this.parent = new InfraNode(-1);
-        this.pSwtOffset = -1;
-        this.leftChild = new InfraNode(-1);
-        this.lcSwtOffset = -1;
-        this.rightChild = new InfraNode(-1);
-        this.rcSwtOffset = -1;
-        this.minId = this.id;
-        this.maxId = this.id;
-    }
-
-    /**
-     * Create a dummy node, that should be deemed invalid during the simulation.
-     * @param dummy variable to represent dummy id, should be -1
-     */
-    public InfraNode (int dummy) {
-        this.id = dummy;
-        this.minId = this.id;
-        this.maxId = this.id;
-    }
-
-    /**
-     * Create a new InfraNode already informing it's parent and children, already initializing
-     * it's subtree
-     * @param parent        This node parent or a dummy node
-     * @param leftChild     This node leftChild or a dummy node
-     * @param rightChild    This node rightChild or a dummy node
+     * Create the view over the index idx of the tree, called by the InfraTree.
+     * @param tree  the tree storing the node
+     * @param idx   the index of the node in the tree arrays
      */
-    public InfraNode (InfraNode parent, InfraNode leftChild, InfraNode rightChild) {
-        this.id = ID++;
-        this.parent = parent;
-        this.leftChild = leftChild;
-        this.rightChild = rightChild;
-        this.minId = this.leftChild.getId() == -1 ? this.getId() : this.leftChild.getMinId();
-        this.maxId = this.rightChild.getId() == -1 ? this.getId() : this.rightChild.getMaxId();
+    InfraNode (InfraTree tree, int idx) {
+        this.tree = tree;
+        this.idx = idx;
+        this.id = (idx == tree.sentinel ? -1 : idx);
     }
     /* End of Constructors */
 
@@ -90,12 +52,28 @@ public class InfraNode implements Comparable<InfraNode> {
 
     }
 
+    /**
+     * Getter for the InfraTree storing this node
+     * @return The InfraTree
+     */
+    public InfraTree getTree () {
+        return this.tree;
+    }
+
+    /**
+     * Checks if this node is the tree sentinel
+     * @return True if this node is the sentinel, false otherwise
+     */
+    private boolean isSentinel () {
+        return this.idx == this.tree.sentinel;
+    }
+
     /**
      * Getter for this node parent
      * @return This node parent
      */
     public InfraNode getParent () {
-        return this.parent;
+        return this.tree.nodeAt(this.tree.parent[this.idx]);
     }
 
     /**
@@ -103,7 +81,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node parent's id
      */
     public int getParentId () {
-        return this.parent.getId();
+        return this.getParent().getId();
     }
 
     /**
@@ -111,7 +89,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return the switch Offset connected to this node parent
      */
     public int getParentSwitchOffset () {
-        return this.pSwtOffset;
+        return this.tree.pSwtOffset[this.idx];
     }
 
     /**
@@ -119,7 +97,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node left child
      */
     public InfraNode getLeftChild () {
-        return this.leftChild;
+        return this.tree.nodeAt(this.tree.leftChild[this.idx]);
     }
 
     /**
@@ -127,7 +105,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node left child's id
      */
     public int getLeftChildId () {
-        return this.leftChild.getId();
+        return this.getLeftChild().getId();
     }
 
     /**
@@ -135,7 +113,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return the switch id connected to this node left child
      */
     public int getLeftChildSwitchOffset () {
-        return this.lcSwtOffset;
+        return this.tree.lcSwtOffset[this.idx];
     }
 
     /**
@@ -143,7 +121,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node right child
      */
     public InfraNode getRightChild () {
-        return this.rightChild;
+        return this.tree.nodeAt(this.tree.rightChild[this.idx]);
     }
 
     /**
@@ -151,7 +129,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node right child's id
      */
     public int getRightChildId () {
-        return this.rightChild.getId();
+        return this.getRightChild().getId();
     }
 
     /**
@@ -159,7 +137,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return the switch id connected to this node right child
      */
     public int getRightChildSwitchOffset () {
-        return this.rcSwtOffset;
+        return this.tree.rcSwtOffset[this.idx];
     }
 
     /**
@@ -189,7 +167,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node's subtree minimum id
      */
     public int getMinId () {
-        return this.minId;
+        return this.tree.minId[this.idx];
     }
 
     /**
@@ -197,7 +175,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node's subtree maximum id
      */
     public int getMaxId () {
-        return this.maxId;
+        return this.tree.maxId[this.idx];
     }
 
     /**
@@ -205,7 +183,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return This node's weight
      */
     public long getWeight () {
-        return (this.getId() == -1 ? 0 : this.weight);
+        return this.tree.getWeight(this.idx);
     }
 
     /* End of Getters */
@@ -217,15 +195,20 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param parent This node new parent
      */
     public void setParent (InfraNode parent) {
-        if (this.getId() == -1)
+        if (this.isSentinel())
             return;
 
-        this.parent = parent;
+        this.tree.parent[this.idx] = parent.idx;
+        this.tree.markModified(this.idx);
     }
 
     public void removeParent () {
-        this.parent = new InfraNode(-1);
-        this.pSwtOffset = -1;
+        if (this.isSentinel())
+            return;
+
+        this.tree.parent[this.idx] = this.tree.sentinel;
+        this.tree.pSwtOffset[this.idx] = -1;
+        this.tree.markModified(this.idx);
     }
 
     /**
@@ -233,7 +216,8 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param swtOffset the switch Offset
      */
     public void setParentSwitchOffset (int swtOffset) {
-        this.pSwtOffset = swtOffset;
+        if (!this.isSentinel())
+            this.tree.pSwtOffset[this.idx] = swtOffset;
     }
 
     /**
@@ -242,8 +226,8 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param child new child node
      */
     public void setLeftChild (InfraNode child) {
-        if (this.getId() != -1) {
-            this.leftChild = child;
+        if (!this.isSentinel()) {
+            this.tree.leftChild[this.idx] = child.idx;
 
             this.updateMin(child);
 
@@ -251,9 +235,13 @@ public class InfraNode implements Comparable<InfraNode> {
     }
 
     public void removeLeftChild () {
-        this.leftChild = new InfraNode(-1);
-        this.minId = this.getId();
-        this.lcSwtOffset = -1;
+        if (this.isSentinel())
+            return;
+
+        this.tree.leftChild[this.idx] = this.tree.sentinel;
+        this.tree.minId[this.idx] = this.id;
+        this.tree.lcSwtOffset[this.idx] = -1;
+        this.tree.markModified(this.idx);
     }
 
     /**
@@ -261,7 +249,8 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param swtOffset the switch Offset
      */
     public void setLeftChildSwitchOffset (int swtOffset) {
-        this.lcSwtOffset = swtOffset;
+        if (!this.isSentinel())
+            this.tree.lcSwtOffset[this.idx] = swtOffset;
     }
 
     /**
@@ -270,17 +259,21 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param child new child node
      */
     public void setRightChild (InfraNode child) {
-        if (this.getId() != -1) {
-            this.rightChild = child;
+        if (!this.isSentinel()) {
+            this.tree.rightChild[this.idx] = child.idx;
 
             this.updateMax(child);
         }
     }
 
     public void removeRightChild () {
-        this.rightChild = new InfraNode(-1);
-        this.maxId = this.getId();
-        this.rcSwtOffset = -1;
+        if (this.isSentinel())
+            return;
+
+        this.tree.rightChild[this.idx] = this.tree.sentinel;
+        this.tree.maxId[this.idx] = this.id;
+        this.tree.rcSwtOffset[this.idx] = -1;
+        this.tree.markModified(this.idx);
     }
 
     /**
@@ -288,7 +281,8 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param swtOffset the switch Offset
      */
     public void setRightChildSwitchOffset (int swtOffset) {
-        this.rcSwtOffset = swtOffset;
+        if (!this.isSentinel())
+            this.tree.rcSwtOffset[this.idx] = swtOffset;
     }
 
     /**
@@ -323,18 +317,22 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param rstNode the old child node.
      */
     public void resetChild (InfraNode rstNode) {
-        if (this.getId() != -1) {
-            if (this.leftChild.getId() != -1 && this.leftChild == rstNode) {
-                this.updateMin(new InfraNode(-1));
-                this.leftChild = new InfraNode(-1);
+        if (this.isSentinel() || rstNode.isSentinel()) {
+            return;
+
+        }
 
-            } else if (this.rightChild.getId() != -1 && this.rightChild == rstNode) {
-                this.updateMax(new InfraNode(-1));
-                this.rightChild = new InfraNode(-1);
+        if (this.tree.leftChild[this.idx] == rstNode.idx) {
+            this.tree.minId[this.idx] = this.id;
+            this.tree.leftChild[this.idx] = this.tree.sentinel;
 
-            }
+        } else if (this.tree.rightChild[this.idx] == rstNode.idx) {
+            this.tree.maxId[this.idx] = this.id;
+            this.tree.rightChild[this.idx] = this.tree.sentinel;
 
         }
+
+        this.tree.markModified(this.idx);
     }
 
     /**
@@ -342,13 +340,14 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param rstNode this node old parent.
      */
     public void resetParent (InfraNode rstNode) {
-        if (this.getId() == -1) {
+        if (this.isSentinel() || rstNode.isSentinel()) {
             return;
 
         }
 
-        if (this.parent.getId() != -1 && this.parent.getId() == rstNode.getId()) {
-            this.parent = new InfraNode(-1);
+        if (this.tree.parent[this.idx] == rstNode.idx) {
+            this.tree.parent[this.idx] = this.tree.sentinel;
+            this.tree.markModified(this.idx);
 
         }
     }
@@ -359,13 +358,20 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param child This node new child
      */
     public void updateMin (InfraNode child) {
-        if (child.getId() == -1) {
-            this.minId = this.getId();
+        if (this.isSentinel()) {
+            return;
+
+        }
+
+        if (child.isSentinel()) {
+            this.tree.minId[this.idx] = this.id;
 
         } else {
-            this.minId = child.getMinId();
+            this.tree.minId[this.idx] = child.getMinId();
 
         }
+
+        this.tree.markModified(this.idx);
     }
 
     /**
@@ -374,22 +380,30 @@ public class InfraNode implements Comparable<InfraNode> {
      * @param child This node new child
      */
     public void updateMax (InfraNode child) {
-        if (child.getId() == -1) {
-            this.maxId = this.getId();
+        if (this.isSentinel()) {
+            return;
+
+        }
+
+        if (child.isSentinel()) {
+            this.tree.maxId[this.idx] = this.id;
 
         } else {
-            this.maxId = child.getMaxId();
+            this.tree.maxId[this.idx] = child.getMaxId();
 
         }
 
+        this.tree.markModified(this.idx);
     }
 
     /**
-     * Update this node weight, called after a rotation. Obsolete with weight-tree.
+     * Update this node weight, adjusting its offset over the endpoints in its subtree.
+     * Obsolete with weight-tree.
      * @param weight This node new weight
      */
     public void setWeight (long weight) {
-        this.weight = weight;
+        if (!this.isSentinel())
+            this.tree.weight[this.idx] += weight - this.getWeight();
 
     }
 
@@ -397,39 +411,25 @@ public class InfraNode implements Comparable<InfraNode> {
      * Increment the weight of this node subtree. Obsolete with weight-tree.
      */
     public void incrementWeight () {
-        this.weight++;
+        if (!this.isSentinel())
+            this.tree.weight[this.idx]++;
 
     }
 
     /**
      * Increment the weight of the nodes in the path between this node and the destination
-     * node, toNode. It traverse the path from the source node to the root and from the
-     * root to the destination node. Effectively adding 2 to every node ancestor to the LCA
-     * and adding one to every node ancestor to only one of the source and destination nodes.
+     * node, toNode, the path going from the source node up to the root and from the root
+     * down to the destination node. Effectively adding 2 to every node ancestor to the LCA,
+     * adding one to every node ancestor to only one of the source and destination nodes, and
+     * one to the root. The increments are not applied to the path, each endpoint is counted
+     * once in the tree and the root discounted once, and the weights are resolved when read.
      * @param toNode    destination node
-     * @param rooted    boolean with true if it already has traversed to the root and false if
-     *                  it still hasn't
+     * @param root      the root of the tree, at the top of the path
      */
-    public void incrementPathWeight (InfraNode toNode, boolean rooted) {
-        this.incrementWeight();
-        Direction direction = this.getRoutingDirection(toNode);
-
-        if (!rooted && this.parent.getId() != -1) {
-            this.parent.incrementPathWeight(toNode, false);
-
-        } else if (this.getId() == toNode.getId()) {
-            return;
-
-        } else if (direction == Direction.RIGHT || direction == Direction.RIGHTROUT) {
-            this.rightChild.incrementPathWeight(toNode, true);
-
-        } else if (direction == Direction.LEFT || direction == Direction.LEFTROUT) {
-            this.leftChild.incrementPathWeight(toNode, true);
-
-        } else {
-            Tools.fatalError("Incrementing parent weigth after going to root");
-
-        }
+    public void incrementPathWeight (InfraNode toNode, InfraNode root) {
+        this.tree.addEndpoints(this.idx, 1);
+        this.tree.addEndpoints(toNode.idx, 1);
+        this.tree.addEndpoints(root.idx, -1);
     }
 
     /**
@@ -456,13 +456,13 @@ public class InfraNode implements Comparable<InfraNode> {
             return this;
 
         } else if (direction == Direction.RIGHT || direction == Direction.RIGHTROUT) {
-            return this.rightChild;
+            return this.getRightChild();
 
         } else if (direction == Direction.LEFT || direction == Direction.LEFTROUT) {
-            return this.leftChild;
+            return this.getLeftChild();
 
         } else {
-            return this.parent;
+            return this.getParent();
 
         }
     }
@@ -474,38 +474,17 @@ public class InfraNode implements Comparable<InfraNode> {
      * @return          the routing the direction the next node in the path is
      */
     public Direction getRoutingDirection (InfraNode toNode) {
-        if (toNode.getId() == -1) {
+        if (toNode.isSentinel()) {
             System.out.println("Invalid toNode");
             Tools.fatalError("Invalid toNode");
 
         }
 
-        if (this == toNode) {
-            return Direction.NULL;
-
-        } else if (this.getLeftChild() == toNode) {
-            return Direction.LEFTROUT;
-
-        } else if (this.getRightChild() == toNode) {
-            return Direction.RIGHTROUT;
-
-        } else if (this.getParent() == toNode) {
-            return Direction.PARENTROUT;
-
-        } else if (this.getId() < toNode.getId() && toNode.getId() <= this.maxId) {
-            return Direction.RIGHT;
-
-        } else if (this.minId <= toNode.getId() && toNode.getId() < this.getId()) {
-            return Direction.LEFT;
-
-        } else {
-            return Direction.PARENT;
-
-        }
+        return this.tree.getRoutingDirection(this.idx, toNode.idx);
     }
 
     public boolean isDownwardEdge (InfraNode toNode) {
-        if (toNode.getId() == -1) {
+        if (toNode.isSentinel()) {
             System.out.println("Invalid toNode");
             Tools.fatalError("Invalid toNode");
 
@@ -538,7 +517,7 @@ public class InfraNode implements Comparable<InfraNode> {
      * his parent id, and his minimum and maximum id of his subtree.
      */
     public void debugNode () {
-        if (this.id == -1) {
+        if (this.isSentinel()) {
             System.out.println("Dummy Node");
 
         } else {
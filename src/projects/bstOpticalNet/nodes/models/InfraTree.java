@@ -0,0 +1,385 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * The InfraTree stores the network topology kept by the NetworkController as a set of
+ * primitive arrays indexed by the InfraNode id. The parent and children of a node are stored
+ * as indices, and every missing link points to a single sentinel index, whose node has id -1.
+ * The InfraNodes handed out by the tree are fixed views over one index of these arrays, so
+ * restructuring the tree never allocates.
+ * The weight of a node counts the endpoints of the completed messages inside its subtree. As
+ * the subtree of a node in the BST holds exactly the ids from minId to maxId, the endpoints
+ * are counted per id on a Fenwick tree, and the weight of a node is only resolved when read,
+ * as the count over its id range plus the offset kept on the weight array. A completed
+ * message costs O(log n) instead of a walk over its whole path, and the rotations, which
+ * keep the id ranges up to date, need no weight updates.
+ * The weights may also decay over the rounds, so the tree adapts to shifts in the traffic.
+ * With an EXPONENTIAL decay each Fenwick entry keeps the round it was last updated, and is
+ * decayed by the rounds elapsed since then whenever it is updated or read, so no pass over
+ * the whole tree is ever needed. The decayed weights are fractional and are read in units of
+ * 1 / DECAY_SCALE endpoints, so an endpoint weighs getWeightUnit(). With a WINDOW decay the
+ * endpoints are queued as they are counted and discounted once they leave the window.
+ */
+public class InfraTree {
+
+    /* Attributes */
+    int[] parent;
+    int[] leftChild;
+    int[] rightChild;
+    int[] pSwtOffset;
+    int[] lcSwtOffset;
+    int[] rcSwtOffset;
+    int[] minId;
+    int[] maxId;
+    long[] weight;
+    private long[] endpoints;
+    private double[] decayedEndpoints;
+    private long[] decayedRounds;
+    private int[] modifiedEpoch;
+    private int epoch = 0;
+
+    private WeightDecay weightDecay = WeightDecay.NONE;
+    private long decayRounds = 0;
+    private double[] decayPowers;
+    private long round = 0;
+
+    private long[] windowRounds = new long[16];
+    private int[] windowIdxs = new int[16];
+    private long[] windowDeltas = new long[16];
+    private int windowHead = 0;
+    private int windowSize = 0;
+
+    final int sentinel;
+    private final InfraNode[] nodes;
+    /* End of Attributes */
+
+    /* Weight unit of the decayed weights */
+    private static final long DECAY_SCALE = 1024;
+
+    /* The decay over k rounds is looked up as the product of two powers, of k's lower and
+     * upper DECAY_BITS bits */
+    private static final int DECAY_BITS = 10;
+    private static final int DECAY_MASK = (1 << DECAY_BITS) - 1;
+
+    /**
+     * Creates a tree with size unlinked nodes, with ids from 0 to size - 1, and the
+     * sentinel node.
+     * @param size      the number of nodes in the tree
+     */
+    public InfraTree (int size) {
+        this.sentinel = size;
+        this.parent = new int[size + 1];
+        this.leftChild = new int[size + 1];
+        this.rightChild = new int[size + 1];
+        this.pSwtOffset = new int[size + 1];
+        this.lcSwtOffset = new int[size + 1];
+        this.rcSwtOffset = new int[size + 1];
+        this.minId = new int[size + 1];
+        this.maxId = new int[size + 1];
+        this.weight = new long[size + 1];
+        this.endpoints = new long[size + 1];
+        this.modifiedEpoch = new int[size + 1];
+        this.nodes = new InfraNode[size + 1];
+
+        for (int idx = 0; idx <= size; idx++) {
+            this.parent[idx] = this.sentinel;
+            this.leftChild[idx] = this.sentinel;
+            this.rightChild[idx] = this.sentinel;
+            this.pSwtOffset[idx] = -1;
+            this.lcSwtOffset[idx] = -1;
+            this.rcSwtOffset[idx] = -1;
+            this.minId[idx] = (idx == this.sentinel ? -1 : idx);
+            this.maxId[idx] = (idx == this.sentinel ? -1 : idx);
+            this.nodes[idx] = new InfraNode(this, idx);
+        }
+    }
+
+    /**
+     * Getter for the number of nodes in the tree, without the sentinel
+     * @return          the number of nodes
+     */
+    public int size () {
+        return this.sentinel;
+    }
+
+    /**
+     * Getter for the node with the given id, id -1 being the sentinel node
+     * @param id        the InfraNode id
+     * @return          the InfraNode
+     */
+    public InfraNode getNode (int id) {
+        return this.nodes[this.indexOf(id)];
+    }
+
+    /**
+     * Getter for the sentinel node, which stands for every missing parent or child
+     * @return          the sentinel node
+     */
+    public InfraNode getSentinel () {
+        return this.nodes[this.sentinel];
+    }
+
+    /**
+     * Starts a new modification epoch. Nodes whose links or subtree range change from now on
+     * are reported by isModified until the next epoch starts.
+     */
+    public void startEpoch () {
+        this.epoch++;
+    }
+
+    /**
+     * Checks if the links or the subtree range of the node changed in the current epoch
+     * @param node      the InfraNode
+     * @return          true if the node was modified, false otherwise
+     */
+    public boolean isModified (InfraNode node) {
+        return this.modifiedEpoch[this.indexOf(node.getId())] == this.epoch;
+    }
+
+    /**
+     * Marks the node at index idx as modified in the current epoch
+     * @param idx       the index of the node
+     */
+    void markModified (int idx) {
+        this.modifiedEpoch[idx] = this.epoch;
+    }
+
+    /**
+     * Sets how the weights forget old messages. Must be set before the first message
+     * endpoint is counted.
+     * @param weightDecay   the WeightDecay
+     * @param decayRounds   the half-life of the EXPONENTIAL decay, or the length of the
+     *                      WINDOW, in rounds
+     */
+    public void setWeightDecay (WeightDecay weightDecay, long decayRounds) {
+        this.weightDecay = (decayRounds > 0 ? weightDecay : WeightDecay.NONE);
+        this.decayRounds = decayRounds;
+
+        if (this.weightDecay == WeightDecay.EXPONENTIAL) {
+            this.decayPowers = new double[2 << DECAY_BITS];
+            for (int k = 0; k <= DECAY_MASK; k++) {
+                this.decayPowers[k] = Math.pow(2, (double) -k / decayRounds);
+                this.decayPowers[k + DECAY_MASK + 1] = Math.pow(
+                    2, (double) -(k << DECAY_BITS) / decayRounds
+                );
+
+            }
+
+            this.decayedEndpoints = new double[this.sentinel + 1];
+            this.decayedRounds = new long[this.sentinel + 1];
+
+        }
+    }
+
+    /**
+     * Moves the weights to the given round, discounting the endpoints that left the window.
+     * @param round     the current round
+     */
+    public void advanceRound (long round) {
+        this.round = round;
+
+        while (
+            this.windowSize > 0 &&
+            this.windowRounds[this.windowHead] <= round - this.decayRounds
+        ) {
+            int head = this.windowHead;
+            this.updateEndpoints(this.windowIdxs[head], -this.windowDeltas[head]);
+
+            this.windowHead = (this.windowHead + 1) % this.windowRounds.length;
+            this.windowSize--;
+        }
+    }
+
+    /**
+     * Adds delta to the number of message endpoints on the node at index idx
+     * @param idx       the index of the node, not the sentinel
+     * @param delta     the number of endpoints added
+     */
+    void addEndpoints (int idx, long delta) {
+        if (this.weightDecay == WeightDecay.EXPONENTIAL) {
+            for (int i = idx + 1; i <= this.sentinel; i += i & -i) {
+                this.decayedEndpoints[i] = this.decayed(i) + delta;
+                this.decayedRounds[i] = this.round;
+
+            }
+
+            return;
+
+        } else if (this.weightDecay == WeightDecay.WINDOW) {
+            this.enqueueEndpoints(idx, delta);
+
+        }
+
+        this.updateEndpoints(idx, delta);
+    }
+
+    private void updateEndpoints (int idx, long delta) {
+        for (int i = idx + 1; i <= this.sentinel; i += i & -i) {
+            this.endpoints[i] += delta;
+
+        }
+    }
+
+    private void enqueueEndpoints (int idx, long delta) {
+        if (this.windowSize == this.windowRounds.length) {
+            int capacity = 2 * this.windowSize;
+            long[] rounds = new long[capacity];
+            int[] idxs = new int[capacity];
+            long[] deltas = new long[capacity];
+
+            for (int k = 0; k < this.windowSize; k++) {
+                int pos = (this.windowHead + k) % this.windowRounds.length;
+                rounds[k] = this.windowRounds[pos];
+                idxs[k] = this.windowIdxs[pos];
+                deltas[k] = this.windowDeltas[pos];
+
+            }
+
+            this.windowRounds = rounds;
+            this.windowIdxs = idxs;
+            this.windowDeltas = deltas;
+            this.windowHead = 0;
+        }
+
+        int tail = (this.windowHead + this.windowSize) % this.windowRounds.length;
+        this.windowRounds[tail] = this.round;
+        this.windowIdxs[tail] = idx;
+        this.windowDeltas[tail] = delta;
+        this.windowSize++;
+    }
+
+    /**
+     * Getter for the Fenwick entry i of the decayed endpoints, decayed to the current round
+     * @param i         the Fenwick index
+     * @return          the decayed number of endpoints
+     */
+    private double decayed (int i) {
+        long rounds = this.round - this.decayedRounds[i];
+
+        if (rounds >> (2 * DECAY_BITS) != 0) {
+            return this.decayedEndpoints[i] * Math.pow(2, (double) -rounds / this.decayRounds);
+
+        }
+
+        return (
+            this.decayedEndpoints[i] * this.decayPowers[(int) rounds & DECAY_MASK] *
+            this.decayPowers[DECAY_MASK + 1 + (int) (rounds >> DECAY_BITS)]
+        );
+    }
+
+    /**
+     * Getter for the decayed number of message endpoints on the nodes with index smaller
+     * than idx
+     * @param idx       the index
+     * @return          the decayed number of endpoints
+     */
+    private double countDecayedEndpoints (int idx) {
+        double count = 0;
+        for (int i = idx; i > 0; i -= i & -i) {
+            count += this.decayed(i);
+
+        }
+
+        return count;
+    }
+
+    /**
+     * Getter for the number of message endpoints on the nodes with index smaller than idx
+     * @param idx       the index
+     * @return          the number of endpoints
+     */
+    private long countEndpoints (int idx) {
+        long count = 0;
+        for (int i = idx; i > 0; i -= i & -i) {
+            count += this.endpoints[i];
+
+        }
+
+        return count;
+    }
+
+    /**
+     * Getter for the weight of one message endpoint, DECAY_SCALE with an EXPONENTIAL decay
+     * and 1 otherwise
+     * @return          the weight unit
+     */
+    public long getWeightUnit () {
+        return (this.weightDecay == WeightDecay.EXPONENTIAL ? DECAY_SCALE : 1);
+    }
+
+    /**
+     * Getter for the weight of the node at index idx, the number of message endpoints in its
+     * subtree plus its weight offset
+     * @param idx       the index of the node
+     * @return          the weight
+     */
+    long getWeight (int idx) {
+        if (idx == this.sentinel) {
+            return this.weight[idx];
+
+        } else if (this.weightDecay == WeightDecay.EXPONENTIAL) {
+            return this.weight[idx] + Math.round(DECAY_SCALE * (
+                this.countDecayedEndpoints(this.maxId[idx] + 1) -
+                this.countDecayedEndpoints(this.minId[idx])
+            ));
+
+        }
+
+        return (
+            this.weight[idx] +
+            this.countEndpoints(this.maxId[idx] + 1) - this.countEndpoints(this.minId[idx])
+        );
+    }
+
+    /**
+     * Getter for the node stored at an index of the arrays
+     * @param idx       the index
+     * @return          the InfraNode
+     */
+    InfraNode nodeAt (int idx) {
+        return this.nodes[idx];
+    }
+
+    /**
+     * Getter for the index of a node in the arrays
+     * @param id        the InfraNode id
+     * @return          the index of the node
+     */
+    int indexOf (int id) {
+        return (id == -1 ? this.sentinel : id);
+    }
+
+    /**
+     * Getter for the routing direction from the node at index idx to the node at index toIdx,
+     * following the same rules as InfraNode.getRoutingDirection.
+     * @param idx       index of the node with the message
+     * @param toIdx     index of the destination node
+     * @return          the routing direction
+     */
+    Direction getRoutingDirection (int idx, int toIdx) {
+        if (idx == this.sentinel) {
+            return Direction.PARENT;
+
+        } else if (idx == toIdx) {
+            return Direction.NULL;
+
+        } else if (this.leftChild[idx] == toIdx) {
+            return Direction.LEFTROUT;
+
+        } else if (this.rightChild[idx] == toIdx) {
+            return Direction.RIGHTROUT;
+
+        } else if (this.parent[idx] == toIdx) {
+            return Direction.PARENTROUT;
+
+        } else if (idx < toIdx && toIdx <= this.maxId[idx]) {
+            return Direction.RIGHT;
+
+        } else if (this.minId[idx] <= toIdx && toIdx < idx) {
+            return Direction.LEFT;
+
+        } else {
+            return Direction.PARENT;
+
+        }
+    }
+}
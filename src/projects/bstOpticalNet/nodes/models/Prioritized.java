@@ -0,0 +1,27 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * Interface of the requests scheduled by the NetworkController. The priority of a request is
+ * the time its message entered the network plus a random value in [0, 1), so the integral
+ * part of the priority is the round where the message was created.
+ */
+public interface Prioritized {
+
+    /**
+     * Getter for the request priority, smaller values are served first
+     * @return          the request priority
+     */
+    public double getPriority ();
+
+    /**
+     * Getter for the position of the request inside its bucket of the RoundBucketQueue
+     * @return          the position of the request
+     */
+    public int getSlot ();
+
+    /**
+     * Setter for the position of the request inside its bucket of the RoundBucketQueue
+     * @param slot      the position of the request
+     */
+    public void setSlot (int slot);
+}
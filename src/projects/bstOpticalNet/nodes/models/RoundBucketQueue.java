@@ -0,0 +1,324 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Priority structure for the requests scheduled by the NetworkController. The requests are
+ * stored in buckets keyed by the round of their priority, kept in a ring that spans from the
+ * oldest to the newest round present. Adding a request is O(1), and the requests inside a bucket
+ * are only sorted, by their natural order, when the bucket is traversed, so the tie-breaking of
+ * the natural order is kept. Every request keeps its position inside its bucket, so removing it
+ * is O(1), moving the last request of the bucket to its place. Traversing or draining the
+ * structure is linear in the number of requests and the number of rounds spanned. A request
+ * may be stored in only one RoundBucketQueue at a time.
+ * @param <T>   the request type
+ */
+public class RoundBucketQueue<T extends Comparable<T> & Prioritized> implements Iterable<T> {
+
+    private ArrayList<ArrayList<T>> buckets;
+    private boolean[] sorted;
+
+    private int head = 0;
+    private long lowRound = 0;
+    private long highRound = 0;
+    private int size = 0;
+
+    private final Cursor cursor = new Cursor();
+
+    public RoundBucketQueue () {
+        this.allocate(16);
+    }
+
+    /**
+     * Getter for the number of requests
+     * @return          the number of requests stored
+     */
+    public int size () {
+        return this.size;
+    }
+
+    /**
+     * Checks if there is any request stored
+     * @return          true if there are no requests, false otherwise
+     */
+    public boolean isEmpty () {
+        return this.size == 0;
+    }
+
+    /**
+     * Adds a request to the bucket of the round of its priority, extending the ring to the
+     * round if necessary.
+     * @param elem      the request
+     */
+    public void add (T elem) {
+        long round = this.roundOf(elem);
+
+        if (this.size == 0) {
+            this.lowRound = round;
+            this.highRound = round;
+
+        } else if (round < this.lowRound) {
+            this.ensureSpan(this.highRound - round + 1);
+            this.head = (int) ((this.head - (this.lowRound - round)) & (this.buckets.size() - 1));
+            this.lowRound = round;
+
+        } else if (round > this.highRound) {
+            this.ensureSpan(round - this.lowRound + 1);
+            this.highRound = round;
+
+        }
+
+        int idx = this.bucketIndex(round);
+        ArrayList<T> bucket = this.buckets.get(idx);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            this.buckets.set(idx, bucket);
+
+        }
+
+        elem.setSlot(bucket.size());
+        bucket.add(elem);
+        this.sorted[idx] = bucket.size() == 1;
+        this.size++;
+    }
+
+    /**
+     * Removes a request, compared by reference, from its bucket, moving the last request of the
+     * bucket to its position.
+     * @param elem      the request
+     * @return          true if the request was stored, false otherwise
+     */
+    public boolean remove (T elem) {
+        long round = this.roundOf(elem);
+        if (this.size == 0 || round < this.lowRound || round > this.highRound) {
+            return false;
+
+        }
+
+        int idx = this.bucketIndex(round);
+        ArrayList<T> bucket = this.buckets.get(idx);
+        int slot = elem.getSlot();
+        if (bucket == null || slot < 0 || slot >= bucket.size() || bucket.get(slot) != elem) {
+            return false;
+
+        }
+
+        T last = bucket.remove(bucket.size() - 1);
+        if (last != elem) {
+            bucket.set(slot, last);
+            last.setSlot(slot);
+            this.sorted[idx] = false;
+
+        }
+
+        elem.setSlot(-1);
+        this.size--;
+        this.shrinkSpan();
+
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the request that comes first in the natural order.
+     * @return          the first request or null if there is none
+     */
+    public T poll () {
+        if (this.size == 0) {
+            return null;
+
+        }
+
+        ArrayList<T> bucket = this.sortedBucket(this.head);
+        T elem = bucket.remove(bucket.size() - 1);
+        elem.setSlot(-1);
+
+        this.size--;
+        this.shrinkSpan();
+
+        return elem;
+    }
+
+    /**
+     * Iterates over the requests in their natural order, without removing them. The structure
+     * must not be modified during the iteration. The iterator is reused by every call, so the
+     * rounds of the NetworkController do not allocate, and only one iteration may be in
+     * progress at a time.
+     */
+    @Override
+    public Iterator<T> iterator () {
+        this.cursor.reset();
+
+        return this.cursor;
+    }
+
+    /**
+     * Iterator over the buckets from lowRound to highRound, each one from last to first.
+     */
+    private class Cursor implements Iterator<T> {
+        private long round;
+        private int pos;
+        private ArrayList<T> bucket;
+        private int remaining;
+
+        private void reset () {
+            this.round = lowRound;
+            this.pos = -1;
+            this.bucket = null;
+            this.remaining = size;
+        }
+
+        @Override
+        public boolean hasNext () {
+            return this.remaining > 0;
+        }
+
+        @Override
+        public T next () {
+            if (this.remaining == 0) {
+                throw new NoSuchElementException();
+
+            }
+
+            while (this.pos < 0) {
+                ArrayList<T> next = buckets.get(bucketIndex(this.round));
+                if (next != null && !next.isEmpty()) {
+                    this.bucket = sortedBucket(bucketIndex(this.round));
+                    this.pos = this.bucket.size() - 1;
+
+                }
+
+                this.round++;
+            }
+
+            this.remaining--;
+
+            return this.bucket.get(this.pos--);
+        }
+    }
+
+    /**
+     * Removes all the requests.
+     */
+    public void clear () {
+        for (int i = 0; i < this.buckets.size(); i++) {
+            if (this.buckets.get(i) != null) {
+                this.buckets.get(i).clear();
+
+            }
+        }
+
+        this.size = 0;
+    }
+
+    /**
+     * Getter for the round of a request, the integral part of its priority
+     * @param elem      the request
+     * @return          the round of the request
+     */
+    private long roundOf (T elem) {
+        return (long) Math.floor(elem.getPriority());
+    }
+
+    /**
+     * Getter for the ring position of the bucket of a round between lowRound and highRound
+     * @param round     the round
+     * @return          the position of the bucket
+     */
+    private int bucketIndex (long round) {
+        return (int) ((this.head + (round - this.lowRound)) & (this.buckets.size() - 1));
+    }
+
+    /**
+     * Returns the bucket in the given ring position ordered from last to first, sorting it if
+     * requests were added or removed since it was last sorted, and updating their positions.
+     * @param idx       the position of the bucket
+     * @return          the bucket
+     */
+    private ArrayList<T> sortedBucket (int idx) {
+        ArrayList<T> bucket = this.buckets.get(idx);
+        if (!this.sorted[idx]) {
+            Collections.sort(bucket, Collections.reverseOrder());
+            for (int slot = 0; slot < bucket.size(); slot++) {
+                bucket.get(slot).setSlot(slot);
+
+            }
+
+            this.sorted[idx] = true;
+
+        }
+
+        return bucket;
+    }
+
+    /**
+     * Moves lowRound and highRound to the closest non empty buckets.
+     */
+    private void shrinkSpan () {
+        if (this.size == 0) {
+            return;
+
+        }
+
+        while (this.isEmptyBucket(this.head)) {
+            this.head = (this.head + 1) & (this.buckets.size() - 1);
+            this.lowRound++;
+
+        }
+
+        while (this.isEmptyBucket(this.bucketIndex(this.highRound))) {
+            this.highRound--;
+
+        }
+    }
+
+    private boolean isEmptyBucket (int idx) {
+        ArrayList<T> bucket = this.buckets.get(idx);
+
+        return bucket == null || bucket.isEmpty();
+    }
+
+    /**
+     * Grows the ring so it spans at least the given number of rounds.
+     * @param span      the number of rounds
+     */
+    private void ensureSpan (long span) {
+        int capacity = this.buckets.size();
+        if (span <= capacity) {
+            return;
+
+        }
+
+        while (capacity < span) {
+            capacity *= 2;
+
+        }
+
+        this.allocate(capacity);
+    }
+
+    /**
+     * Allocates a ring with the given capacity, moving the buckets from lowRound to highRound
+     * to its beginning.
+     * @param capacity  the number of buckets, a power of 2
+     */
+    private void allocate (int capacity) {
+        ArrayList<ArrayList<T>> newBuckets = new ArrayList<>(Collections.nCopies(capacity, (ArrayList<T>) null));
+        boolean[] newSorted = new boolean[capacity];
+
+        if (this.size > 0) {
+            for (long round = this.lowRound; round <= this.highRound; round++) {
+                int idx = this.bucketIndex(round);
+                newBuckets.set((int) (round - this.lowRound), this.buckets.get(idx));
+                newSorted[(int) (round - this.lowRound)] = this.sorted[idx];
+
+            }
+        }
+
+        this.buckets = newBuckets;
+        this.sorted = newSorted;
+        this.head = 0;
+    }
+}
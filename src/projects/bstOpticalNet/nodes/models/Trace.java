@@ -0,0 +1,250 @@
+package projects.bstOpticalNet.nodes.models;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import sinalgo.runtime.Global;
+
+/**
+ * Trace reports the progress of a simulation on stdout: a summary of every round, the
+ * messages delivered to their destinations and the rotations performed by the controller.
+ * Each kind of event is guarded twice. The static final flags work as the ones of sinalgo's
+ * LogL, a flag set to false compiles the calls guarded by it out, and the TraceLevel of the
+ * run filters the events left, tracing every event in GUI mode and none in batch mode unless
+ * set otherwise.
+ * The events are stored in primitive buffers as they happen and handed, once per round or
+ * whenever a buffer fills up, to a background thread that formats and prints them, so the
+ * simulation does not wait on the pipe read by sinalgo.Run. The events must be traced by the
+ * simulation thread, the shards journal their operations for the controller to trace.
+ */
+public class Trace {
+
+    /* Compile-time guards */
+    public static final boolean ROUNDS = true;
+    public static final boolean MESSAGES = true;
+    public static final boolean OPERATIONS = true;
+
+    /* Event types */
+    private static final byte ROUND = 0;
+    private static final byte OPT_MESSAGE = 1;
+    private static final byte ROUT_MESSAGE = 2;
+    private static final byte OPERATION = 3;
+
+    private static final int BUFFER_EVENTS = 4096;
+    private static final int NUM_BUFFERS = 4;
+
+    /* Attributes */
+    private static int level = (
+        Global.isGuiMode ? TraceLevel.OPERATIONS : TraceLevel.OFF
+    ).ordinal();
+
+    private static ArrayBlockingQueue<EventBuffer> freeBuffers = null;
+    private static EventBuffer buffer = null;
+    private static ExecutorService sink = null;
+    /* End of Attributes */
+
+    /**
+     * Sets which events are traced from now on
+     * @param traceLevel    the TraceLevel
+     */
+    public static void setLevel (TraceLevel traceLevel) {
+        level = traceLevel.ordinal();
+    }
+
+    /**
+     * Checks if the events of a trace level are traced
+     * @param traceLevel    the TraceLevel
+     * @return              true if they are traced, false otherwise
+     */
+    public static boolean isEnabled (TraceLevel traceLevel) {
+        return level >= traceLevel.ordinal();
+    }
+
+    /**
+     * Traces the end of a round
+     * @param round         the round
+     * @param rcvMsgs       the number of messages received so far
+     * @param missingMsgs   the number of messages received but not delivered yet
+     */
+    public static void round (long round, int rcvMsgs, int missingMsgs) {
+        if (isEnabled(TraceLevel.ROUNDS)) {
+            record(ROUND, null, round, rcvMsgs, missingMsgs);
+
+        }
+    }
+
+    /**
+     * Traces a message delivered to its destination
+     * @param src       the id of the node that sent the message
+     * @param dst       the id of the node that received it
+     * @param routed    true if the message was routed through the tree, false if it was
+     *                  already on its destination when announced
+     */
+    public static void message (int src, int dst, boolean routed) {
+        if (isEnabled(TraceLevel.MESSAGES)) {
+            record(routed ? ROUT_MESSAGE : OPT_MESSAGE, null, 0, src, dst);
+
+        }
+    }
+
+    /**
+     * Traces an operation performed by the controller
+     * @param operation the operation name
+     */
+    public static void operation (String operation) {
+        if (isEnabled(TraceLevel.OPERATIONS)) {
+            record(OPERATION, operation, 0, 0, 0);
+
+        }
+    }
+
+    private static void record (byte type, String name, long value, int a, int b) {
+        if (buffer == null) {
+            buffer = takeBuffer();
+
+        }
+
+        buffer.add(type, name, value, a, b);
+
+        if (buffer.size == BUFFER_EVENTS) {
+            flush();
+
+        }
+    }
+
+    /**
+     * Hands the events traced so far to the background thread. Waits for a free buffer
+     * if the background thread falls NUM_BUFFERS buffers behind.
+     */
+    public static void flush () {
+        if (buffer == null || buffer.size == 0) {
+            return;
+
+        }
+
+        if (sink == null) {
+            sink = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "trace-sink");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+        }
+
+        EventBuffer full = buffer;
+        buffer = null;
+        sink.execute(() -> write(full));
+    }
+
+    /**
+     * Hands the events traced so far to the background thread and waits until every event
+     * is printed. Called at the end of the simulation, before the final results, and again
+     * when the application exits, since the background thread is a daemon and the events
+     * still queued on it would be lost by the runs that stop on a round limit.
+     */
+    public static void close () {
+        flush();
+
+        if (sink != null) {
+            sink.shutdown();
+
+            try {
+                sink.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            }
+
+            sink = null;
+        }
+    }
+
+    private static EventBuffer takeBuffer () {
+        if (freeBuffers == null) {
+            freeBuffers = new ArrayBlockingQueue<>(NUM_BUFFERS);
+            for (int i = 0; i < NUM_BUFFERS; i++) {
+                freeBuffers.add(new EventBuffer());
+
+            }
+        }
+
+        try {
+            return freeBuffers.take();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return new EventBuffer();
+        }
+    }
+
+    /**
+     * Formats and prints the events of a buffer, then returns it to the free buffers.
+     * Runs on the background thread.
+     * @param events    the EventBuffer
+     */
+    private static void write (EventBuffer events) {
+        StringBuilder lines = new StringBuilder();
+        String separator = System.lineSeparator();
+
+        for (int i = 0; i < events.size; i++) {
+            switch (events.types[i]) {
+                case ROUND:
+                    lines.append("Round ").append(events.values[i])
+                        .append(" Messages: ").append(events.as[i])
+                        .append(" Missing Messages: ").append(events.bs[i]);
+                    break;
+
+                case OPT_MESSAGE:
+                case ROUT_MESSAGE:
+                    lines.append(events.types[i] == OPT_MESSAGE ? "OPT" : "ROUT")
+                        .append("-Message received from node ").append(events.as[i])
+                        .append(" to node ").append(events.bs[i]);
+                    break;
+
+                default:
+                    lines.append(events.names[i]);
+                    break;
+            }
+
+            lines.append(separator);
+        }
+
+        System.out.print(lines);
+        System.out.flush();
+
+        events.clear();
+        freeBuffers.offer(events);
+    }
+
+    /**
+     * Fixed size buffer of events, one array per field.
+     */
+    private static class EventBuffer {
+        private byte[] types = new byte[BUFFER_EVENTS];
+        private String[] names = new String[BUFFER_EVENTS];
+        private long[] values = new long[BUFFER_EVENTS];
+        private int[] as = new int[BUFFER_EVENTS];
+        private int[] bs = new int[BUFFER_EVENTS];
+        private int size = 0;
+
+        private void add (byte type, String name, long value, int a, int b) {
+            this.types[this.size] = type;
+            this.names[this.size] = name;
+            this.values[this.size] = value;
+            this.as[this.size] = a;
+            this.bs[this.size] = b;
+            this.size++;
+        }
+
+        private void clear () {
+            Arrays.fill(this.names, 0, this.size, null);
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * Enumerator indicating how much of the simulation progress is traced. OFF traces nothing,
+ * ROUNDS the number of received and missing messages at the end of each round, MESSAGES also
+ * every message delivered to its destination, and OPERATIONS also every rotation performed
+ * by the NetworkController.
+ */
+public enum TraceLevel {
+    OFF,
+    ROUNDS,
+    MESSAGES,
+    OPERATIONS;
+
+    /**
+     * Parses the trace level from its case insensitive name, as given in the simulation
+     * parameters.
+     * @param name  the level name
+     * @return      the TraceLevel
+     */
+    public static TraceLevel fromString (String name) {
+        return TraceLevel.valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,24 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * Enumerator indicating how much of the topology the NetworkController verifies at the
+ * start of each controller step. OFF skips the verification, TOUCHED checks the nodes
+ * altered in the previous round and their neighbors, SAMPLED also checks a sliding window
+ * of the remaining nodes, and FULL walks the whole tree and every node.
+ */
+public enum VerificationLevel {
+    OFF,
+    TOUCHED,
+    SAMPLED,
+    FULL;
+
+    /**
+     * Parses the verification level from its case insensitive name, as given in the
+     * simulation parameters.
+     * @param name  the level name
+     * @return      the VerificationLevel
+     */
+    public static VerificationLevel fromString (String name) {
+        return VerificationLevel.valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,23 @@
+package projects.bstOpticalNet.nodes.models;
+
+/**
+ * Enumerator indicating how the weights of the InfraTree forget old messages. NONE counts
+ * every completed message forever, EXPONENTIAL halves the count of a message every fixed
+ * number of rounds, and WINDOW only counts the messages completed in a fixed number of
+ * previous rounds.
+ */
+public enum WeightDecay {
+    NONE,
+    EXPONENTIAL,
+    WINDOW;
+
+    /**
+     * Parses the weight decay from its case insensitive name, as given in the simulation
+     * parameters.
+     * @param name  the decay name
+     * @return      the WeightDecay
+     */
+    public static WeightDecay fromString (String name) {
+        return WeightDecay.valueOf(name.trim().toUpperCase());
+    }
+}
@@ -1,29 +1,48 @@
 package projects.bstOpticalNet.nodes.nodeImplementations;
 
 import java.awt.Graphics;
-import java.util.Set;
+import java.io.File;
 import java.util.Deque;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Stack;
 import java.util.ArrayList;
 import java.util.ArrayDeque;
-import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 
 import projects.bstOpticalNet.nodes.infrastructureImplementations.LoggerLayer;
 import projects.bstOpticalNet.nodes.messages.HasMessage;
 import projects.bstOpticalNet.nodes.messages.NewMessage;
 import projects.bstOpticalNet.nodes.messages.OpticalNetMessage;
 import projects.bstOpticalNet.nodes.messages.RoutingInfoMessage;
+import projects.bstOpticalNet.nodes.messages.WithdrawMessage;
 import projects.bstOpticalNet.nodes.models.Edge;
-import projects.bstOpticalNet.nodes.models.Pair;
+import projects.bstOpticalNet.nodes.models.EdgeSet;
 import projects.bstOpticalNet.nodes.models.Rotation;
 import projects.bstOpticalNet.nodes.models.Direction;
 import projects.bstOpticalNet.nodes.models.InfraNode;
+import projects.bstOpticalNet.nodes.models.InfraTree;
+import projects.bstOpticalNet.nodes.models.RoundBucketQueue;
 import projects.bstOpticalNet.nodes.models.AvailablePorts;
+import projects.bstOpticalNet.nodes.models.ClusterBatch;
+import projects.bstOpticalNet.nodes.models.ContentionProfiler;
+import projects.bstOpticalNet.nodes.models.ControllerShard;
+import projects.bstOpticalNet.nodes.models.EventLog;
+import projects.bstOpticalNet.nodes.models.FreePorts;
+import projects.bstOpticalNet.nodes.models.Trace;
+import projects.bstOpticalNet.nodes.models.TraceLevel;
+import projects.bstOpticalNet.nodes.models.VerificationLevel;
 import sinalgo.gui.transformation.PositionTransformation;
+import sinalgo.nodes.PacketBuffer;
+import sinalgo.nodes.RingBufferPacketBuffer;
 import sinalgo.nodes.messages.Inbox;
 import sinalgo.nodes.messages.Message;
+import sinalgo.configuration.Configuration;
+import sinalgo.runtime.Global;
 import sinalgo.tools.Tools;
+import sinalgo.tools.logging.Logging;
 
 /**
  * The NetworkController is the abstract class of the controller node that will act
@@ -34,18 +53,96 @@ public abstract class NetworkController extends LoggerLayer {
     protected boolean seq = true;
 
     /* Attributes */
-    private ArrayList<Boolean> usedNodes;
-    protected PriorityQueue<HasMessage> nodesWithMsg = new PriorityQueue<HasMessage>();
-    protected PriorityQueue<RoutingInfoMessage> routingNodes = new PriorityQueue<RoutingInfoMessage>();
+    private int[] lockStamps;
+    private boolean[] lockedByRouting;
+    private int lockEpoch = 0;
+    private boolean lockingRoutingNodes = false;
+    private boolean routingAttempt = false;
+    private int cutThroughHops = 0;
+
+    private ContentionProfiler contentionProfiler = null;
+    private EventLog eventLog = null;
+    private int profiledRequestId = -1;
+    private long grantedRequests = 0;
+    private ArrayList<HasMessage> pendingRequests;
+    protected RoundBucketQueue<HasMessage> nodesWithMsg = new RoundBucketQueue<HasMessage>();
+    protected RoundBucketQueue<RoutingInfoMessage> routingNodes = new RoundBucketQueue<RoutingInfoMessage>();
     protected Stack<Edge> rmvEdges = new Stack<Edge>();
     protected Stack<Edge> swapEdges = new Stack<Edge>();
     protected Stack<Edge> doubleSwapEdges = new Stack<Edge>();
     protected Deque<Edge> addEdges = new ArrayDeque<Edge>();
     protected ArrayList<Edge> assertAlterations = new ArrayList<Edge>();
-
+    private EdgeSet redundantLinks = new EdgeSet();
+    private ClusterBatch[] clusterBatches;
+    private FreePorts[] clusterFreePorts;
+    private int[] queuedClusters = new int[16];
+    private int numQueuedClusters = 0;
+    private int numBatchedEdges = 0;
+    private int[] additionClusters = new int[16];
+    private int[] additionPositions = new int[16];
+    private int numAdditions = 0;
+
+    private static final int PARALLEL_UPDATE_THRESHOLD = 512;
+    private static final int REMOVALS = 0;
+    private static final int DOUBLE_SWAPS = 1;
+    private static final int ADDITIONS = 2;
+    private InfraNode[] routNodes = new InfraNode[4];
+
+    private VerificationLevel verificationLevel = (
+        Global.isGuiMode ? VerificationLevel.FULL : VerificationLevel.TOUCHED
+    );
+    private int[] verificationStamps;
+    private int[] touchedNodes;
+    private int verificationStamp = 0;
+    private int numTouchedNodes = 0;
+    private int sampleCursor = 0;
+
+    private HasMessage[] plannedRequests = new HasMessage[16];
+    private Rotation[] plannedRotations = new Rotation[16];
+    private double[] plannedValues = new double[16];
+    private InfraNode[] plannedPaths = new InfraNode[16 * PLANNED_PATH_STRIDE];
+    private int[] plannedPathHops = new int[16];
+    private int numPlannedRequests = 0;
+    private int plannedHops = 2;
+
+    private static final int PARALLEL_PLANNING_THRESHOLD = 512;
+    private static final int MAX_PLANNED_HOPS = 8;
+    private static final int PLANNED_PATH_STRIDE = MAX_PLANNED_HOPS + 2;
+    private static final int FOOTPRINT_STRIDE = MAX_PLANNED_HOPS + 14;
+
+    private boolean pipelinedPlanning = false;
+    private ExecutorService pipelinedPlanner = null;
+    private CompletableFuture<Void> pipelinedPlan = null;
+    private int[] pipelinedNodes = new int[16];
+    private int[] pipelinedDsts = new int[16];
+    private int numPipelinedRequests = 0;
+    private int[] pipelinedPlanDst;
+    private int[] pipelinedPlanStamp;
+    private Rotation[] pipelinedPlanOps;
+    private int pipelineStamp = 0;
+
+    private ControllerShard[] shards = new ControllerShard[0];
+    private InfraNode[] shardRoots = new InfraNode[0];
+    private int numActiveShards = 0;
+    private ControllerShard coordinator = new ControllerShard();
+    private ControllerShard[] requestShards = new ControllerShard[16];
+    private int[] plannedFootprints = new int[16 * FOOTPRINT_STRIDE];
+    private int[] plannedFootprintSizes = new int[16];
+    private int[] plannedShards = new int[16];
+    private int[] shardWaves = new int[0];
+    private int[] shardStamps;
+    private int[] shardMarks;
+    private int[] coordinatorStamps;
+    private int[] coordinatorMarks;
+    private int waveEpoch = 0;
+    private ThreadLocal<ControllerShard> committingShard = new ThreadLocal<ControllerShard>();
+
+    protected InfraTree infraTree;
     protected ArrayList<InfraNode> tree;
     protected ArrayList<NetworkNode> netNodes;
-    protected ArrayList<ArrayList<NetworkSwitch>> clusters;
+    private NetworkSwitch[] switchTable;
+    private int[] clusterPairSwitches;
+    private int[] clusterMinIds;
 
     protected int numNodes = 0;
     protected int switchSize = 0;
@@ -79,7 +176,7 @@ public abstract class NetworkController extends LoggerLayer {
     /**
      * Initializes the NetworkController and its switches. If an edgeList is provided the tree
      * topology follow the specified one. If the edge list can't build an BST, the cons'tructor
-     * builds a balanced BST instead.
+     * builds a balanced BST instead. The switches are only created once a link is set on them.
      * @param numNodes      Number of nudes in the network
      * @param switchSize    Number of input/output ports in the switch
      * @param netNodes      Array with the initialized NetworkNodes
@@ -93,7 +190,6 @@ public abstract class NetworkController extends LoggerLayer {
         this.numSwitches = 0;
         this.switchSize = switchSize;
         this.tree = new ArrayList<>();
-        this.clusters = new ArrayList<>();
         this.netNodes = netNodes;
         this.mirrored = mirrored;
 
@@ -112,49 +208,217 @@ public abstract class NetworkController extends LoggerLayer {
             0
         );
 
-        for (int clsId = 0; clsId < this.numClustersType1; clsId++) {
-            this.clusters.add(new ArrayList<>());
+        this.numSwitches = (
+            this.numClustersType1 * SIZE_CLUSTER_TYPE1 + this.numClustersType2 * SIZE_CLUSTER_TYPE2
+        );
+
+        if (!mirrored) {
+            this.clusterFreePorts = new FreePorts[this.numClustersType1 + this.numClustersType2];
+
+        }
+
+        this.buildSwitchTable();
+        this.resetRoundInfo();
+        this.setupTree(edgeList);
+    }
+
+    /**
+     * Allocates the table of switches indexed by the switch id, empty until the switches are
+     * first used, and stores the smallest node id of the two ranges of every cluster and,
+     * for every pair of type 1 clusters holding the nodes of an edge, the id of the first
+     * switch of the cluster implementing the edge. The switch of an edge is then found by
+     * adding its offset to the entry of the pair. The ids follow the order the clusters are
+     * numbered, type 1 clusters first.
+     */
+    private void buildSwitchTable () {
+        this.switchTable = new NetworkSwitch[this.numSwitches];
+        this.clusterMinIds = new int[2 * (this.numClustersType1 + this.numClustersType2)];
+        this.clusterPairSwitches = new int[this.numClustersType1 * this.numClustersType1];
 
-            for (int i = 0; i < SIZE_CLUSTER_TYPE1; i++) {
-                NetworkSwitch swt = new NetworkSwitch(
-                    clsId * this.clusterSize + 1, (clsId + 1) * this.clusterSize, i,  this.netNodes
+        for (int clsId1 = 0; clsId1 < this.numClustersType1; clsId1++) {
+            for (int clsId2 = 0; clsId2 < this.numClustersType1; clsId2++) {
+                int clsId = (
+                    clsId1 == clsId2 ?
+                    clsId1 :
+                    this.numClustersType1 + this.unionPos(clsId1, clsId2)
                 );
-                swt.setIndex(this.numSwitches++);
 
-                this.clusters.get(clsId).add(swt);
+                this.clusterMinIds[2 * clsId] = Math.min(clsId1, clsId2) * this.clusterSize + 1;
+                this.clusterMinIds[2 * clsId + 1] = Math.max(clsId1, clsId2) * this.clusterSize + 1;
+                this.clusterPairSwitches[clsId1 * this.numClustersType1 + clsId2] = (
+                    this.getFirstSwitchId(clsId)
+                );
             }
         }
+    }
 
-        for (int clsId1 = 0; clsId1 < this.numClustersType1; clsId1++) {
-            for (int clsId2 = clsId1 + 1; clsId2 < this.numClustersType1; clsId2++) {
-                int clsId = this.clusters.size();
-                this.clusters.add(new ArrayList<>());
+    /**
+     * Getter for the id of the first switch of the cluster clsId
+     * @param clsId     the cluster id
+     * @return          the switch id
+     */
+    private int getFirstSwitchId (int clsId) {
+        return (
+            clsId < this.numClustersType1 ?
+            clsId * SIZE_CLUSTER_TYPE1 :
+            this.numClustersType1 * SIZE_CLUSTER_TYPE1 +
+            (clsId - this.numClustersType1) * SIZE_CLUSTER_TYPE2
+        );
+    }
 
-                for (int swtIdx = 0; swtIdx < SIZE_CLUSTER_TYPE2; swtIdx += 2) {
-                    int minIdInput = (swtIdx % 4 == 0 ? clsId2 : clsId1) * this.clusterSize + 1;
-                    int minIdOutput = (swtIdx % 4 == 0 ? clsId1 : clsId2) * this.clusterSize + 1;
+    /**
+     * Getter for the number of switches of the cluster clsId
+     * @param clsId     the cluster id
+     * @return          the number of switches
+     */
+    private int getNumClusterSwitches (int clsId) {
+        return (clsId < this.numClustersType1 ? SIZE_CLUSTER_TYPE1 : SIZE_CLUSTER_TYPE2);
+    }
 
-                    NetworkSwitch swt = new NetworkSwitch(
-                        minIdInput, minIdInput + this.clusterSize - 1,
-                        minIdOutput, minIdOutput + this.clusterSize - 1, swtIdx, this.netNodes
-                    );
-                    swt.setIndex(this.numSwitches++);
+    /**
+     * Getter for the switch at offset swtOffset of the cluster clsId, creating it on its first
+     * use. A new switch holds only inactive links, as every switch did before any edge was
+     * set on it, so a switch dropped by reclaimIdleSwitches is rebuilt in the same state.
+     * The switches of a cluster are only created by the thread applying its batch.
+     * @param clsId     the cluster id
+     * @param swtOffset the switch offset
+     * @return          the NetworkSwitch
+     */
+    private NetworkSwitch getSwitch (int clsId, int swtOffset) {
+        int swtId = this.getFirstSwitchId(clsId) + swtOffset;
 
-                    this.clusters.get(clsId).add(swt);
+        NetworkSwitch swt = this.switchTable[swtId];
+        if (swt == null) {
+            int minIdInput = this.getMinInputId(clsId, swtOffset);
+            int minIdOutput = this.getMinOutputId(clsId, swtOffset);
 
-                    swt = new NetworkSwitch(
-                        minIdOutput, minIdOutput + this.clusterSize - 1,
-                        minIdInput, minIdInput + this.clusterSize - 1, swtIdx + 1, this.netNodes
-                    );
-                    swt.setIndex(this.numSwitches++);
+            swt = new NetworkSwitch(
+                minIdInput, minIdInput + this.clusterSize - 1,
+                minIdOutput, minIdOutput + this.clusterSize - 1, swtOffset, this.netNodes
+            );
+            swt.setIndex(swtId);
+
+            if (!this.mirrored) {
+                swt.setFreePorts(this.getFreePorts(clsId));
 
-                    this.clusters.get(clsId).add(swt);
-                }
             }
+
+            this.switchTable[swtId] = swt;
         }
 
-        this.resetRoundInfo();
-        this.setupTree(edgeList);
+        return swt;
+    }
+
+    /**
+     * Getter for the smallest id of the nodes connected to the input ports of the switch at
+     * offset swtOffset of the cluster clsId. On clusters of type 2 the switches at offsets 0
+     * and 3 take their inputs from the second range of nodes and the outputs from the first
+     * one, and the switches at offsets 1 and 2 the other way around.
+     * @param clsId     the cluster id
+     * @param swtOffset the switch offset
+     * @return          the smallest node id
+     */
+    private int getMinInputId (int clsId, int swtOffset) {
+        boolean secondRange = (swtOffset % 4 == 0 || swtOffset % 4 == 3);
+
+        return this.clusterMinIds[2 * clsId + (secondRange ? 1 : 0)];
+    }
+
+    /**
+     * Getter for the smallest id of the nodes connected to the output ports of the switch at
+     * offset swtOffset of the cluster clsId
+     * @param clsId     the cluster id
+     * @param swtOffset the switch offset
+     * @return          the smallest node id
+     */
+    private int getMinOutputId (int clsId, int swtOffset) {
+        boolean secondRange = (swtOffset % 4 == 1 || swtOffset % 4 == 2);
+
+        return this.clusterMinIds[2 * clsId + (secondRange ? 1 : 0)];
+    }
+
+    /**
+     * Getter for the free-port bitsets of the cluster clsId, creating them with every port of
+     * every switch of the cluster free, the state of switches not created yet. Only the
+     * non-mirrored network looks switches up by their free ports.
+     * @param clsId     the cluster id
+     * @return          the FreePorts of the cluster
+     */
+    private FreePorts getFreePorts (int clsId) {
+        FreePorts freePorts = this.clusterFreePorts[clsId];
+        if (freePorts == null) {
+            int numClusterSwitches = this.getNumClusterSwitches(clsId);
+
+            freePorts = new FreePorts(
+                this.clusterMinIds[2 * clsId], this.clusterMinIds[2 * clsId + 1],
+                this.clusterSize, numClusterSwitches
+            );
+            for (int swtOffset = 0; swtOffset < numClusterSwitches; swtOffset++) {
+                freePorts.setSwitchFree(
+                    this.getMinInputId(clsId, swtOffset), this.getMinOutputId(clsId, swtOffset),
+                    swtOffset
+                );
+
+            }
+
+            this.clusterFreePorts[clsId] = freePorts;
+        }
+
+        return freePorts;
+    }
+
+    /**
+     * Checks if the switch at offset swtOffset of the cluster clsId holds an active link from
+     * in to out, without creating the switch
+     * @param clsId     the cluster id
+     * @param swtOffset the switch offset
+     * @param in        the network node id connected to the input port
+     * @param out       the network node id connected to the output port
+     * @return          true if the link is active, false otherwise
+     */
+    private boolean hasLink (int clsId, int swtOffset, int in, int out) {
+        NetworkSwitch swt = this.switchTable[this.getFirstSwitchId(clsId) + swtOffset];
+
+        return swt != null && swt.hasLink(in, out);
+    }
+
+    /**
+     * Drops the switches of the cluster clsId left without active links, along with the
+     * free-port bitsets of the cluster once none of its switches remains. Both are rebuilt
+     * in the same state when the cluster is used again.
+     * @param clsId     the cluster id
+     */
+    private void reclaimIdleSwitches (int clsId) {
+        int firstSwtId = this.getFirstSwitchId(clsId);
+        int lastSwtId = firstSwtId + this.getNumClusterSwitches(clsId);
+        boolean empty = true;
+
+        for (int swtId = firstSwtId; swtId < lastSwtId; swtId++) {
+            NetworkSwitch swt = this.switchTable[swtId];
+
+            if (swt != null && swt.getNumActiveLinks() == 0) {
+                this.switchTable[swtId] = null;
+
+            } else if (swt != null) {
+                empty = false;
+
+            }
+        }
+
+        if (empty && !this.mirrored) {
+            this.clusterFreePorts[clsId] = null;
+
+        }
+    }
+
+    /**
+     * The controller receives messages from every NetworkNode, so its incoming packets are
+     * kept in a ring buffer of per-round arrays instead of a linked list.
+     * @return  the packet buffer of the controller
+     */
+    @Override
+    protected PacketBuffer createPacketBuffer () {
+        return new RingBufferPacketBuffer();
     }
 
     /**
@@ -171,11 +435,20 @@ public abstract class NetworkController extends LoggerLayer {
      * @param edgeList  Array with the network edges, if provided
      */
     private void setupTree (ArrayList<Integer> edgeList) {
-        this.usedNodes = new ArrayList<>();
+        this.lockStamps = new int[this.numNodes + 1];
+        this.lockedByRouting = new boolean[this.numNodes + 1];
+        this.pipelinedPlanDst = new int[this.numNodes + 1];
+        this.pipelinedPlanStamp = new int[this.numNodes + 1];
+        this.pipelinedPlanOps = new Rotation[this.numNodes + 1];
+        this.pendingRequests = new ArrayList<>();
+        this.infraTree = new InfraTree(this.numNodes + 1);
+        this.verificationStamps = new int[this.numNodes + 1];
+        this.touchedNodes = new int[this.numNodes + 1];
+        this.clusterBatches = new ClusterBatch[this.numClustersType1 + this.numClustersType2];
 
         for (int i = 0; i <= this.numNodes; i++) {
-            this.usedNodes.add(false);
-            this.tree.add(new InfraNode());
+            this.pendingRequests.add(null);
+            this.tree.add(this.infraTree.getNode(i));
 
         }
 
@@ -229,6 +502,35 @@ public abstract class NetworkController extends LoggerLayer {
 
     /* Rotations */
 
+    /**
+     * Evaluates the rotation a node with a message is about to perform over the current
+     * topology. It is called while planning the round, possibly on a worker thread, so it
+     * must only read the tree, and again when the commit finds the plan invalidated. The
+     * NetworkController gives every rotation the same value.
+     * @param op        the rotation
+     * @param node      InfraNode with the message
+     * @return          the value of the rotation, handed to acceptsRotation
+     */
+    protected double evaluateRotation (Rotation op, InfraNode node) {
+        return 0;
+    }
+
+    /**
+     * Checks if a rotation evaluated by evaluateRotation is worth performing. The
+     * NetworkController performs every rotation.
+     * @param value     the value of the rotation
+     * @return          true if the rotation should be performed, false otherwise
+     */
+    protected boolean acceptsRotation (double value) {
+        return true;
+    }
+
+    /**
+     * Called once a rotation accepted by acceptsRotation is performed.
+     * @param value     the value of the rotation
+     */
+    protected void rotationPerformed (double value) { }
+
     /**
      * This method selects the nodes involved in alterations over a zig-zig
      * bottom up rotation and checks if they are available to perform this
@@ -610,9 +912,9 @@ public abstract class NetworkController extends LoggerLayer {
         this.mapConn(y, z, this.mirrored, false);
         this.mapConn(w, y);
 
-        this.assertAlterations.add(new Edge(z, c, true, false));
-        this.assertAlterations.add(new Edge(y, z, true, false));
-        this.assertAlterations.add(new Edge(w, y, true, false));
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, z, c, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, y, z, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, w, y, true, false, -1);
 
     }
 
@@ -655,11 +957,11 @@ public abstract class NetworkController extends LoggerLayer {
         this.mapConn(x, y, this.mirrored, false);
         this.mapConn(w, x);
 
-        this.assertAlterations.add(new Edge(z, c, true, false));
-        this.assertAlterations.add(new Edge(y, b, true, false));
-        this.assertAlterations.add(new Edge(x, y, true, false));
-        this.assertAlterations.add(new Edge(y, z, true, false));
-        this.assertAlterations.add(new Edge(w, x, true, false));
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, z, c, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, y, b, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, x, y, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, y, z, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, w, x, true, false, -1);
 
     }
 
@@ -715,39 +1017,188 @@ public abstract class NetworkController extends LoggerLayer {
         this.mapConn(x, z);
         this.mapConn(w, x);
 
-        this.assertAlterations.add(new Edge(y, b, true, false));
-        this.assertAlterations.add(new Edge(x, y, true, false));
-        this.assertAlterations.add(new Edge(z, c, true, false));
-        this.assertAlterations.add(new Edge(x, z, true, false));
-        this.assertAlterations.add(new Edge(w, x, true, false));
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, y, b, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, x, y, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, z, c, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, x, z, true, false, -1);
+        this.queueEdge(ControllerShard.ASSERT_ALTERATIONS, w, x, true, false, -1);
 
     }
 
     /**
      * This function checks if a set of nodes are available to realize one step. If none of them
      * are already occupied this round it marks all of them as occupied and returns true, if not
-     * return false.
-     * @param nodes     Set of InfraNodes
+     * return false. The rotations call it with fixed arities, so no array is allocated per
+     * attempt, and the missing nodes are filled with the sentinel, which is always available.
+     * @param a         InfraNode
+     * @param b         InfraNode
+     * @param c         InfraNode
+     * @param d         InfraNode
+     * @param e         InfraNode
+     * @param f         InfraNode
+     * @return          True if the nodes can be used for this step, false if at
+     * least one of them are already occupied
+     */
+    protected boolean areAvailableNodes (
+        InfraNode a, InfraNode b, InfraNode c, InfraNode d, InfraNode e, InfraNode f
+    ) {
+        if (
+            this.isDenied(a) || this.isDenied(b) || this.isDenied(c) ||
+            this.isDenied(d) || this.isDenied(e) || this.isDenied(f)
+        ) {
+            return false;
+
+        }
+
+        this.lockAvailable(a);
+        this.lockAvailable(b);
+        this.lockAvailable(c);
+        this.lockAvailable(d);
+        this.lockAvailable(e);
+        this.lockAvailable(f);
+
+        return true;
+    }
+
+    /**
+     * Same as areAvailableNodes, for five nodes.
+     */
+    protected boolean areAvailableNodes (
+        InfraNode a, InfraNode b, InfraNode c, InfraNode d, InfraNode e
+    ) {
+        return this.areAvailableNodes(a, b, c, d, e, this.infraTree.getSentinel());
+    }
+
+    /**
+     * Same as areAvailableNodes, for three nodes.
+     */
+    protected boolean areAvailableNodes (InfraNode a, InfraNode b, InfraNode c) {
+        InfraNode sentinel = this.infraTree.getSentinel();
+
+        return this.areAvailableNodes(a, b, c, sentinel, sentinel, sentinel);
+    }
+
+    /**
+     * Same as areAvailableNodes, for a single node, sparing the varargs array on the
+     * per-request call of updateConn.
+     * @param node      the InfraNode
+     * @return          True if the node can be used for this step, false if it is
+     * already occupied
+     */
+    protected boolean areAvailableNodes (InfraNode node) {
+        if (node.getId() == -1) {
+            return true;
+
+        } else if (this.isLocked(node)) {
+            return false;
+
+        }
+
+        this.lockNode(node);
+
+        return true;
+    }
+
+    /**
+     * Same as areAvailableNodes, for the first count nodes of a scratch array.
+     * @param nodes     Array of InfraNodes
+     * @param count     the number of nodes in use in the array
      * @return          True if the nodes can be used for this step, false if at
      * least one of them are already occupied
      */
-    protected boolean areAvailableNodes (InfraNode... nodes) {
-        for (InfraNode infNode: nodes) {
-            if (infNode.getId() != -1 && this.usedNodes.get(infNode.getId())) {
+    protected boolean areAvailableNodes (InfraNode[] nodes, int count) {
+        for (int i = 0; i < count; i++) {
+            if (this.isDenied(nodes[i])) {
                 return false;
 
             }
         }
 
-        for (InfraNode infNode: nodes) {
-            if (infNode.getId() != -1) {
-                this.usedNodes.set(infNode.getId(), true);
+        for (int i = 0; i < count; i++) {
+            this.lockAvailable(nodes[i]);
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if the node was already locked this round, recording the denial on the
+     * contention profiler if it is enabled.
+     * @param node      the InfraNode
+     * @return          true if the node is locked, false if it is free or the sentinel
+     */
+    private boolean isDenied (InfraNode node) {
+        if (node.getId() == -1 || !this.isLocked(node)) {
+            return false;
+
+        }
+
+        if (this.contentionProfiler != null) {
+            this.recordDenial(node);
 
-            }
         }
 
         return true;
     }
+
+    /**
+     * Locks the node for this round, unless it is the sentinel.
+     * @param node      the InfraNode
+     */
+    private void lockAvailable (InfraNode node) {
+        if (node.getId() != -1) {
+            this.lockNode(node);
+
+        }
+    }
+
+    /**
+     * Checks if the node was locked this round. A node is locked when its lock slot holds
+     * the current lock epoch, so starting a new epoch releases every node at once.
+     * @param node      the InfraNode, not a dummy node
+     * @return          true if the node is locked, false otherwise
+     */
+    private boolean isLocked (InfraNode node) {
+        return this.lockStamps[node.getId()] == this.lockEpoch;
+    }
+
+    /**
+     * Locks the node for the rest of the round, remembering if the lock comes from a message
+     * already being routed.
+     * @param node      the InfraNode, not a dummy node
+     */
+    private void lockNode (InfraNode node) {
+        this.lockStamps[node.getId()] = this.lockEpoch;
+        this.lockedByRouting[node.getId()] = this.lockingRoutingNodes;
+    }
+
+    /**
+     * Reports to the contention profiler that the request being handled was denied because
+     * the blocking node is locked. A shard writes the denial to its journal instead.
+     * @param blockingNode  the locked InfraNode
+     */
+    private void recordDenial (InfraNode blockingNode) {
+        int reason = (
+            this.lockedByRouting[blockingNode.getId()] ?
+                ContentionProfiler.LOCKED_BY_ROUTING : ContentionProfiler.LOCKED_BY_PEER
+        );
+
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalDenial(
+                blockingNode.getId(), reason,
+                (shard.isRoutingAttempt() ? ContentionProfiler.ROUTING : ContentionProfiler.ROTATION)
+            );
+
+        } else if (this.profiledRequestId != -1) {
+            this.contentionProfiler.recordDenial(
+                this.getCurrentRound(), this.profiledRequestId, blockingNode.getId(), reason,
+                (this.routingAttempt ? ContentionProfiler.ROUTING : ContentionProfiler.ROTATION)
+            );
+
+        }
+    }
     /* End of Rotations */
 
     /* Getters */
@@ -904,21 +1355,25 @@ public abstract class NetworkController extends LoggerLayer {
 
     /**
      * Getter for the switch id were the edge between fromNode and toNode can be represented.
-     * Equals to the sum between SIZE_CLUSTER_TYPE1 * min(clusterId, numClustersType1)
-     * SIZE_CLUSTER_TYPE_2 * max(0, clusterId - numClustersType1) and 1 if it is a mirrored edge,
-     * toNode is the real parent of fromNode in the network, or 0 if it is a real edge,
-     * fromNode is the parent of toNode.
+     * Equals to the id of the first switch of the cluster holding the edge, read from the
+     * table of cluster pairs, plus the switch offset stored on fromNode for the edge. Only
+     * the FULL verification level checks that the switch actually holds the link, so the
+     * other levels resolve each routed hop with a couple of array reads.
      * @param fromNode  the parent node in the edge representation
      * @param toNode    the child node in the edge representation
      * @return          the switch id
      */
     @Override
     protected int getRoutingSwitchId (InfraNode fromNode, InfraNode toNode) {
-    	int clsId = this.getClusterId(fromNode, toNode);
-    	int swtOffset = fromNode.getSwtOffset(toNode);
-        NetworkSwitch swt = this.clusters.get(clsId).get(swtOffset);
+        int swtId = this.getSwitchId(fromNode, toNode);
+
+        if (this.verificationLevel != VerificationLevel.FULL) {
+            return swtId;
 
-        if (!swt.hasLink(fromNode.getNetId(), toNode.getNetId())) {
+        }
+
+        NetworkSwitch swt = this.switchTable[swtId];
+        if (swt == null || !swt.hasLink(fromNode.getNetId(), toNode.getNetId())) {
         	fromNode.debugNode();
         	toNode.debugNode();
 
@@ -927,8 +1382,22 @@ public abstract class NetworkController extends LoggerLayer {
 
         }
 
-        return swt.getIndex();
+        return swtId;
+
+    }
 
+    /**
+     * Getter for the id of the switch holding the edge between fromNode and toNode, without
+     * checking the link on the switch.
+     * @param fromNode  the parent node in the edge representation
+     * @param toNode    the child node in the edge representation
+     * @return          the switch id
+     */
+    private int getSwitchId (InfraNode fromNode, InfraNode toNode) {
+        return this.clusterPairSwitches[
+            fromNode.getId() / this.clusterSize * this.numClustersType1 +
+            toNode.getId() / this.clusterSize
+        ] + fromNode.getSwtOffset(toNode);
     }
 
     /**
@@ -976,570 +1445,1939 @@ public abstract class NetworkController extends LoggerLayer {
         return true;
     }
 
+    /**
+     * Getter for how much of the topology is verified at the start of each controller step
+     * @return          the verification level
+     */
+    public VerificationLevel getVerificationLevel () {
+        return this.verificationLevel;
+    }
+
     /* End of Getters */
 
     /* Setters */
     /**
-     * [OUTDATED?] -> To be replaced the logIncrementation call in the mapConn needs to be replaced.
+     * Enables or disables the pipelined planning, in which the rotations of the next round
+     * are planned on a background thread while the nodes route their messages.
+     * @param pipelinedPlanning true to plan the next round in the background
      */
-    private void setInitialCon (InfraNode fromNode, InfraNode toNode) {
-        if (toNode.getId() == this.numNodes) {
-            Tools.fatalError("Trying to make root node as a child");
-
-        }
-
-        if (fromNode.getId() > toNode.getId()) {
-            fromNode.setLeftChild(toNode);
+    public void setPipelinedPlanning (boolean pipelinedPlanning) {
+        this.pipelinedPlanning = pipelinedPlanning;
+    }
 
-        } else {
-            fromNode.setRightChild(toNode);
+    /**
+     * Shuts down the thread of the pipelined planning, if it was started. Called when the
+     * application exits, the plan in progress, if any, is left to finish on its own.
+     */
+    public void stopPipelinedPlanning () {
+        if (this.pipelinedPlanner != null) {
+            this.pipelinedPlanner.shutdown();
+            this.pipelinedPlanner = null;
 
         }
-
-        toNode.setParent(fromNode);
-        if (!this.isValidNode(fromNode))
-            return;
-
-        Edge downEdge = new Edge(fromNode, toNode, true, true);
-        Edge upEdge = new Edge(toNode, fromNode, false, true);
-        this.addEdges.addLast(downEdge);
-        this.addEdges.addLast(upEdge);
-
-        return;
     }
 
     /**
-     * Sets the connection between fromNode and toNode. Updating the former connections
-     * they shared.
-     * @param fromNode  the parent node
-     * @param toNode    the child node
+     * Enables the cut-through routing, in which a message allowed to rout reserves up to
+     * maxHops free nodes along its path and crosses all of them in the same round, instead of
+     * one hop per round. Zero keeps one hop per round, and a negative value reserves every
+     * free node up to the destination.
+     * @param maxHops   the maximum number of hops reserved per round
      */
-    private void mapConn (InfraNode fromNode, InfraNode toNode) {
-        this.mapConn(fromNode, toNode, true, true);
+    public void setCutThroughHops (int maxHops) {
+        this.cutThroughHops = (maxHops < 0 ? Integer.MAX_VALUE : maxHops);
     }
 
     /**
-     * Sets the connection between fromNode and toNode. Updating the former connections
-     * they shared.
-     * @param fromNode  the parent node
-     * @param toNode    the child node
+     * Shards the controller over numShards subtrees of the network, usually one per core,
+     * committing the requests local to each subtree in parallel, with the same results as
+     * the sequential controller. Values below 2 keep the sequential controller.
+     * @param numShards the number of shards
      */
-    private void mapConn (InfraNode fromNode, InfraNode toNode, boolean addEdge, boolean doubleSwap) {
-        if (
-            (this.isValidNode(fromNode) || fromNode.getId() == this.getNumNodes()) &&
-            this.isValidNode(toNode)
-        ) {
-            Edge downEdge = new Edge(fromNode, toNode, true, false);
-            Edge upEdge = new Edge(toNode, fromNode, false, false);
-            boolean left = fromNode.getId() > toNode.getId();
-
-            if (left) {
-                fromNode.setLeftChild(toNode);
-
-            } else {
-                fromNode.setRightChild(toNode);
+    public void setControllerShards (int numShards) {
+        int size = (numShards > 1 ? numShards : 0);
 
-            }
-            toNode.setParent(fromNode);
+        this.shards = new ControllerShard[size];
+        this.shardRoots = new InfraNode[size];
+        for (int k = 0; k < size; k++) {
+            this.shards[k] = new ControllerShard();
 
-            if (addEdge && fromNode.getId() != this.getNumNodes()) {
-	            this.addEdges.addLast(downEdge);
-	            this.addEdges.addLast(upEdge);
+        }
 
-            } else if (fromNode.getId() != this.getNumNodes()) {
-                downEdge.setSwtOffset(fromNode.getParentSwitchOffset());
-                upEdge.setSwtOffset(
-                    !left ? toNode.getLeftChildSwitchOffset() : toNode.getRightChildSwitchOffset()
-                );
+        this.shardWaves = new int[size];
+        this.shardStamps = new int[this.numNodes + 1];
+        this.shardMarks = new int[this.numNodes + 1];
+        this.coordinatorStamps = new int[this.numNodes + 1];
+        this.coordinatorMarks = new int[this.numNodes + 1];
+    }
 
-                if (doubleSwap) {
-                    Edge rmvEdg = new Edge(toNode, fromNode, true, true);
-                    this.rmvEdges.push(rmvEdg);
-                    this.doubleSwapEdges.push(downEdge);
-                    this.doubleSwapEdges.push(upEdge);
+    /**
+     * Enables the contention profiler, which records the requests denied because of locked
+     * nodes and writes them on the folder given by path at the end of the simulation.
+     * @param path      path to the folder where the profiler files are stored
+     */
+    public void enableContentionProfiler (String path) {
+        this.contentionProfiler = new ContentionProfiler(this.numNodes + 1, path);
+    }
 
-                } else {
-                    this.swapEdges.push(downEdge);
+    /**
+     * Enables the binary event log, which records every rotation, link update and routing hop
+     * on the events.bin file of the folder given by path. The current tree is written first,
+     * as the initial links of the current round.
+     * @param path      path to the folder where the event log is stored
+     */
+    public void enableEventLog (String path) {
+        String dir = Configuration.logFileDirectory;
+        if (!dir.isEmpty()) {
+            dir += "/";
 
-                }
+        }
 
-            	fromNode.resetParent(toNode);
-            	toNode.resetChild(fromNode);
+        if (Configuration.logToTimeDirectory) {
+            dir += Logging.getTimeDirectoryName() + "/";
 
-            }
         }
-    }
 
-    private void updateLinks () {
-        while (!this.rmvEdges.isEmpty()) {
-            Edge edge = this.rmvEdges.pop();
-            int clsId = this.getClusterId(edge.getFromNode(), edge.getToNode());
+        new File(dir + path).mkdirs();
+        this.eventLog = new EventLog(
+            dir + path + "/events.bin", this.numNodes, this.numSwitches, this.switchSize,
+            this.clusterSize, this.mirrored
+        );
 
-            if (!edge.isInitial()) {
-                NetworkSwitch swt = this.clusters.get(clsId).get(edge.getSwtOffset());
-                swt.removeLink(
-                    edge.getFromNode().getNetId(), edge.getToNode().getNetId()
-                );
-                this.logDecrementActivePorts(swt.getIndex());
+        for (int nodeId = 0; nodeId < this.numNodes; nodeId++) {
+            InfraNode node = this.infraTree.getNode(nodeId);
+
+            if (this.isValidNode(node.getParent())) {
+                this.recordLink(EventLog.LINK_ADD, node, node.getParent(), false, true);
 
             }
 
-            if (edge.isDownward() && edge.getFromNodeId() > edge.getToNodeId()) {
-                edge.getFromNode().setLeftChildSwitchOffset(-1);
-                this.getNetNode(edge.getFromNode()).removeLeftChild();
+            if (node.getLeftChildId() != -1) {
+                this.recordLink(EventLog.LINK_ADD, node, node.getLeftChild(), true, true);
 
-            } else if (edge.isDownward()) {
-                edge.getFromNode().setRightChildSwitchOffset(-1);
-                this.getNetNode(edge.getFromNode()).removeRightChild();
+            }
 
-            } else {
-                edge.getFromNode().setParentSwitchOffset(-1);
-                this.getNetNode(edge.getFromNode()).removeParent();
+            if (node.getRightChildId() != -1) {
+                this.recordLink(EventLog.LINK_ADD, node, node.getRightChild(), true, true);
 
             }
         }
+    }
+
+    /**
+     * Writes a link update to the event log, on the switch implementing the edge
+     * @param type      LINK_ADD, LINK_REMOVE or LINK_SWAP
+     * @param fromNode  the node connected to the input port
+     * @param toNode    the node connected to the output port
+     * @param downward  true if toNode is a child of fromNode
+     * @param initial   true if the edge belongs to the initial configuration
+     */
+    private void recordLink (
+        byte type, InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial
+    ) {
+        this.eventLog.recordLink(
+            this.getCurrentRound(), type, fromNode.getId(), toNode.getId(),
+            this.getSwitchId(fromNode, toNode), downward, initial
+        );
+    }
+
+    /**
+     * Writes a rotation performed on node to the event log, or to the journal of the shard
+     * committing on the current thread.
+     * @param op        the Rotation performed
+     * @param node      the node with the message
+     * @param yId       the id of its parent before the rotation
+     * @param zId       the id of its grandparent before the rotation
+     * @param wId       the id of its great-grandparent before the rotation
+     * @param dstNode   the message destination
+     */
+    private void recordRotation (
+        Rotation op, InfraNode node, int yId, int zId, int wId, InfraNode dstNode
+    ) {
+        if (this.eventLog == null) {
+            return;
+
+        }
+
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalRotationEvent(op.ordinal(), node.getId(), yId, zId, wId, dstNode.getId());
+
+        } else {
+            this.eventLog.recordRotation(
+                this.getCurrentRound(), op, node.getId(), yId, zId, wId, dstNode.getId()
+            );
+
+        }
+    }
+
+    /**
+     * Writes the link updates applied by one phase of the queued batches to the event log,
+     * cluster by cluster, in the order they were applied to the switches.
+     * @param phase     REMOVALS, DOUBLE_SWAPS or ADDITIONS
+     */
+    private void recordClusterBatches (int phase) {
+        long round = this.getCurrentRound();
+
+        for (int k = 0; k < this.numQueuedClusters; k++) {
+            ClusterBatch batch = this.clusterBatches[this.queuedClusters[k]];
+            int firstSwtId = this.getFirstSwitchId(batch.getClusterId());
+
+            if (phase == REMOVALS) {
+                for (int i = 0; i < batch.getNumRemovals(); i++) {
+                    Edge edge = batch.getRemoval(i);
+                    this.eventLog.recordLink(
+                        round, EventLog.LINK_REMOVE, edge.getFromNodeId(), edge.getToNodeId(),
+                        firstSwtId + edge.getSwtOffset(), edge.isDownward(),
+                        edge.isInitial()
+                    );
+
+                }
+
+            } else if (phase == DOUBLE_SWAPS) {
+                for (int i = 0; i < batch.getNumDoubleSwaps(); i++) {
+                    Edge edge = batch.getDoubleSwap(i);
+                    this.eventLog.recordLink(
+                        round, EventLog.LINK_ADD, edge.getFromNodeId(), edge.getToNodeId(),
+                        firstSwtId + edge.getSwtOffset(), edge.isDownward(),
+                        edge.isInitial()
+                    );
+
+                }
+
+            } else {
+                int numLinks = (
+                    batch.getNumAdditions() > 0 ?
+                    batch.getAdditionLinkEnd(batch.getNumAdditions() - 1) :
+                    0
+                );
+
+                for (int i = 0; i < numLinks; i++) {
+                    InfraNode fromNode = this.infraTree.getNode(batch.getLinkFromId(i));
+                    InfraNode toNode = this.infraTree.getNode(batch.getLinkToId(i));
+
+                    this.eventLog.recordLink(
+                        round, EventLog.LINK_ADD, fromNode.getId(), toNode.getId(),
+                        firstSwtId + batch.getLinkSwtOffset(i),
+                        fromNode.isDownwardEdge(toNode), batch.isLinkInitial(i)
+                    );
+
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc} Also writes the hop to the event log, if it is enabled.
+     */
+    @Override
+    public void logIncrementRouting (InfraNode fromNode, InfraNode toNode) {
+        super.logIncrementRouting(fromNode, toNode);
+
+        if (this.eventLog != null) {
+            this.eventLog.recordRouting(
+                this.getCurrentRound(), fromNode.getId(), toNode.getId(),
+                this.getSwitchId(fromNode, toNode)
+            );
+
+        }
+    }
+
+    /**
+     * {@inheritDoc} Also counts the grants of the round, so the contention profiler can tell
+     * which requests were stalled. Grants made by a shard are counted when its journal is
+     * replayed.
+     */
+    @Override
+    public void logIncrementActiveRequests () {
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalActiveRequest();
+
+        } else {
+            super.logIncrementActiveRequests();
+            this.grantedRequests++;
+
+        }
+    }
+
+    /**
+     * {@inheritDoc} Rotations performed by a shard are logged when its journal is replayed.
+     */
+    @Override
+    public void logRotation (long num) {
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalRotation(num);
+
+        } else {
+            super.logRotation(num);
+
+        }
+    }
+
+    /**
+     * {@inheritDoc} Also prints the pending trace before the results, and exports the
+     * contention profiler results and closes the event log, if they are enabled.
+     */
+    @Override
+    public void logEndOfSimulation () {
+        Trace.close();
+        super.logEndOfSimulation();
+
+        if (this.contentionProfiler != null) {
+            this.contentionProfiler.export(this.projectName);
+
+        }
+
+        this.closeEventLog();
+    }
+
+    /**
+     * {@inheritDoc} Also writes the records of the round to the event log, if it is enabled,
+     * so a simulation that never reaches logEndOfSimulation loses at most its last round.
+     */
+    @Override
+    public void logRoundResults () {
+        super.logRoundResults();
+
+        if (this.eventLog != null) {
+            this.eventLog.flush();
+
+        }
+    }
+
+    /**
+     * Writes the buffered records and closes the event log, if it is enabled. It is called
+     * both at the end of the simulation and when the application exits, so closing an
+     * already closed log does nothing.
+     */
+    public void closeEventLog () {
+        if (this.eventLog != null) {
+            this.eventLog.close();
+            this.eventLog = null;
+
+        }
+    }
+
+    /**
+     * Sets how much of the topology is verified at the start of each controller step.
+     * Defaults to FULL in GUI mode and to TOUCHED in batch mode.
+     * @param verificationLevel the verification level
+     */
+    public void setVerificationLevel (VerificationLevel verificationLevel) {
+        this.verificationLevel = verificationLevel;
+    }
+
+    /**
+     * [OUTDATED?] -> To be replaced the logIncrementation call in the mapConn needs to be replaced.
+     */
+    private void setInitialCon (InfraNode fromNode, InfraNode toNode) {
+        if (toNode.getId() == this.numNodes) {
+            Tools.fatalError("Trying to make root node as a child");
+
+        }
+
+        if (fromNode.getId() > toNode.getId()) {
+            fromNode.setLeftChild(toNode);
+
+        } else {
+            fromNode.setRightChild(toNode);
+
+        }
+
+        toNode.setParent(fromNode);
+        if (!this.isValidNode(fromNode))
+            return;
+
+        this.addEdges.addLast(Edge.fabricate(fromNode, toNode, true, true));
+        this.addEdges.addLast(Edge.fabricate(toNode, fromNode, false, true));
+
+        return;
+    }
+
+    /**
+     * Sets the connection between fromNode and toNode. Updating the former connections
+     * they shared.
+     * @param fromNode  the parent node
+     * @param toNode    the child node
+     */
+    private void mapConn (InfraNode fromNode, InfraNode toNode) {
+        this.mapConn(fromNode, toNode, true, true);
+    }
+
+    /**
+     * Sets the connection between fromNode and toNode. Updating the former connections
+     * they shared.
+     * @param fromNode  the parent node
+     * @param toNode    the child node
+     */
+    private void mapConn (InfraNode fromNode, InfraNode toNode, boolean addEdge, boolean doubleSwap) {
+        if (
+            (this.isValidNode(fromNode) || fromNode.getId() == this.getNumNodes()) &&
+            this.isValidNode(toNode)
+        ) {
+            boolean left = fromNode.getId() > toNode.getId();
+
+            if (left) {
+                fromNode.setLeftChild(toNode);
+
+            } else {
+                fromNode.setRightChild(toNode);
+
+            }
+            toNode.setParent(fromNode);
+
+            if (addEdge && fromNode.getId() != this.getNumNodes()) {
+                this.queueEdge(ControllerShard.ADD_EDGES, fromNode, toNode, true, false, -1);
+                this.queueEdge(ControllerShard.ADD_EDGES, toNode, fromNode, false, false, -1);
+
+            } else if (fromNode.getId() != this.getNumNodes()) {
+                int downSwtOffset = fromNode.getParentSwitchOffset();
+
+                if (doubleSwap) {
+                    int upSwtOffset = (
+                        !left ? toNode.getLeftChildSwitchOffset() : toNode.getRightChildSwitchOffset()
+                    );
+
+                    this.queueEdge(ControllerShard.RMV_EDGES, toNode, fromNode, true, true, -1);
+                    this.queueEdge(
+                        ControllerShard.DOUBLE_SWAP_EDGES, fromNode, toNode, true, false, downSwtOffset
+                    );
+                    this.queueEdge(
+                        ControllerShard.DOUBLE_SWAP_EDGES, toNode, fromNode, false, false, upSwtOffset
+                    );
+
+                } else {
+                    this.queueEdge(
+                        ControllerShard.SWAP_EDGES, fromNode, toNode, true, false, downSwtOffset
+                    );
+
+                }
+
+            	fromNode.resetParent(toNode);
+            	toNode.resetChild(fromNode);
+
+            }
+        }
+    }
+
+    /**
+     * Applies the link alterations queued this round to the switches. The removed, double
+     * swapped and added edges are grouped by the switch cluster holding them, and every
+     * phase is applied as one batch per cluster. Clusters share no switch, and a round never
+     * changes the same port of a node through two clusters, so with enough edges the batches
+     * of a phase are applied in parallel. The active ports of every switch are logged once
+     * per round, from the changes counted by the batches.
+     */
+    private void updateLinks () {
+        while (!this.rmvEdges.isEmpty()) {
+            Edge edge = this.rmvEdges.pop();
+            this.getClusterBatch(edge).addRemoval(edge);
+
+        }
+
+        this.applyClusterBatches(REMOVALS);
+        if (this.eventLog != null) {
+            this.recordClusterBatches(REMOVALS);
+
+        }
+
+        while (!this.swapEdges.isEmpty()) {
+            Edge edge = this.swapEdges.pop();
+            InfraNode fromNode = edge.getFromNode();
+            InfraNode toNode = edge.getToNode();
+
+            if (fromNode.getId() > toNode.getId()) {
+                fromNode.setLeftChildSwitchOffset(fromNode.getParentSwitchOffset());
+                toNode.setParentSwitchOffset(toNode.getRightChildSwitchOffset());
+
+                fromNode.setParentSwitchOffset(-1);
+                toNode.setRightChildSwitchOffset(-1);
+
+            } else {
+                fromNode.setRightChildSwitchOffset(fromNode.getParentSwitchOffset());
+                toNode.setParentSwitchOffset(toNode.getLeftChildSwitchOffset());
+
+                fromNode.setParentSwitchOffset(-1);
+                toNode.setLeftChildSwitchOffset(-1);
+
+            }
+
+        	this.getNetNode(toNode).swapChild(fromNode.getNetId());
+        	this.getNetNode(fromNode).swapParent();
+
+            if (this.eventLog != null) {
+                this.recordLink(EventLog.LINK_SWAP, fromNode, toNode, true, edge.isInitial());
+
+            }
+
+            Edge.free(edge);
+        }
+
+        while (!this.doubleSwapEdges.isEmpty()) {
+            Edge edge = this.doubleSwapEdges.pop();
+            this.getClusterBatch(edge).addDoubleSwap(edge);
+
+        }
+
+        this.applyClusterBatches(DOUBLE_SWAPS);
+        if (this.eventLog != null) {
+            this.recordClusterBatches(DOUBLE_SWAPS);
+
+        }
+
+        this.numAdditions = 0;
+        while (!this.addEdges.isEmpty()) {
+            Edge edge = this.addEdges.removeFirst();
+            ClusterBatch batch = this.getClusterBatch(edge);
+
+            if (this.numAdditions == this.additionClusters.length) {
+                this.additionClusters = Arrays.copyOf(this.additionClusters, 2 * this.numAdditions);
+                this.additionPositions = Arrays.copyOf(this.additionPositions, 2 * this.numAdditions);
+
+            }
+
+            this.additionClusters[this.numAdditions] = batch.getClusterId();
+            this.additionPositions[this.numAdditions++] = batch.addAddition(edge);
+        }
+
+        this.applyClusterBatches(ADDITIONS);
+        if (this.eventLog != null) {
+            this.recordClusterBatches(ADDITIONS);
+
+        }
+
+        this.logEssentialLinkUpdates();
+        this.clearClusterBatches();
+    }
+
+    /**
+     * Getter for the batch of the cluster holding the edge, queueing it for this round.
+     * @param edge      the Edge
+     * @return          the ClusterBatch
+     */
+    private ClusterBatch getClusterBatch (Edge edge) {
+        int clsId = this.getClusterId(edge.getFromNode(), edge.getToNode());
+
+        ClusterBatch batch = this.clusterBatches[clsId];
+        if (batch == null) {
+            batch = new ClusterBatch(clsId, this.getNumClusterSwitches(clsId));
+            this.clusterBatches[clsId] = batch;
+
+        }
+
+        if (!batch.isQueued()) {
+            if (this.numQueuedClusters == this.queuedClusters.length) {
+                this.queuedClusters = Arrays.copyOf(this.queuedClusters, 2 * this.numQueuedClusters);
+
+            }
+
+            this.queuedClusters[this.numQueuedClusters++] = clsId;
+            batch.setQueued(true);
+        }
+
+        this.numBatchedEdges++;
+
+        return batch;
+    }
+
+    /**
+     * Applies one phase of every queued batch, in parallel when the round altered enough edges.
+     * @param phase     REMOVALS, DOUBLE_SWAPS or ADDITIONS
+     */
+    private void applyClusterBatches (int phase) {
+        if (this.numBatchedEdges >= PARALLEL_UPDATE_THRESHOLD) {
+            IntStream.range(0, this.numQueuedClusters).parallel().forEach(
+                k -> this.applyClusterBatch(this.clusterBatches[this.queuedClusters[k]], phase)
+            );
+
+        } else {
+            for (int k = 0; k < this.numQueuedClusters; k++) {
+                this.applyClusterBatch(this.clusterBatches[this.queuedClusters[k]], phase);
+
+            }
+        }
+    }
+
+    /**
+     * Applies one phase of a batch to the switches of its cluster, in the order the edges
+     * were queued.
+     * @param batch     the ClusterBatch
+     * @param phase     REMOVALS, DOUBLE_SWAPS or ADDITIONS
+     */
+    private void applyClusterBatch (ClusterBatch batch, int phase) {
+        int clsId = batch.getClusterId();
+
+        if (phase == REMOVALS) {
+            for (int i = 0; i < batch.getNumRemovals(); i++) {
+                Edge edge = batch.getRemoval(i);
+
+                if (!edge.isInitial()) {
+                    this.getSwitch(clsId, edge.getSwtOffset()).removeLink(
+                        edge.getFromNode().getNetId(), edge.getToNode().getNetId()
+                    );
+                    batch.addPortDelta(edge.getSwtOffset(), -1);
+
+                }
+
+                if (edge.isDownward() && edge.getFromNodeId() > edge.getToNodeId()) {
+                    edge.getFromNode().setLeftChildSwitchOffset(-1);
+                    this.getNetNode(edge.getFromNode()).removeLeftChild();
+
+                } else if (edge.isDownward()) {
+                    edge.getFromNode().setRightChildSwitchOffset(-1);
+                    this.getNetNode(edge.getFromNode()).removeRightChild();
+
+                } else {
+                    edge.getFromNode().setParentSwitchOffset(-1);
+                    this.getNetNode(edge.getFromNode()).removeParent();
+
+                }
+            }
+
+        } else if (phase == DOUBLE_SWAPS) {
+            for (int i = 0; i < batch.getNumDoubleSwaps(); i++) {
+                Edge edge = batch.getDoubleSwap(i);
+                InfraNode fromNode = edge.getFromNode();
+                InfraNode toNode = edge.getToNode();
+
+                if (edge.isDownward()) {
+                    if (fromNode.getId() > toNode.getId()) {
+                        fromNode.setLeftChildSwitchOffset(edge.getSwtOffset());
+
+                    } else {
+                        fromNode.setRightChildSwitchOffset(edge.getSwtOffset());
+
+                    }
+
+                    this.getSwitch(clsId, edge.getSwtOffset()).updateChild(
+                        fromNode.getNetId(), toNode.getNetId()
+                    );
+
+                } else {
+                    fromNode.setParentSwitchOffset(edge.getSwtOffset());
+
+                    this.getSwitch(clsId, edge.getSwtOffset()).updateParent(
+                        fromNode.getNetId(), toNode.getNetId()
+                    );
+                }
+            }
+
+        } else {
+            for (int i = 0; i < batch.getNumAdditions(); i++) {
+                Edge edge = batch.getAddition(i);
+
+                batch.startAddition(i);
+                this.setLink(
+                    batch, edge.getFromNode(), edge.getToNode(), edge.isDownward(), edge.isInitial()
+                );
+            }
+        }
+    }
+
+    /**
+     * Returns the edges of the queued batches to the pool, logs the change in active ports of
+     * their switches, drops the switches left idle and empties the batches for the next round.
+     */
+    private void clearClusterBatches () {
+        for (int k = 0; k < this.numQueuedClusters; k++) {
+            ClusterBatch batch = this.clusterBatches[this.queuedClusters[k]];
+            int firstSwtId = this.getFirstSwitchId(batch.getClusterId());
+
+            for (int i = 0; i < batch.getNumRemovals(); i++) {
+                Edge.free(batch.getRemoval(i));
+
+            }
+
+            for (int i = 0; i < batch.getNumDoubleSwaps(); i++) {
+                Edge.free(batch.getDoubleSwap(i));
+
+            }
+
+            for (int i = 0; i < batch.getNumAdditions(); i++) {
+                Edge.free(batch.getAddition(i));
+
+            }
+
+            for (int swtOffset = 0; swtOffset < batch.getNumSwitches(); swtOffset++) {
+                if (batch.getPortDelta(swtOffset) != 0) {
+                    this.logActivePortsDelta(firstSwtId + swtOffset, batch.getPortDelta(swtOffset));
+
+                }
+            }
+
+            this.reclaimIdleSwitches(batch.getClusterId());
+            batch.clear();
+        }
+
+        this.numQueuedClusters = 0;
+        this.numBatchedEdges = 0;
+    }
+
+    /**
+     * Sets the link between fromNode and toNode on a switch of the cluster of the batch. On a
+     * mirrored network the switch is fixed by the direction of the edge, otherwise the first
+     * switch with both ports free is used, or an augmenting path is opened between the last
+     * switches with a free input and a free output port, as found on the cluster bitsets.
+     * @param batch     the ClusterBatch of the cluster holding the edge
+     * @param fromNode  the node connected to the input port
+     * @param toNode    the node connected to the output port
+     * @param downward  true if toNode is a child of fromNode
+     * @param initial   true if the edge belongs to the initial configuration
+     */
+    private void setLink (
+        ClusterBatch batch, InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial
+    ) {
+        int clsId = batch.getClusterId();
+        if (this.mirrored) {
+            boolean left = (downward ?
+                fromNode.getId() > toNode.getId() :
+                toNode.getId() > fromNode.getId()
+            );
+            int swtOffset = (left ? 0 : 2) + (downward ? 0 : 1);
+            NetworkSwitch swt = this.getSwitch(clsId, swtOffset);
+
+            batch.addPortDelta(swtOffset, 1);
+
+            if (downward) {
+                swt.updateChild(fromNode.getNetId(), toNode.getNetId());
+                if (left) {
+                    fromNode.setLeftChildSwitchOffset(swtOffset);
+
+                } else {
+                    fromNode.setRightChildSwitchOffset(swtOffset);
+
+                }
+
+            } else {
+                swt.updateParent(fromNode.getNetId(), toNode.getNetId());
+                fromNode.setParentSwitchOffset(swtOffset);
+
+            }
+
+            batch.addLink(fromNode.getId(), toNode.getId(), swtOffset, initial);
+
+        } else {
+            FreePorts freePorts = this.getFreePorts(clsId);
+            int inOffset = freePorts.findBoth(fromNode.getNetId(), toNode.getNetId());
+            int outOffset = inOffset;
+
+            if (inOffset == -1) {
+                inOffset = freePorts.findLastInput(fromNode.getNetId());
+                outOffset = freePorts.findLastOutput(toNode.getNetId());
+
+            }
+
+            if (inOffset == -1 || outOffset == -1) {
+                Tools.fatalError(
+                    "It was not possible to find a switch within" +
+                    " the cluster capable of holding this edge"
+                );
+            }
+
+            this.augmentingPath(
+                batch, fromNode, toNode, this.getSwitch(clsId, inOffset),
+                this.getSwitch(clsId, outOffset), initial
+            );
+        }
+    }
+
+    /**
+     * Logs an alteration for every link set this round that is not part of the initial
+     * configuration, visiting the links from the last one set, and skipping the links
+     * already logged.
+     */
+    private void logEssentialLinkUpdates () {
+        this.redundantLinks.clear();
+
+        for (int g = this.numAdditions - 1; g >= 0; g--) {
+            ClusterBatch batch = this.clusterBatches[this.additionClusters[g]];
+            int addition = this.additionPositions[g];
+
+            for (
+                int i = batch.getAdditionLinkEnd(addition) - 1;
+                i >= batch.getAdditionLinkStart(addition); i--
+            ) {
+                if (
+                    !batch.isLinkInitial(i) &&
+                    this.redundantLinks.add(Edge.encode(batch.getLinkFromId(i), batch.getLinkToId(i)))
+                ) {
+                    this.logIncrementAlterations(
+                        this.getFirstSwitchId(batch.getClusterId()) + batch.getLinkSwtOffset(i),
+                        this.infraTree.getNode(batch.getLinkFromId(i))
+                    );
+
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the link between fromNode and toNode on the switch inSwt, where the input port of
+     * fromNode is free, and opens an augmenting path between inSwt and outSwt, where the
+     * output port of toNode is free. The link displaced from each switch is moved to the
+     * other one until a link lands on free ports. Every active link of the two switches is
+     * moved at most once, so the path is walked iteratively with at most 2 * size + 1 steps,
+     * and a longer path means the bitsets and the switches disagree.
+     * @param batch     the ClusterBatch of the cluster holding the switches
+     * @param fromNode  the node connected to the input port
+     * @param toNode    the node connected to the output port
+     * @param inSwt     the switch where the input port of fromNode is free
+     * @param outSwt    the switch where the output port of toNode is free
+     * @param initial   true if the edge belongs to the initial configuration
+     */
+    private void augmentingPath (
+        ClusterBatch batch, InfraNode fromNode, InfraNode toNode, NetworkSwitch inSwt,
+        NetworkSwitch outSwt, boolean initial
+    ) {
+        NetworkSwitch cSwt = inSwt, nSwt = outSwt;
+        boolean chkOutput = true;
+        int maxSteps = 2 * inSwt.getSize() + 1;
+
+        for (int step = 0; step < maxSteps; step++) {
+            AvailablePorts avPorts = cSwt.getAvailablePorts(fromNode.getNetId(), toNode.getNetId());
+            batch.addLink(fromNode.getId(), toNode.getId(), cSwt.getOffset(), initial);
+
+            InfraNode newFromNode = (
+                !chkOutput ? fromNode :
+                this.getInfraNode(cSwt.getConnectedInputNodeId(toNode.getNetId()))
+            );
+            InfraNode newToNode = (
+                chkOutput ? toNode :
+                this.getInfraNode(cSwt.getConnectedOutputNodeId(fromNode.getNetId()))
+            );
+
+            if (fromNode.isDownwardEdge(toNode)) {
+                cSwt.updateChild(fromNode.getNetId(), toNode.getNetId());
+                if (fromNode.getId() > toNode.getId()) {
+                    fromNode.setLeftChildSwitchOffset(cSwt.getOffset());
+
+                } else {
+                    fromNode.setRightChildSwitchOffset(cSwt.getOffset());
+
+                }
+
+            } else {
+                cSwt.updateParent(fromNode.getNetId(), toNode.getNetId());
+                fromNode.setParentSwitchOffset(cSwt.getOffset());
+
+            }
+
+            batch.addPortDelta(cSwt.getOffset(), 1);
+
+            if (chkOutput ? avPorts.availableOutput() : avPorts.availableInput()) {
+                return;
+
+            }
+
+            batch.addPortDelta(nSwt.getOffset(), -1);
+
+            NetworkSwitch swt = cSwt;
+            cSwt = nSwt;
+            nSwt = swt;
+            fromNode = newFromNode;
+            toNode = newToNode;
+            chkOutput = !chkOutput;
+        }
+
+        Tools.fatalError("The augmenting path between two switches did not end on free ports");
+    }
+
+    private void pushRmvEdge (InfraNode fromNode, InfraNode toNode, boolean downward) {
+        if (!this.isValidNode(fromNode) || !this.isValidNode(toNode)) {
+            if (downward && fromNode.getId() == this.getNumNodes()) {
+                fromNode.removeLeftChild();
+
+            } else if (!downward && toNode.getId() == this.getNumNodes()) {
+                fromNode.removeParent();
+
+            }
+
+            return;
+
+        }
+
+        int swtOffset = fromNode.getSwtOffset(toNode);
+        if (downward && fromNode.getId() > toNode.getId()) {
+            fromNode.removeLeftChild();
+
+        } else if (downward) {
+            fromNode.removeRightChild();
+
+        } else {
+            fromNode.removeParent();
+
+        }
+
+        this.queueEdge(ControllerShard.RMV_EDGES, fromNode, toNode, downward, false, swtOffset);
+
+    }
+    /* End of Setters
+
+    /* Auxiliary Functions */
+    /**
+     * Retrieves the position for the cluster of type 2. Given by the between the
+     * max(clsId1, clsId2) and the sum of terms belonging  to the arithmetic progression
+     * AP(n) = ((a0 + an) * n) / 2, such that a0 is the number of clusters type 1 - 1,
+     * an the number of clusters type 1 - min(clsId1, clsId2) and n the min(clsId1, clsId2)
+     * @param clsId1    the cluster type 1 id for the first node
+     * @param clsId2    the cluster type 1 id for the second node
+     * @return          the position of the cluster type 2 in the arithmetic progression
+     */
+    protected int unionPos (int clsId1, int clsId2) {
+        /*
+            AP(n) = ((a0 + an) * n) / 2
+            a0 = NUM_CLUSTERS - 1
+            an = NUM_CLUSTER - 1 - clsId1 + 1
+            n = clsId1
+        */
+
+        if (clsId1 > clsId2) {
+            int aux = clsId1;
+            clsId1 = clsId2;
+            clsId2 = aux;
+        }
+
+        int apSum = (
+            clsId1 != 0 ?
+            ((2 * this.numClustersType1 - 1 - clsId1) * (clsId1)) / 2 :
+            0
+        );
+        return apSum + clsId2 - clsId1 - 1;
+    }
+
+    /**
+     * This method traverses the nodes that still have messages pending routing and locks them
+     * and their remaining routing path. If at least one of this nodes wouldn't be able
+     * to finish it's routing the simulation must be ended with an error.
+     */
+    protected void lockRoutingNodes () {
+        this.lockingRoutingNodes = true;
+
+        while (!this.routingNodes.isEmpty()) {
+            RoutingInfoMessage routMsg = this.routingNodes.poll();
+            int nodeId = routMsg.getNodeId();
+            InfraNode node = this.getInfraNode(nodeId);
+            InfraNode dstNode = this.getInfraNode(routMsg.getDst());
+
+            if (!this.allowRouting(node, dstNode, routMsg)) {
+                Tools.fatalError("Nodes that were supposed to rout are already occupied");
+
+            }
+        }
+
+        this.lockingRoutingNodes = false;
+    }
+
+    /**
+     * Registers the request announced by a NetworkNode in a HasMessage, replacing the request
+     * previously announced by the same node. The request is kept until the node replaces or
+     * withdraws it.
+     * @param hasmsg    the HasMessage announcing the request
+     */
+    protected void registerRequest (HasMessage hasmsg) {
+        this.withdrawRequest(hasmsg.getCurrId());
+
+        this.pendingRequests.set(hasmsg.getCurrId(), hasmsg);
+        this.nodesWithMsg.add(hasmsg);
+    }
+
+    /**
+     * Removes the request of a NetworkNode, if there is one, returning its HasMessage to the pool.
+     * @param nodeId    the id of the NetworkNode
+     */
+    protected void withdrawRequest (int nodeId) {
+        HasMessage hasmsg = this.pendingRequests.get(nodeId);
+        if (hasmsg != null) {
+            this.nodesWithMsg.remove(hasmsg);
+            this.pendingRequests.set(nodeId, null);
+            HasMessage.free(hasmsg);
+
+        }
+    }
+
+    /**
+     * This method locks the routing nodes and then, for every node with a message, if it is
+     * possible, performs the rotation specified by the getRotationToPerformed, and if it is not
+     * tries to rout the message 2 times. If neither step is possible, due to involved nodes being
+     * locked or other issues, the node is not allowed to act in this round. With the controller
+     * sharded, the requests are committed by the shards owning them and by the coordinator.
+     */
+    protected void updateConn () {
+        this.lockRoutingNodes();
+        if (this.shards.length > 1) {
+            this.assignShards();
+
+        }
+
+        this.planRotations();
+
+        if (this.shards.length > 1) {
+            this.commitSharded();
+
+        } else {
+            for (int i = 0; i < this.numPlannedRequests; i++) {
+                int requestId = this.getInfraNode(this.plannedRequests[i].getCurrId()).getId();
+
+                long grantsBefore = this.grantedRequests;
+                this.profiledRequestId = requestId;
+
+                this.commitRequest(i);
+
+                if (this.contentionProfiler != null) {
+                    this.contentionProfiler.endRequestRound(
+                        requestId, this.grantedRequests > grantsBefore
+                    );
+
+                }
+            }
+        }
+
+        this.profiledRequestId = -1;
+    }
+
+    /**
+     * Performs the planned rotation of the i-th planned request, planning it again if a
+     * previous commit invalidated it, or routes its message when the rotation is not possible.
+     * @param i     the index of the request in the planning order
+     */
+    private void commitRequest (int i) {
+        HasMessage hasmsg = this.plannedRequests[i];
+        int nodeId = hasmsg.getCurrId();
+
+        InfraNode node = this.getInfraNode(nodeId);
+        InfraNode dstNode = this.getInfraNode(hasmsg.getDst());
+
+        Rotation op = this.plannedRotations[i];
+        double value = this.plannedValues[i];
+        if (!this.isPlanValid(i, node)) {
+            op = this.getRotationToPerform(node, dstNode);
+            value = this.evaluateRotation(op, node);
+
+        }
+
+        int yId = -1, zId = -1, wId = -1;
+        if (this.eventLog != null) {
+            yId = node.getParentId();
+            zId = node.getParent().getParentId();
+            wId = node.getParent().getParent().getParentId();
+
+        }
+
+        switch (op) {
+            case NULL:
+                this.allowRouting(node, dstNode, 1, i);
+                break;
+
+            case SEMI_ZIGZIGLEFT_BOTTOMUP:
+            case SEMI_ZIGZIGRIGHT_BOTTOMUP:
+                if (this.acceptsRotation(value) && this.semiZigZigBottomUp(node)) {
+                    this.rotationPerformed(value);
+                    this.traceOperation("semiZigZigBottomUp");
+                    this.recordRotation(op, node, yId, zId, wId, dstNode);
+                    this.logIncrementActiveRequests();
+
+                    InfraNode rfrshNode = this.getInfraNode(nodeId);
+                    InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+
+                    this.grantRouting(rfrshNode, nxtNode, 1);
+
+                } else {
+                    this.allowRouting(node, dstNode, 2, i);
 
-        while (!this.swapEdges.isEmpty()) {
-            Edge edge = this.swapEdges.pop();
-            InfraNode fromNode = edge.getFromNode();
-            InfraNode toNode = edge.getToNode();
+                }
+                break;
 
-            if (fromNode.getId() > toNode.getId()) {
-                fromNode.setLeftChildSwitchOffset(fromNode.getParentSwitchOffset());
-                toNode.setParentSwitchOffset(toNode.getRightChildSwitchOffset());
+            case SEMI_ZIGZAGLEFT_BOTTOMUP:
+            case SEMI_ZIGZAGRIGHT_BOTTOMUP:
+                if (this.acceptsRotation(value) && this.zigZagBottomUp(node)) {
+                    this.rotationPerformed(value);
+                    this.traceOperation("zigZagBottomUp");
+                    this.recordRotation(op, node, yId, zId, wId, dstNode);
+                    this.logIncrementActiveRequests();
 
-                fromNode.setParentSwitchOffset(-1);
-                toNode.setRightChildSwitchOffset(-1);
+                } else {
+                    this.allowRouting(node, dstNode, 2, i);
 
-            } else {
-                fromNode.setRightChildSwitchOffset(fromNode.getParentSwitchOffset());
-                toNode.setParentSwitchOffset(toNode.getLeftChildSwitchOffset());
+                }
+                break;
 
-                fromNode.setParentSwitchOffset(-1);
-                toNode.setLeftChildSwitchOffset(-1);
+            case SEMI_ZIGZIGLEFT_TOPDOWN:
+                if (this.acceptsRotation(value) && this.semiZigZigLeftTopDown(node)) {
+                    this.rotationPerformed(value);
+                    this.traceOperation("semiZigZigLeftTopDown");
+                    this.recordRotation(op, node, yId, zId, wId, dstNode);
+                    this.logIncrementActiveRequests();
 
-            }
+                    InfraNode rfrshNode = this.getInfraNode(nodeId);
+                    InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
 
-        	this.getNetNode(toNode).swapChild(fromNode.getNetId());
-        	this.getNetNode(fromNode).swapParent();
+                    this.grantRouting(rfrshNode, nxtNode, 2);
 
-        }
+                } else {
+                    this.allowRouting(node, dstNode, 2, i);
 
-        while (!this.doubleSwapEdges.isEmpty()) {
-            Edge edge = this.doubleSwapEdges.pop();
-            InfraNode fromNode = edge.getFromNode();
-            InfraNode toNode = edge.getToNode();
-            int clsId = this.getClusterId(fromNode, toNode);
+                }
+                break;
 
-            if (edge.isDownward()) {
-                if (fromNode.getId() > toNode.getId()) {
-                    fromNode.setLeftChildSwitchOffset(edge.getSwtOffset());
+            case SEMI_ZIGZAGLEFT_TOPDOWN:
+                if (this.acceptsRotation(value) && this.zigZagLeftTopDown(node)) {
+                    this.rotationPerformed(value);
+                    this.traceOperation("semiZigZagLeftTopDown");
+                    this.recordRotation(op, node, yId, zId, wId, dstNode);
+                    this.logIncrementActiveRequests();
+
+                    InfraNode rfrshNode = this.getInfraNode(nodeId);
+                    InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+
+                    if (nxtNode == rfrshNode.getParent()) {
+                        this.grantRouting(rfrshNode, nxtNode, 3);
+
+                    } else {
+                        this.grantRouting(rfrshNode, nxtNode, 1);
+
+                    }
+
+                } else {
+                    this.allowRouting(node, dstNode, 2, i);
+
+                }
+                break;
+
+            case SEMI_ZIGZIGRIGHT_TOPDOWN:
+                if (this.acceptsRotation(value) && this.semiZigZigRightTopDown(node)) {
+                    this.rotationPerformed(value);
+                    this.traceOperation("semiZigZigRightTopDown");
+                    this.recordRotation(op, node, yId, zId, wId, dstNode);
+                    this.logIncrementActiveRequests();
+
+                    InfraNode rfrshNode = this.getInfraNode(nodeId);
+                    InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+
+                    this.grantRouting(rfrshNode, nxtNode, 2);
+
+                } else {
+                    this.allowRouting(node, dstNode, 2, i);
+
+                }
+                break;
+
+            case SEMI_ZIGZAGRIGHT_TOPDOWN:
+                if (this.acceptsRotation(value) && this.zigZagRightTopDown(node)) {
+                    this.rotationPerformed(value);
+                    this.traceOperation("semiZigZagRightTopDown");
+                    this.recordRotation(op, node, yId, zId, wId, dstNode);
+                    this.logIncrementActiveRequests();
+
+                    InfraNode rfrshNode = this.getInfraNode(nodeId);
+                    InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+
+                    if (nxtNode == rfrshNode.getParent()) {
+                        this.grantRouting(rfrshNode, nxtNode, 3);
+
+                    } else {
+                        this.grantRouting(rfrshNode, nxtNode, 1);
+
+                    }
 
                 } else {
-                    fromNode.setRightChildSwitchOffset(edge.getSwtOffset());
+                    this.allowRouting(node, dstNode, 2, i);
 
                 }
+                break;
+
+            default:
+                break;
+        }
+
+        this.areAvailableNodes(node);
+        this.plannedRequests[i] = null;
+    }
 
-                this.clusters.get(clsId).get(edge.getSwtOffset()).updateChild(
-                    fromNode.getNetId(), toNode.getNetId()
+    /**
+     * Splits the requests of the round between the shards and the coordinator and commits
+     * them with the results of the sequential controller. The footprint of a request, given
+     * by planFootprint, holds every node it may lock or rewire: a request only locks nodes
+     * when all of them are free, so none of them was rewired this round and they are the ones
+     * of the topology left by the previous round. A request whose footprint lies inside the
+     * subtree of a shard is committed by that shard, the others by the coordinator. Going
+     * through the requests in priority order, each one is assigned to a wave, so that it
+     * runs after every request before it that shares some node of its footprint. In each
+     * wave the shards commit their requests independently, in parallel when there are enough
+     * requests, followed by the coordinator. The journals are then replayed in priority
+     * order. A failed request may still read nodes beyond its footprint, so, rarely, the
+     * contention profiler may blame a different locked node for the denial than with the
+     * sequential controller.
+     */
+    private void commitSharded () {
+        this.coordinator.reset(-1, 0, this.numNodes);
+        if (this.requestShards.length < this.numPlannedRequests) {
+            this.requestShards = new ControllerShard[2 * this.numPlannedRequests];
+
+        }
+
+        int numWaves = this.assignWaves();
+
+        for (int wave = 0; wave < numWaves; wave++) {
+            int currWave = wave;
+            if (this.numPlannedRequests >= PARALLEL_PLANNING_THRESHOLD) {
+                IntStream.range(0, this.numActiveShards).parallel().forEach(
+                    k -> this.commitShard(this.shards[k], currWave)
                 );
 
             } else {
-                fromNode.setParentSwitchOffset(edge.getSwtOffset());
+                for (int k = 0; k < this.numActiveShards; k++) {
+                    this.commitShard(this.shards[k], currWave);
 
-                this.clusters.get(clsId).get(edge.getSwtOffset()).updateParent(
-                    fromNode.getNetId(), toNode.getNetId()
-                );
+                }
             }
-        }
 
-        while (!this.addEdges.isEmpty() && this.addEdges.peekFirst().getSwtOffset() == -1) {
-            Edge edge = this.addEdges.removeFirst();
+            this.commitShard(this.coordinator, currWave);
+        }
 
-            this.setLink(edge.getFromNode(), edge.getToNode(), edge.isDownward(), edge.isInitial());
+        for (int i = 0; i < this.numPlannedRequests; i++) {
+            ControllerShard shard = this.requestShards[i];
+            this.replayRequest(shard, shard.nextReplayedRequest());
 
         }
-
-        this.logEssentialLinkUpdates();
     }
 
-    private void setLink (InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial) {
-        int clsId = this.getClusterId(fromNode, toNode);
-        if (this.mirrored) {
-            boolean left = (downward ?
-                fromNode.getId() > toNode.getId() :
-                toNode.getId() > fromNode.getId()
-            );
-            int swtOffset = (left ? 0 : 2) + (downward ? 0 : 1);
-            Edge edge = new Edge(fromNode, toNode, downward, initial, swtOffset);
-            NetworkSwitch swt = this.clusters.get(clsId).get(swtOffset);
-            int swtId = swt.getIndex();
-
-            this.logIncrementActivePorts(swtId);
+    /**
+     * Assigns every planned request, in priority order, to its shard and wave. A request of
+     * a shard runs in the wave of the previous request of the shard, or in the wave after the
+     * last coordinator request sharing nodes with its footprint. A coordinator request runs
+     * in the wave of the previous coordinator request, or in the wave of the last shard
+     * request sharing nodes with its footprint, as the coordinator commits after the shards.
+     * A request whose footprint was not fully planned runs after every request before it.
+     * @return      the number of waves
+     */
+    private int assignWaves () {
+        this.waveEpoch++;
+        Arrays.fill(this.shardWaves, 0);
+
+        int coordinatorWave = 0;
+        int lastWave = 0;
+        for (int i = 0; i < this.numPlannedRequests; i++) {
+            int base = i * FOOTPRINT_STRIDE;
+            int count = this.plannedFootprintSizes[i];
+            int k = this.plannedShards[i];
+
+            int wave;
+            if (count < 0) {
+                wave = lastWave;
+                coordinatorWave = wave;
+                Arrays.fill(this.shardWaves, wave + 1);
+
+            } else if (k >= 0) {
+                wave = this.shardWaves[k];
+                for (int pos = base; pos < base + count; pos++) {
+                    int id = this.plannedFootprints[pos];
+                    if (this.coordinatorStamps[id] == this.waveEpoch) {
+                        wave = Math.max(wave, this.coordinatorMarks[id] + 1);
 
-            if (downward) {
-                swt.updateChild(fromNode.getNetId(), toNode.getNetId());
-                if (left) {
-                    fromNode.setLeftChildSwitchOffset(swtOffset);
+                    }
+                }
 
-                } else {
-                    fromNode.setRightChildSwitchOffset(swtOffset);
+                this.shardWaves[k] = wave;
+                for (int pos = base; pos < base + count; pos++) {
+                    int id = this.plannedFootprints[pos];
+                    this.shardStamps[id] = this.waveEpoch;
+                    this.shardMarks[id] = wave;
 
                 }
 
             } else {
-                swt.updateParent(fromNode.getNetId(), toNode.getNetId());
-                fromNode.setParentSwitchOffset(swtOffset);
+                wave = coordinatorWave;
+                for (int pos = base; pos < base + count; pos++) {
+                    int id = this.plannedFootprints[pos];
+                    if (this.shardStamps[id] == this.waveEpoch) {
+                        wave = Math.max(wave, this.shardMarks[id]);
 
+                    }
+                }
+
+                coordinatorWave = wave;
+                for (int pos = base; pos < base + count; pos++) {
+                    int id = this.plannedFootprints[pos];
+                    this.coordinatorStamps[id] = this.waveEpoch;
+                    this.coordinatorMarks[id] = wave;
+
+                }
             }
 
-            this.addEdges.addLast(edge);
+            ControllerShard shard = (k >= 0 && count >= 0 ? this.shards[k] : this.coordinator);
+            shard.addRequest(i, wave);
+            this.requestShards[i] = shard;
+            lastWave = Math.max(lastWave, wave);
+        }
 
-        } else {
-            NetworkSwitch inSwitch = null, outSwitch = null;
+        return lastWave + 1;
+    }
 
-            for (int swtOff = 0; swtOff < this.clusters.get(clsId).size(); swtOff++) {
-                NetworkSwitch swt = this.clusters.get(clsId).get(swtOff);
-                AvailablePorts avPorts = swt.getAvailablePorts(
-                    fromNode.getNetId(), toNode.getNetId()
-                );
+    /**
+     * Collects the footprint of the i-th planned request over the topology left by the
+     * previous round: the node, its parent, grandparent and great-grandparent, the children
+     * of the first three, the next max(2, cutThroughHops) nodes of the path to the
+     * destination, and the children of the first two of them, taken from the planned path.
+     * Records the shard whose subtree holds the footprint, or -1 if there is none. When the
+     * path is longer than the planned hops, the footprint size is set to -1.
+     * @param i     the index of the request in the planning order
+     * @param node  InfraNode with the message
+     */
+    private void planFootprint (int i, InfraNode node) {
+        int planBase = i * PLANNED_PATH_STRIDE;
+        int hops = this.plannedPathHops[i];
+        if (hops == MAX_PLANNED_HOPS && this.cutThroughHops > MAX_PLANNED_HOPS) {
+            this.plannedFootprintSizes[i] = -1;
+            this.plannedShards[i] = -1;
 
-                if (avPorts == AvailablePorts.BOTH) {
-                    inSwitch = swt;
-                    outSwitch = swt;
+            return;
+        }
 
-                    break;
+        int base = i * FOOTPRINT_STRIDE;
+        int count = base;
 
-                } else if (avPorts == AvailablePorts.INPUT) {
-                    inSwitch = swt;
+        InfraNode currNode = node;
+        for (int k = 0; k < 3; k++) {
+            count = this.addFootprintNode(count, currNode);
+            count = this.addFootprintNode(count, currNode.getLeftChild());
+            count = this.addFootprintNode(count, currNode.getRightChild());
+            currNode = currNode.getParent();
 
-                } else if (avPorts == AvailablePorts.OUTPUT) {
-                    outSwitch = swt;
+        }
 
-                }
+        count = this.addFootprintNode(count, currNode);
+        int shard = this.findShard(currNode.getId());
+
+        for (int hop = 0; hop < hops; hop++) {
+            InfraNode nxtNode = this.plannedPaths[planBase + 2 + hop];
+
+            count = this.addFootprintNode(count, nxtNode);
+            if (hop < 2) {
+                count = this.addFootprintNode(count, nxtNode.getLeftChild());
+                count = this.addFootprintNode(count, nxtNode.getRightChild());
 
             }
+        }
+
+        for (int pos = base; pos < count && shard >= 0; pos++) {
+            if (!this.shards[shard].owns(this.plannedFootprints[pos])) {
+                shard = -1;
 
-            if (inSwitch == null || outSwitch == null) {
-                Tools.fatalError(
-                    "It was not possible to find a switch within" +
-                    " the cluster capable of holding this edge"
-                );
             }
+        }
+
+        this.plannedFootprintSizes[i] = count - base;
+        this.plannedShards[i] = shard;
+    }
+
+    private int addFootprintNode (int count, InfraNode node) {
+        if (node.getId() == -1) {
+            return count;
 
-            this.augmentingPath(fromNode, toNode, inSwitch, outSwitch, true, initial);
         }
+
+        this.plannedFootprints[count] = node.getId();
+
+        return count + 1;
     }
 
-    private void logEssentialLinkUpdates () {
-        Set<Pair> redundantLinks = new HashSet<Pair>();
+    /**
+     * Rebalances the shard ownership over the current topology. Starting from the tree root,
+     * the largest subtree is repeatedly replaced by its children until there is one subtree
+     * per shard, so the shards follow the nodes moved by the splaying of previous rounds.
+     * The nodes above the chosen subtrees belong to the coordinator.
+     */
+    private void assignShards () {
+        InfraNode root = this.infraTree.getNode(this.numNodes).getLeftChild();
+        int numRoots = 0;
 
-        while (!this.addEdges.isEmpty()) {
-            Edge link = this.addEdges.removeLast();
-            InfraNode fromNode = link.getFromNode();
-            Pair linkPair = new Pair(fromNode.getId(), link.getToNode().getId());
+        if (this.isValidNode(root)) {
+            this.shardRoots[numRoots++] = root;
+
+        }
+
+        while (numRoots < this.shards.length) {
+            int largest = -1;
+            int largestSize = 1;
+            for (int k = 0; k < numRoots; k++) {
+                int size = this.shardRoots[k].getMaxId() - this.shardRoots[k].getMinId() + 1;
+                if (size > largestSize) {
+                    largest = k;
+                    largestSize = size;
+
+                }
+            }
+
+            if (largest == -1) {
+                break;
+
+            }
+
+            InfraNode leftChild = this.shardRoots[largest].getLeftChild();
+            InfraNode rightChild = this.shardRoots[largest].getRightChild();
+            if (!this.isValidNode(leftChild)) {
+                this.shardRoots[largest] = rightChild;
+
+            } else {
+                this.shardRoots[largest] = leftChild;
+                if (this.isValidNode(rightChild)) {
+                    this.shardRoots[numRoots++] = rightChild;
+
+                }
+            }
+        }
+
+        for (int k = 1; k < numRoots; k++) {
+            InfraNode shardRoot = this.shardRoots[k];
+            int j = k - 1;
+            while (j >= 0 && this.shardRoots[j].getMinId() > shardRoot.getMinId()) {
+                this.shardRoots[j + 1] = this.shardRoots[j];
+                j--;
 
-            if (!link.isInitial() && !redundantLinks.contains(linkPair)) {
-                int clsId = this.getClusterId(fromNode, link.getToNode());
-                NetworkSwitch swt = this.clusters.get(clsId).get(link.getSwtOffset());
-                int swtId = swt.getIndex();
-                redundantLinks.add(linkPair);
-                this.logIncrementAlterations(swtId, fromNode);
             }
 
+            this.shardRoots[j + 1] = shardRoot;
+        }
+
+        for (int k = 0; k < numRoots; k++) {
+            this.shards[k].reset(
+                this.shardRoots[k].getId(), this.shardRoots[k].getMinId(), this.shardRoots[k].getMaxId()
+            );
+
         }
+
+        this.numActiveShards = numRoots;
     }
 
     /**
-     * Returns the augmenting path between the two switches
-    */
-    private void augmentingPath (
-        InfraNode fromNode, InfraNode toNode, NetworkSwitch cSwt, NetworkSwitch nSwt, boolean chkOutput, boolean initial
-    ) {
-        AvailablePorts avPorts = cSwt.getAvailablePorts(fromNode.getNetId(), toNode.getNetId());
-        Edge link = new Edge(fromNode, toNode, fromNode.isDownwardEdge(toNode), initial, cSwt.getOffset());
-        this.addEdges.addLast(link);
+     * Getter for the index of the shard whose subtree holds the node
+     * @param id        the InfraNode id
+     * @return          the index of the shard, or -1 if the node belongs to the coordinator
+     */
+    private int findShard (int id) {
+        int low = 0;
+        int high = this.numActiveShards - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            ControllerShard shard = this.shards[mid];
 
-        InfraNode newFromNode = (
-        	!chkOutput ? fromNode :
-        	this.getInfraNode(cSwt.getConnectedInputNodeId(toNode.getNetId()))
-        );
-        InfraNode newToNode = (
-        	chkOutput ? toNode :
-    		this.getInfraNode(cSwt.getConnectedOutputNodeId(fromNode.getNetId()))
-		);
+            if (id < shard.getMinId()) {
+                high = mid - 1;
 
-        if (fromNode.isDownwardEdge(toNode)) {
-        	cSwt.updateChild(fromNode.getNetId(), toNode.getNetId());
-            if (fromNode.getId() > toNode.getId()) {
-                fromNode.setLeftChildSwitchOffset(cSwt.getOffset());
+            } else if (id > shard.getMaxId()) {
+                low = mid + 1;
 
             } else {
-                fromNode.setRightChildSwitchOffset(cSwt.getOffset());
+                return mid;
 
             }
+        }
 
-        } else {
-        	cSwt.updateParent(fromNode.getNetId(), toNode.getNetId());
-        	fromNode.setParentSwitchOffset(cSwt.getOffset());
+        return -1;
+    }
 
+    /**
+     * Commits the requests of a shard assigned to the given wave on the current thread,
+     * writing their effects to the shard journal.
+     * @param shard     the ControllerShard
+     * @param wave      the wave
+     */
+    private void commitShard (ControllerShard shard, int wave) {
+        this.committingShard.set(shard);
+        while (shard.hasRequestInWave(wave)) {
+            int i = shard.getRequest(shard.getNumCommitted());
+
+            shard.beginRequest(this.getInfraNode(this.plannedRequests[i].getCurrId()).getId());
+            this.commitRequest(i);
+            shard.endRequest();
         }
+        this.committingShard.remove();
+    }
 
-        int swtId = cSwt.getIndex();
-        this.logIncrementActivePorts(swtId);
+    /**
+     * Applies the journal of the j-th request of a shard as if it had been committed by the
+     * controller thread: prints its operations, logs its rotations and grants, queues its
+     * edges, sends its routing messages and reports its denials to the contention profiler.
+     * @param shard     the ControllerShard
+     * @param j         the position of the request in the shard
+     */
+    private void replayRequest (ControllerShard shard, int j) {
+        int end = shard.getJournalEnd(j, ControllerShard.JOURNAL_OPERATIONS);
+        for (int k = shard.getJournalStart(j, ControllerShard.JOURNAL_OPERATIONS); k < end; k++) {
+            Trace.operation(shard.getOperation(k));
 
-        if (chkOutput && !avPorts.availableOutput()) {
-            swtId = nSwt.getIndex();
-            this.logDecrementActivePorts(swtId);
-            this.augmentingPath(newFromNode, newToNode, nSwt, cSwt, !chkOutput, initial);
+        }
 
-        } else if (!chkOutput && !avPorts.availableInput()) {
-            swtId = nSwt.getIndex();
-            this.logDecrementActivePorts(swtId);
-            this.augmentingPath(newFromNode, newToNode, nSwt, cSwt, !chkOutput, initial);
+        end = shard.getJournalEnd(j, ControllerShard.JOURNAL_ROTATIONS);
+        for (int k = shard.getJournalStart(j, ControllerShard.JOURNAL_ROTATIONS); k < end; k++) {
+            this.logRotation(shard.getRotation(k));
 
         }
 
-    }
+        end = shard.getJournalEnd(j, ControllerShard.JOURNAL_ROTATION_EVENTS);
+        for (
+            int k = shard.getJournalStart(j, ControllerShard.JOURNAL_ROTATION_EVENTS); k < end; k++
+        ) {
+            this.eventLog.recordRotation(
+                this.getCurrentRound(), Rotation.values()[shard.getRotationEventField(k, 0)],
+                shard.getRotationEventField(k, 1), shard.getRotationEventField(k, 2),
+                shard.getRotationEventField(k, 3), shard.getRotationEventField(k, 4),
+                shard.getRotationEventField(k, 5)
+            );
 
-    private void pushRmvEdge (InfraNode fromNode, InfraNode toNode, boolean downward) {
-        if (!this.isValidNode(fromNode) || !this.isValidNode(toNode)) {
-            if (downward && fromNode.getId() == this.getNumNodes()) {
-                fromNode.removeLeftChild();
+        }
 
-            } else if (!downward && toNode.getId() == this.getNumNodes()) {
-                fromNode.removeParent();
+        int grants = (
+            shard.getJournalEnd(j, ControllerShard.JOURNAL_ACTIVE_REQUESTS) -
+            shard.getJournalStart(j, ControllerShard.JOURNAL_ACTIVE_REQUESTS)
+        );
+        for (int k = 0; k < grants; k++) {
+            this.logIncrementActiveRequests();
 
-            }
+        }
 
-            return;
+        end = shard.getJournalEnd(j, ControllerShard.JOURNAL_EDGES);
+        for (int k = shard.getJournalStart(j, ControllerShard.JOURNAL_EDGES); k < end; k++) {
+            this.pushEdge(
+                shard.getEdgeQueue(k),
+                Edge.fabricate(
+                    this.infraTree.getNode(shard.getEdgeFromId(k)),
+                    this.infraTree.getNode(shard.getEdgeToId(k)),
+                    shard.isEdgeDownward(k), shard.isEdgeInitial(k), shard.getEdgeSwtOffset(k)
+                )
+            );
 
         }
 
-        int swtOffset = fromNode.getSwtOffset(toNode);
-        if (downward && fromNode.getId() > toNode.getId()) {
-            fromNode.removeLeftChild();
+        end = shard.getJournalEnd(j, ControllerShard.JOURNAL_ROUTINGS);
+        for (int k = shard.getJournalStart(j, ControllerShard.JOURNAL_ROUTINGS); k < end; k++) {
+            this.configureRoutingMessage(
+                this.infraTree.getNode(shard.getRoutingNodeId(k)),
+                this.infraTree.getNode(shard.getRoutingNxtNodeId(k)),
+                this.fabricateRoutingMessage(
+                    shard.getRoutingTimes(k), shard.isRoutingCutThrough(k)
+                )
+            );
 
-        } else if (downward) {
-            fromNode.removeRightChild();
+        }
+
+        if (this.contentionProfiler != null) {
+            int requestId = shard.getRequestId(j);
+
+            end = shard.getJournalEnd(j, ControllerShard.JOURNAL_DENIALS);
+            for (int k = shard.getJournalStart(j, ControllerShard.JOURNAL_DENIALS); k < end; k++) {
+                this.contentionProfiler.recordDenial(
+                    this.getCurrentRound(), requestId, shard.getDenialBlockingId(k),
+                    shard.getDenialReason(k), shard.getDenialOperation(k)
+                );
+
+            }
+
+            this.contentionProfiler.endRequestRound(requestId, grants > 0);
+        }
+    }
+
+    /**
+     * Getter for the shard committing requests on the current thread
+     * @return          the ControllerShard, or null outside of the sharded commit
+     */
+    private ControllerShard getCommittingShard () {
+        return (this.shards.length > 1 ? this.committingShard.get() : null);
+    }
+
+    /**
+     * Queues an edge for the switch updates of the round, or writes it to the journal of the
+     * shard committing on the current thread.
+     * @param queue         the queue, as defined by ControllerShard
+     * @param fromNode      the node connected to the input port
+     * @param toNode        the node connected to the output port
+     * @param downward      true if toNode is a child of fromNode
+     * @param initial       true if the edge belongs to the initial configuration
+     * @param swtOffset     the offset of the switch implementing the edge
+     */
+    private void queueEdge (
+        int queue, InfraNode fromNode, InfraNode toNode, boolean downward, boolean initial,
+        int swtOffset
+    ) {
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalEdge(queue, fromNode.getId(), toNode.getId(), downward, initial, swtOffset);
 
         } else {
-            fromNode.removeParent();
+            this.pushEdge(queue, Edge.fabricate(fromNode, toNode, downward, initial, swtOffset));
 
         }
+    }
+
+    /**
+     * Pushes the edge to one of the edge queues of the controller.
+     * @param queue     the queue, as defined by ControllerShard
+     * @param edge      the Edge
+     */
+    private void pushEdge (int queue, Edge edge) {
+        switch (queue) {
+            case ControllerShard.RMV_EDGES:
+                this.rmvEdges.push(edge);
+                break;
+
+            case ControllerShard.SWAP_EDGES:
+                this.swapEdges.push(edge);
+                break;
+
+            case ControllerShard.DOUBLE_SWAP_EDGES:
+                this.doubleSwapEdges.push(edge);
+                break;
 
-        Edge edge = new Edge(fromNode, toNode, downward, false, swtOffset);
-        this.rmvEdges.push(edge);
+            case ControllerShard.ADD_EDGES:
+                this.addEdges.addLast(edge);
+                break;
 
+            default:
+                this.assertAlterations.add(edge);
+                break;
+        }
     }
-    /* End of Setters
 
-    /* Auxiliary Functions */
     /**
-     * Retrieves the position for the cluster of type 2. Given by the between the
-     * max(clsId1, clsId2) and the sum of terms belonging  to the arithmetic progression
-     * AP(n) = ((a0 + an) * n) / 2, such that a0 is the number of clusters type 1 - 1,
-     * an the number of clusters type 1 - min(clsId1, clsId2) and n the min(clsId1, clsId2)
-     * @param clsId1    the cluster type 1 id for the first node
-     * @param clsId2    the cluster type 1 id for the second node
-     * @return          the position of the cluster type 2 in the arithmetic progression
+     * Traces the name of a performed operation, or writes it to the journal of the shard
+     * committing on the current thread, when operations are traced.
+     * @param operation the operation name
      */
-    protected int unionPos (int clsId1, int clsId2) {
-        /*
-            AP(n) = ((a0 + an) * n) / 2
-            a0 = NUM_CLUSTERS - 1
-            an = NUM_CLUSTER - 1 - clsId1 + 1
-            n = clsId1
-        */
+    private void traceOperation (String operation) {
+        if (!Trace.OPERATIONS || !Trace.isEnabled(TraceLevel.OPERATIONS)) {
+            return;
 
-        if (clsId1 > clsId2) {
-            int aux = clsId1;
-            clsId1 = clsId2;
-            clsId2 = aux;
         }
 
-        int apSum = (
-            clsId1 != 0 ?
-            ((2 * this.numClustersType1 - 1 - clsId1) * (clsId1)) / 2 :
-            0
-        );
-        return apSum + clsId2 - clsId1 - 1;
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalOperation(operation);
+
+        } else {
+            Trace.operation(operation);
+
+        }
+    }
+
+    /**
+     * Sends a RoutingInfoMessage to the NetworkNode equivalent to node, or writes the routing
+     * to the journal of the shard committing on the current thread.
+     * @param node          InfraNode holder of the message
+     * @param nxtNode       next node in the message path
+     * @param routingTimes  number of times the message should be routed before next step
+     */
+    private void grantRouting (InfraNode node, InfraNode nxtNode, int routingTimes) {
+        this.grantRouting(node, nxtNode, routingTimes, false);
     }
 
     /**
-     * This method traverses the nodes that still have messages pending routing and locks them
-     * and their remaining routing path. If at least one of this nodes wouldn't be able
-     * to finish it's routing the simulation must be ended with an error.
+     * Same as grantRouting, marking whether the message crosses every hop in one round.
+     * @param node          InfraNode holder of the message
+     * @param nxtNode       next node in the message path
+     * @param routingTimes  number of times the message should be routed
+     * @param cutThrough    true if the message crosses every hop in one round
      */
-    protected void lockRoutingNodes () {
-        while (!this.routingNodes.isEmpty()) {
-            RoutingInfoMessage routMsg = this.routingNodes.poll();
-            int nodeId = routMsg.getNodeId();
-            InfraNode node = this.getInfraNode(nodeId);
-            InfraNode dstNode = this.getInfraNode(routMsg.getDst());
+    private void grantRouting (
+        InfraNode node, InfraNode nxtNode, int routingTimes, boolean cutThrough
+    ) {
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.journalRouting(node.getId(), nxtNode.getId(), routingTimes, cutThrough);
 
-            if (!this.allowRouting(node, dstNode, routMsg)) {
-                Tools.fatalError("Nodes that were supposed to rout are already occupied");
+        } else {
+            this.configureRoutingMessage(
+                node, nxtNode, this.fabricateRoutingMessage(routingTimes, cutThrough)
+            );
 
-            }
         }
+    }
 
+    private RoutingInfoMessage fabricateRoutingMessage (int routingTimes, boolean cutThrough) {
+        RoutingInfoMessage routMsg = RoutingInfoMessage.fabricate(routingTimes);
+        routMsg.setCutThrough(cutThrough);
+
+        return routMsg;
     }
 
     /**
-     * This method locks the routing nodes and then, for every node with a message, if it is
-     * possible, performs the rotation specified by the getRotationToPerformed, and if it is not
-     * tries to rout the message 2 times. If neither step is possible, due to involved nodes being
-     * locked or other issues, the node is not allowed to act in this round.
+     * Computes the proposal of every node with a message over the topology left by the
+     * previous round, in priority order: the rotation to perform, its value given by
+     * evaluateRotation, and the routing path the message would lock. The proposals only read
+     * the tree, so with enough requests they are computed in parallel. A new modification
+     * epoch is started afterwards, so updateConn can tell which proposals were invalidated by
+     * the rotations it commits.
      */
-    protected void updateConn () {
-        this.lockRoutingNodes();
+    private void planRotations () {
+        int size = this.nodesWithMsg.size();
+        if (this.plannedRequests.length < size) {
+            this.plannedRequests = new HasMessage[2 * size];
+            this.plannedRotations = new Rotation[2 * size];
+            this.plannedValues = new double[2 * size];
+            this.plannedPaths = new InfraNode[2 * size * PLANNED_PATH_STRIDE];
+            this.plannedPathHops = new int[2 * size];
+            this.plannedFootprints = new int[2 * size * FOOTPRINT_STRIDE];
+            this.plannedFootprintSizes = new int[2 * size];
+            this.plannedShards = new int[2 * size];
 
-        while (!this.nodesWithMsg.isEmpty()) {
-            HasMessage hasmsg = this.nodesWithMsg.poll();
-            int nodeId = hasmsg.getCurrId();
+        }
 
-            InfraNode node = this.getInfraNode(nodeId);
-            InfraNode dstNode = this.getInfraNode(hasmsg.getDst());
+        this.plannedHops = Math.min(Math.max(2, this.cutThroughHops), MAX_PLANNED_HOPS);
 
-            Rotation op = this.getRotationToPerform(node, dstNode);
+        this.numPlannedRequests = 0;
+        for (HasMessage hasmsg : this.nodesWithMsg) {
+            this.plannedRotations[this.numPlannedRequests] = this.getPipelinedRotation(hasmsg);
+            this.plannedRequests[this.numPlannedRequests++] = hasmsg;
 
-            switch (op) {
-                case NULL:
-                    this.allowRouting(node, dstNode, 1);
-                    break;
+        }
 
-                case SEMI_ZIGZIGLEFT_BOTTOMUP:
-                case SEMI_ZIGZIGRIGHT_BOTTOMUP:
-                    if (this.semiZigZigBottomUp(node)) {
-                        System.out.println("semiZigZigBottomUp");
-                        this.logIncrementActiveRequests();
+        if (size >= PARALLEL_PLANNING_THRESHOLD) {
+            IntStream.range(0, size).parallel().forEach(this::planRotation);
 
-                        InfraNode rfrshNode = this.getInfraNode(nodeId);
-                        InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+        } else {
+            for (int i = 0; i < size; i++) {
+                this.planRotation(i);
 
-                        this.configureRoutingMessage(rfrshNode, nxtNode, new RoutingInfoMessage(1));
+            }
+        }
 
-                    } else {
-                        this.allowRouting(node, dstNode, 2);
+        this.infraTree.startEpoch();
+    }
 
-                    }
-                    break;
+    /**
+     * Computes the proposal of the i-th planned request, keeping the rotation planned in the
+     * background if there is one. Along with the rotation and its value, it records the
+     * footprint of the proposal: the parent and grandparent of the node, and the next
+     * plannedHops nodes of the path to the destination.
+     * @param i     the index of the request in the planning order
+     */
+    private void planRotation (int i) {
+        HasMessage hasmsg = this.plannedRequests[i];
+        InfraNode node = this.getInfraNode(hasmsg.getCurrId());
+        InfraNode dstNode = this.getInfraNode(hasmsg.getDst());
 
-                case SEMI_ZIGZAGLEFT_BOTTOMUP:
-                case SEMI_ZIGZAGRIGHT_BOTTOMUP:
-                    if (this.zigZagBottomUp(node)) {
-                        System.out.println("zigZagBottomUp");
-                        this.logIncrementActiveRequests();
+        if (this.plannedRotations[i] == null) {
+            this.plannedRotations[i] = this.getRotationToPerform(node, dstNode);
 
-                    } else {
-                        this.allowRouting(node, dstNode, 2);
+        }
 
-                    }
-                    break;
+        this.plannedValues[i] = this.evaluateRotation(this.plannedRotations[i], node);
+
+        int base = i * PLANNED_PATH_STRIDE;
+        this.plannedPaths[base] = node.getParent();
+        this.plannedPaths[base + 1] = node.getParent().getParent();
+
+        InfraNode currNode = node;
+        int hops = 0;
+        while (hops < this.plannedHops) {
+            InfraNode nxtNode = currNode.getRoutingNode(dstNode);
+            if (nxtNode.getId() == -1 || nxtNode.getId() == currNode.getId()) {
+                break;
 
-                case SEMI_ZIGZIGLEFT_TOPDOWN:
-                    if (this.semiZigZigLeftTopDown(node)) {
-                        System.out.println("semiZigZigLeftTopDown");
-                        this.logIncrementActiveRequests();
+            }
 
-                        InfraNode rfrshNode = this.getInfraNode(nodeId);
-                        InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+            this.plannedPaths[base + 2 + hops++] = nxtNode;
+            currNode = nxtNode;
+        }
 
-                        this.configureRoutingMessage(rfrshNode, nxtNode, new RoutingInfoMessage(2));
+        this.plannedPathHops[i] = hops;
 
-                    } else {
-                        this.allowRouting(node, dstNode, 2);
+        if (this.shards.length > 1) {
+            this.planFootprint(i, node);
 
-                    }
-                    break;
+        }
+    }
 
-                case SEMI_ZIGZAGLEFT_TOPDOWN:
-                    if (this.zigZagLeftTopDown(node)) {
-                        System.out.println("semiZigZagLeftTopDown");
-                        this.logIncrementActiveRequests();
+    /**
+     * Getter for the rotation planned in the background for the request during the previous
+     * round, if the pipelined planning is enabled. The tree only changes inside updateConn,
+     * so the plan still holds if the node still requests the same destination, otherwise
+     * the request was completed or replaced in between and must be planned again.
+     * @param hasmsg    the request
+     * @return          the planned rotation, or null if there is none
+     */
+    private Rotation getPipelinedRotation (HasMessage hasmsg) {
+        if (!this.pipelinedPlanning) {
+            return null;
 
-                        InfraNode rfrshNode = this.getInfraNode(nodeId);
-                        InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+        }
 
-                        if (nxtNode == rfrshNode.getParent()) {
-                            this.configureRoutingMessage(
-                                rfrshNode, nxtNode, new RoutingInfoMessage(3)
-                            );
+        int nodeIdx = hasmsg.getCurrId() - 1;
+        if (
+            this.pipelinedPlanStamp[nodeIdx] != this.pipelineStamp ||
+            this.pipelinedPlanDst[nodeIdx] != hasmsg.getDst()
+        ) {
+            return null;
 
-                        } else {
-                            this.configureRoutingMessage(
-                                rfrshNode, nxtNode, new RoutingInfoMessage(1)
-                            );
+        }
 
-                        }
+        return this.pipelinedPlanOps[nodeIdx];
+    }
 
-                    } else {
-                        this.allowRouting(node, dstNode, 2);
+    /**
+     * Snapshots the pending requests and starts planning their rotations for the next round
+     * on a background thread, overlapping it with the routing and logging timeslots. It only
+     * reads the tree, which no one modifies until the next updateConn. The thread is a daemon
+     * owned by the controller, created on the first plan.
+     */
+    private void startPipelinedPlanning () {
+        int size = this.nodesWithMsg.size();
+        if (this.pipelinedNodes.length < size) {
+            this.pipelinedNodes = new int[2 * size];
+            this.pipelinedDsts = new int[2 * size];
 
-                    }
-                    break;
+        }
 
-                case SEMI_ZIGZIGRIGHT_TOPDOWN:
-                    if (this.semiZigZigRightTopDown(node)) {
-                        System.out.println("semiZigZigRightTopDown");
-                        this.logIncrementActiveRequests();
+        this.numPipelinedRequests = 0;
+        for (HasMessage hasmsg : this.nodesWithMsg) {
+            this.pipelinedNodes[this.numPipelinedRequests] = hasmsg.getCurrId();
+            this.pipelinedDsts[this.numPipelinedRequests++] = hasmsg.getDst();
 
-                        InfraNode rfrshNode = this.getInfraNode(nodeId);
-                        InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+        }
 
-                        this.configureRoutingMessage(rfrshNode, nxtNode, new RoutingInfoMessage(2));
+        if (this.pipelinedPlanner == null) {
+            this.pipelinedPlanner = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pipelined-planning");
+                thread.setDaemon(true);
 
-                    } else {
-                        this.allowRouting(node, dstNode, 2);
+                return thread;
+            });
 
-                    }
-                    break;
+        }
 
-                case SEMI_ZIGZAGRIGHT_TOPDOWN:
-                    if (this.zigZagRightTopDown(node)) {
-                        System.out.println("semiZigZagRightTopDown");
-                        this.logIncrementActiveRequests();
+        this.pipelineStamp++;
+        this.pipelinedPlan = CompletableFuture.runAsync(
+            this::runPipelinedPlanning, this.pipelinedPlanner
+        );
+    }
 
-                        InfraNode rfrshNode = this.getInfraNode(nodeId);
-                        InfraNode nxtNode = rfrshNode.getRoutingNode(dstNode);
+    /**
+     * Background task planning the requests snapshot by startPipelinedPlanning.
+     */
+    private void runPipelinedPlanning () {
+        for (int i = 0; i < this.numPipelinedRequests; i++) {
+            int nodeIdx = this.pipelinedNodes[i] - 1;
 
-                        if (nxtNode == rfrshNode.getParent()) {
-                            this.configureRoutingMessage(
-                                rfrshNode, nxtNode, new RoutingInfoMessage(3)
-                            );
+            this.pipelinedPlanOps[nodeIdx] = this.getRotationToPerform(
+                this.getInfraNode(this.pipelinedNodes[i]), this.getInfraNode(this.pipelinedDsts[i])
+            );
+            this.pipelinedPlanDst[nodeIdx] = this.pipelinedDsts[i];
+            this.pipelinedPlanStamp[nodeIdx] = this.pipelineStamp;
+        }
+    }
 
-                        } else {
-                            this.configureRoutingMessage(
-                                rfrshNode, nxtNode, new RoutingInfoMessage(1)
-                            );
+    /**
+     * Waits for the background planning started in the previous round, if there is one.
+     */
+    private void joinPipelinedPlanning () {
+        if (this.pipelinedPlan != null) {
+            this.pipelinedPlan.join();
+            this.pipelinedPlan = null;
 
-                        }
+        }
+    }
 
-                    } else {
-                        this.allowRouting(node, dstNode, 2);
+    /**
+     * Checks if the rotation planned for the i-th request still holds, that is, if none of
+     * the nodes read by getRotationToPerform and evaluateRotation was modified by the
+     * rotations committed so far this round. They are the node, its parent and grandparent,
+     * and the next two nodes of its path, all recorded in the footprint of the proposal. The
+     * rotations keep the subtree of every node they do not modify, so the weights of the
+     * unmodified nodes, and the value of the rotation, are the ones seen while planning.
+     * @param i         the index of the request in the planning order
+     * @param node      InfraNode with the message
+     * @return          true if the planned rotation is still valid, false otherwise
+     */
+    private boolean isPlanValid (int i, InfraNode node) {
+        int base = i * PLANNED_PATH_STRIDE;
+        if (
+            this.infraTree.isModified(node) ||
+            this.infraTree.isModified(this.plannedPaths[base]) ||
+            this.infraTree.isModified(this.plannedPaths[base + 1])
+        ) {
+            return false;
 
-                    }
-                    break;
+        }
+
+        int hops = Math.min(this.plannedPathHops[i], 2);
+        for (int hop = 0; hop < hops; hop++) {
+            if (this.infraTree.isModified(this.plannedPaths[base + 2 + hop])) {
+                return false;
 
-                default:
-                    break;
             }
+        }
+
+        return true;
+    }
+
+    /**
+     * Getter for the node that follows currNode in the path of a message, the hop-th node of
+     * the path. When currNode is the node planned before that hop and it was not modified,
+     * its link towards the destination is the one seen while planning, so the next node is
+     * taken from the plan. Otherwise, or past the planned hops, it is read from the current
+     * tree.
+     * @param plan      the index of the request in the planning order, or -1 if there is none
+     * @param hop       the position of the next node in the path, starting from 1
+     * @param currNode  the current node of the path
+     * @param dstNode   message destination node
+     * @return          the next node of the path
+     */
+    private InfraNode nextPathNode (int plan, int hop, InfraNode currNode, InfraNode dstNode) {
+        int base = plan * PLANNED_PATH_STRIDE;
+        if (
+            plan >= 0 && hop <= this.plannedPathHops[plan] &&
+            (hop == 1 || this.plannedPaths[base + hop] == currNode) &&
+            !this.infraTree.isModified(currNode)
+        ) {
+            return this.plannedPaths[base + 1 + hop];
 
-            this.areAvailableNodes(node);
         }
+
+        return currNode.getRoutingNode(dstNode);
     }
 
     /**
      * Creates a RoutingInfoMessage and send it to the NetworkNode equivalent to node
-     * if the nodes in the path are available
+     * if the nodes in the path are available. With the cut-through routing enabled, the
+     * message also reserves the free nodes that follow in its path, up to cutThroughHops hops,
+     * and crosses all of them this round.
      * @param node          node with the message
      * @param dstNode       message destination node
      * @param routingTimes  number of times the message should be routed before next step
      * @return              true if message is allowed to rout and false if it isn't
      */
     protected boolean allowRouting (InfraNode node, InfraNode dstNode, int routingTimes) {
-        return this.allowRouting(node, dstNode, new RoutingInfoMessage(routingTimes));
+        return this.allowRouting(node, dstNode, routingTimes, -1);
+    }
+
+    /**
+     * Same as allowRouting, following the path planned for the i-th request while it holds.
+     * @param node          node with the message
+     * @param dstNode       message destination node
+     * @param routingTimes  number of times the message should be routed before next step
+     * @param plan          the index of the request in the planning order, or -1 if there is none
+     * @return              true if message is allowed to rout and false if it isn't
+     */
+    private boolean allowRouting (InfraNode node, InfraNode dstNode, int routingTimes, int plan) {
+        if (this.cutThroughHops > 0) {
+            int hops = this.lockCutThroughPath(node, dstNode, routingTimes, plan);
+            if (hops > 0) {
+                this.logIncrementActiveRequests();
+                this.grantRouting(node, node.getRoutingNode(dstNode), hops, true);
+
+            }
+
+            return hops > 0;
+
+        } else if (this.lockRoutingPath(node, dstNode, routingTimes, plan)) {
+            this.logIncrementActiveRequests();
+            this.grantRouting(node, node.getRoutingNode(dstNode), routingTimes);
+
+            return true;
+        }
+
+        return false;
     }
 
     /**
@@ -1553,29 +3391,128 @@ public abstract class NetworkController extends LoggerLayer {
      * @return              true if message is allowed to rout and false if it isn't
      */
     private boolean allowRouting (InfraNode node, InfraNode dstNode, RoutingInfoMessage routMsg) {
-        ArrayList<InfraNode> routNodes = new ArrayList<>();
+        if (this.lockRoutingPath(node, dstNode, routMsg.getRoutingTimes(), -1)) {
+            this.logIncrementActiveRequests();
+            this.configureRoutingMessage(node, node.getRoutingNode(dstNode), routMsg);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Locks the node and the next routingTimes nodes in the path to the destination node, if
+     * all of them are available.
+     * @param node          node with the message
+     * @param dstNode       message destination node
+     * @param routingTimes  number of times the message should be routed
+     * @param plan          the index of the request in the planning order, or -1 if there is none
+     * @return              true if the path was locked, false otherwise
+     */
+    private boolean lockRoutingPath (
+        InfraNode node, InfraNode dstNode, int routingTimes, int plan
+    ) {
+        InfraNode[] pathNodes = this.getRoutNodes(routingTimes + 1);
         InfraNode currNode = node;
+        int count = 0;
 
-        routNodes.add(currNode);
-        for (int i = 1; i <= routMsg.getRoutingTimes(); i++) {
-            InfraNode nxtNode = currNode.getRoutingNode(dstNode);
+        pathNodes[count++] = currNode;
+        for (int i = 1; i <= routingTimes; i++) {
+            InfraNode nxtNode = this.nextPathNode(plan, i, currNode, dstNode);
             if (nxtNode.getId() == -1 || nxtNode.getId() == currNode.getId()) {
                 break;
 
             }
 
-            routNodes.add(nxtNode);
+            pathNodes[count++] = nxtNode;
             currNode = nxtNode;
         }
 
-        if (this.areAvailableNodes(routNodes.toArray(new InfraNode[0]))) {
-            this.logIncrementActiveRequests();
-            this.configureRoutingMessage(node, node.getRoutingNode(dstNode), routMsg);
+        return this.lockPathNodes(pathNodes, count);
+    }
 
-            return true;
+    /**
+     * Locks the path of a cut-through routing. The node and the next
+     * min(routingTimes, cutThroughHops) nodes in the path to the destination node must be
+     * available, as in lockRoutingPath, and the path is then extended over the nodes that are
+     * still free, up to cutThroughHops hops.
+     * @param node          node with the message
+     * @param dstNode       message destination node
+     * @param routingTimes  number of hops that must be available
+     * @param plan          the index of the request in the planning order, or -1 if there is none
+     * @return              the number of hops locked, or 0 if the path could not be locked
+     */
+    private int lockCutThroughPath (
+        InfraNode node, InfraNode dstNode, int routingTimes, int plan
+    ) {
+        int minHops = Math.min(routingTimes, this.cutThroughHops);
+        InfraNode[] pathNodes = this.getRoutNodes(minHops + 1);
+        InfraNode currNode = node;
+        int count = 0;
+
+        pathNodes[count++] = currNode;
+        while (count <= this.cutThroughHops) {
+            InfraNode nxtNode = this.nextPathNode(plan, count, currNode, dstNode);
+            if (nxtNode.getId() == -1 || nxtNode.getId() == currNode.getId()) {
+                break;
+
+            } else if (count > minHops && this.isLocked(nxtNode)) {
+                break;
+
+            } else if (count == pathNodes.length) {
+                pathNodes = this.getRoutNodes(2 * count);
+
+            }
+
+            pathNodes[count++] = nxtNode;
+            currNode = nxtNode;
         }
 
-        return false;
+        return (this.lockPathNodes(pathNodes, count) ? count - 1 : 0);
+    }
+
+    /**
+     * Getter for the scratch array where the nodes of a routing path are collected, owned by
+     * the shard committing on the current thread, if there is one. Growing the array keeps
+     * the nodes already collected.
+     * @param size      the minimum size of the array
+     * @return          the scratch array
+     */
+    private InfraNode[] getRoutNodes (int size) {
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            return shard.getRoutNodes(size);
+
+        } else if (this.routNodes.length < size) {
+            this.routNodes = Arrays.copyOf(this.routNodes, size);
+
+        }
+
+        return this.routNodes;
+    }
+
+    /**
+     * Locks the first count nodes of a routing path, if all of them are available.
+     * @param pathNodes     the nodes in the path
+     * @param count         the number of nodes in the path
+     * @return              true if the path was locked, false otherwise
+     */
+    private boolean lockPathNodes (InfraNode[] pathNodes, int count) {
+        ControllerShard shard = this.getCommittingShard();
+        if (shard != null) {
+            shard.setRoutingAttempt(true);
+            boolean available = this.areAvailableNodes(pathNodes, count);
+            shard.setRoutingAttempt(false);
+
+            return available;
+        }
+
+        this.routingAttempt = true;
+        boolean available = this.areAvailableNodes(pathNodes, count);
+        this.routingAttempt = false;
+
+        return available;
     }
 
         /**
@@ -1700,9 +3637,9 @@ public abstract class NetworkController extends LoggerLayer {
      * it means that this message has reached it's destination, so the number of completed
      * messages is incremented, the LoggerLayer reports this message information and the weigth
      * in the path between the src and destination node is updated. If it is a NewMessage the
-     * number of received messages is incremented. If it is a HasMessage, the sender node is
-     * marked as a nodeWithMessage for the controllerStep. If it is a RoutingInfoMessage, the
-     * sender node is marked as a routerNode.
+     * number of received messages is incremented. If it is a HasMessage, the request of the
+     * sender node is registered for the following controllerSteps, until a WithdrawMessage
+     * removes it. If it is a RoutingInfoMessage, the sender node is marked as a routerNode.
      */
     @Override
     public void handleMessages (Inbox inbox) {
@@ -1711,10 +3648,16 @@ public abstract class NetworkController extends LoggerLayer {
 
             if (msg instanceof NewMessage) {
                 this.rcvMsgs++;
+                NewMessage.free((NewMessage) msg);
 
             } else if (msg instanceof HasMessage) {
                 HasMessage hasmsg = (HasMessage) msg;
-                this.nodesWithMsg.add(hasmsg);
+                this.registerRequest(hasmsg);
+
+            } else if (msg instanceof WithdrawMessage) {
+                WithdrawMessage wthmsg = (WithdrawMessage) msg;
+                this.withdrawRequest(wthmsg.getCurrId());
+                WithdrawMessage.free(wthmsg);
 
             } else if (msg instanceof RoutingInfoMessage) {
                 RoutingInfoMessage routmsg = (RoutingInfoMessage) msg;
@@ -1760,8 +3703,14 @@ public abstract class NetworkController extends LoggerLayer {
      * matches the one represented by the NetworkNode connections
      */
     private void checkRoundConfiguration () {
-        if (!this.validTree()) {
+        if (this.verificationLevel == VerificationLevel.OFF) {
+            this.clearAssertAlterations();
+
+            return;
+
+        } else if (this.verificationLevel == VerificationLevel.FULL && !this.validTree()) {
             Tools.fatalError("Invalid infra tree");
+
         }
 
         for (int i = 0; i < this.assertAlterations.size(); i++) {
@@ -1784,14 +3733,11 @@ public abstract class NetworkController extends LoggerLayer {
                 Tools.fatalError("cluster or swt offset -1");
             }
 
-            NetworkSwitch swt = this.clusters.get(clsId).get(swtOffset);
-
-            flag &= swt.hasLink(toNode.getNetId(), fromNode.getNetId());
+            flag &= this.hasLink(clsId, swtOffset, toNode.getNetId(), fromNode.getNetId());
 
             if (fromNode.getLeftChildId() == toNode.getId()) {
                 clsId = this.getClusterId(fromNode, toNode);
                 swtOffset = fromNode.getLeftChildSwitchOffset();
-                swt = this.clusters.get(clsId).get(swtOffset);
                 if (clsId == -1 || swtOffset == -1) {
                     fromNode.debugNode();
                     toNode.debugNode();
@@ -1799,7 +3745,7 @@ public abstract class NetworkController extends LoggerLayer {
                     Tools.fatalError("cluster or swt offset -1");
                 }
 
-                flag &= swt.hasLink(fromNode.getNetId(), toNode.getNetId());
+                flag &= this.hasLink(clsId, swtOffset, fromNode.getNetId(), toNode.getNetId());
 
             } else if (fromNode.getRightChildId() == toNode.getId()) {
                 clsId = this.getClusterId(fromNode, toNode);
@@ -1811,9 +3757,7 @@ public abstract class NetworkController extends LoggerLayer {
                     Tools.fatalError("cluster or swt offset -1");
                 }
 
-                swt = this.clusters.get(clsId).get(swtOffset);
-
-                flag &= swt.hasLink(fromNode.getNetId(), toNode.getNetId());
+                flag &= this.hasLink(clsId, swtOffset, fromNode.getNetId(), toNode.getNetId());
 
             } else {
                 flag = false;
@@ -1831,16 +3775,155 @@ public abstract class NetworkController extends LoggerLayer {
 
         }
 
-        for (int i = 0; i < this.numNodes; i++)  {
-            if (!this.equivalentNodes(i)) {
+        if (this.verificationLevel == VerificationLevel.FULL) {
+            for (int i = 0; i < this.numNodes; i++)  {
+                if (!this.equivalentNodes(i)) {
+                    Tools.fatalError(
+                        "InfraNode: " + i + " not equivalent to its network correspondent"
+                    );
+
+                }
+            }
+
+        } else {
+            this.checkTouchedNodes();
+
+        }
+
+        this.clearAssertAlterations();
+    }
+
+    /**
+     * Verifies only the nodes altered in the last round, as recorded in assertAlterations,
+     * along with their parents and children. With the SAMPLED level, the next nodes of a
+     * window sliding over the whole tree are checked as well, so every node is eventually
+     * verified. Since a rotation never changes the subtree range of the nodes above it, the
+     * local BST checks of validLocalNode on the touched nodes are enough to keep the tree valid.
+     */
+    private void checkTouchedNodes () {
+        this.verificationStamp++;
+        this.numTouchedNodes = 0;
+
+        for (int i = 0; i < this.assertAlterations.size(); i++) {
+            Edge edge = this.assertAlterations.get(i);
+
+            this.touchNeighborhood(edge.getFromNode());
+            this.touchNeighborhood(edge.getToNode());
+        }
+
+        if (this.verificationLevel == VerificationLevel.SAMPLED && this.numNodes > 0) {
+            int sampleSize = (int) Math.ceil(Math.sqrt(this.numNodes));
+
+            for (int i = 0; i < sampleSize; i++) {
+                this.touchNode(this.tree.get(this.sampleCursor));
+                this.sampleCursor = (this.sampleCursor + 1) % this.numNodes;
+
+            }
+        }
+
+        for (int i = 0; i < this.numTouchedNodes; i++) {
+            int nodeId = this.touchedNodes[i];
+
+            if (!this.validLocalNode(nodeId)) {
+                Tools.fatalError("Invalid infra tree");
+
+            } else if (!this.equivalentNodes(nodeId)) {
                 Tools.fatalError(
-                    "InfraNode: " + i + " not equivalent to its network correspondent"
+                    "InfraNode: " + nodeId + " not equivalent to its network correspondent"
                 );
 
             }
         }
+    }
+
+    /**
+     * Marks the node, its parent and its children to be verified this round.
+     * @param node  the altered InfraNode
+     */
+    private void touchNeighborhood (InfraNode node) {
+        this.touchNode(node);
+        this.touchNode(node.getParent());
+        this.touchNode(node.getLeftChild());
+        this.touchNode(node.getRightChild());
+    }
+
+    /**
+     * Marks the node to be verified this round, unless it is a dummy node, the control root
+     * or was already marked.
+     * @param node  the InfraNode
+     */
+    private void touchNode (InfraNode node) {
+        if (!this.isValidNode(node) || this.verificationStamps[node.getId()] == this.verificationStamp) {
+            return;
+
+        }
+
+        this.verificationStamps[node.getId()] = this.verificationStamp;
+        this.touchedNodes[this.numTouchedNodes++] = node.getId();
+    }
+
+    /**
+     * Checks the BST properties around a node: its children are on the right side and point
+     * back to it, its subtree min and max ids agree with its children's, and its subtree range
+     * fits on its side of the parent.
+     * @param nodeId    the id of the InfraNode
+     * @return          true if the node is locally consistent, false otherwise
+     */
+    private boolean validLocalNode (int nodeId) {
+        InfraNode node = this.tree.get(nodeId);
+        InfraNode leftChild = node.getLeftChild();
+        InfraNode rightChild = node.getRightChild();
+        InfraNode parent = node.getParent();
+
+        boolean flag = true;
+
+        if (leftChild.getId() != -1) {
+            flag &= leftChild.getId() < nodeId && leftChild.getParent() == node;
+            flag &= node.getMinId() == leftChild.getMinId();
+
+        } else {
+            flag &= node.getMinId() == nodeId;
+
+        }
+
+        if (rightChild.getId() != -1) {
+            flag &= rightChild.getId() > nodeId && rightChild.getParent() == node;
+            flag &= node.getMaxId() == rightChild.getMaxId();
+
+        } else {
+            flag &= node.getMaxId() == nodeId;
+
+        }
 
-        this.assertAlterations = new ArrayList<Edge>();
+        if (parent.getLeftChild() == node) {
+            flag &= node.getMaxId() < parent.getId();
+
+        } else if (parent.getRightChild() == node) {
+            flag &= node.getMinId() > parent.getId();
+
+        } else {
+            flag = false;
+
+        }
+
+        if (!flag) {
+            node.debugNode();
+
+        }
+
+        return flag;
+    }
+
+    /**
+     * Returns the edges verified this round to the pool.
+     */
+    private void clearAssertAlterations () {
+        for (int i = 0; i < this.assertAlterations.size(); i++) {
+            Edge.free(this.assertAlterations.get(i));
+
+        }
+
+        this.assertAlterations.clear();
     }
 
     /**
@@ -1849,20 +3932,25 @@ public abstract class NetworkController extends LoggerLayer {
      */
     @Override
     public void controllerStep () {
+        this.joinPipelinedPlanning();
         this.checkRoundConfiguration();
 
-        for (int i = 0; i <= this.numNodes; i++)
-            this.usedNodes.set(i, false);
+        this.lockEpoch++;
 
         this.updateConn();
         this.updateLinks();
 
-        int missingMessages = this.rcvMsgs - this.cmpMsgs;
-        System.out.println(
-            "Round " + this.getCurrentRound() +
-            " Messages: " + this.rcvMsgs +
-            " Missing Messages: " + missingMessages
-        );
+        if (this.pipelinedPlanning) {
+            this.startPipelinedPlanning();
+
+        }
+
+        if (Trace.ROUNDS) {
+            Trace.round(this.getCurrentRound(), this.rcvMsgs, this.rcvMsgs - this.cmpMsgs);
+
+        }
+
+        Trace.flush();
     }
 
     /**
@@ -1890,9 +3978,9 @@ public abstract class NetworkController extends LoggerLayer {
 
             }
 
-            NetworkSwitch swt = this.clusters.get(clsId).get(swtOffset);
-
-            flag &= swt.hasLink(infraNode.getNetId(), infraNode.getLeftChild().getNetId());
+            flag &= this.hasLink(
+                clsId, swtOffset, infraNode.getNetId(), infraNode.getLeftChild().getNetId()
+            );
 
         } else {
             flag &= netNode.getLeftChildId() == -1;
@@ -1913,9 +4001,9 @@ public abstract class NetworkController extends LoggerLayer {
 
             }
 
-            NetworkSwitch swt = this.clusters.get(clsId).get(swtOffset);
-
-            flag &= swt.hasLink(infraNode.getNetId(), infraNode.getRightChild().getNetId());
+            flag &= this.hasLink(
+                clsId, swtOffset, infraNode.getNetId(), infraNode.getRightChild().getNetId()
+            );
 
         } else {
             flag &= netNode.getRightChildId() == -1;
@@ -1936,9 +4024,9 @@ public abstract class NetworkController extends LoggerLayer {
 
             }
 
-            NetworkSwitch swt = this.clusters.get(clsId).get(swtOffset);
-
-            flag &= swt.hasLink(infraNode.getNetId(), infraNode.getParent().getNetId());
+            flag &= this.hasLink(
+                clsId, swtOffset, infraNode.getNetId(), infraNode.getParent().getNetId()
+            );
 
         } else {
             flag &= netNode.getParentId() == -1;
@@ -8,8 +8,10 @@ import java.util.PriorityQueue;
 import projects.bstOpticalNet.nodes.messages.NewMessage;
 import projects.bstOpticalNet.nodes.messages.RoutingInfoMessage;
 import projects.bstOpticalNet.nodes.models.InfraNode;
+import projects.bstOpticalNet.nodes.models.Trace;
 import projects.bstOpticalNet.nodes.messages.HasMessage;
 import projects.bstOpticalNet.nodes.messages.OpticalNetMessage;
+import projects.bstOpticalNet.nodes.messages.WithdrawMessage;
 import projects.bstOpticalNet.nodes.infrastructureImplementations.InputNode;
 import projects.bstOpticalNet.nodes.infrastructureImplementations.SynchronizerLayer;
 
@@ -27,6 +29,7 @@ public class NetworkNode extends SynchronizerLayer {
     private PriorityQueue<OpticalNetMessage> buffer = new PriorityQueue<OpticalNetMessage>();
     private OpticalNetMessage currMsg = null;
     private RoutingInfoMessage routMsg = null;
+    private OpticalNetMessage announcedMsg = null;
 
     private InputNode parent = null;
     private InputNode leftChild = null;
@@ -217,31 +220,34 @@ public class NetworkNode extends SynchronizerLayer {
         OpticalNetMessage optmsg = new OpticalNetMessage(this.ID, to, priority);
 
         this.buffer.add(optmsg);
-        this.sendDirect(new NewMessage(), this.controller);
+        this.sendDirect(NewMessage.fabricate(), this.controller);
     }
 
     /**
-     * NetworkNode step, where it sends a HasMessage to the NetworkController that it
-     * has a OpticalNetMessage that is ready to perform a new operation.
-     * @param optmsg    the OpticalNetMessage
+     * NetworkNode step, where it informs the NetworkController which OpticalNetMessage is
+     * ready to perform a new operation. The controller keeps the last request announced by
+     * each node, so a HasMessage is only sent when the announced message changes, and a
+     * WithdrawMessage when the node no longer has a message to announce.
+     * @param optmsg    the OpticalNetMessage, or null if there is none
      */
     private void informController (OpticalNetMessage optmsg) {
-        if (optmsg.getDst() == this.ID) {
-            System.out.println(
-                "OPT-Message received from node " + optmsg.getSrc() + " to node " + this.ID
-            );
-            this.sendDirect(optmsg, this.controller);
-            this.currMsg = null;
-
+        if (optmsg == this.announcedMsg) {
             return;
 
         }
 
-        this.sendDirect(
-            new HasMessage(
-                    this.ID, optmsg.getPriority(), optmsg.getDst()
-            ), this.controller
-        );
+        this.announcedMsg = optmsg;
+        if (optmsg == null) {
+            this.sendDirect(WithdrawMessage.fabricate(this.ID), this.controller);
+
+        } else {
+            this.sendDirect(
+                HasMessage.fabricate(
+                        this.ID, optmsg.getPriority(), optmsg.getDst()
+                ), this.controller
+            );
+
+        }
     }
 
     /**
@@ -259,6 +265,39 @@ public class NetworkNode extends SynchronizerLayer {
         this.sendToInputNode(routMsg);
     }
 
+    /**
+     * Routes a cut-through RoutingInfoMessage through all of its hops in this round. The
+     * NetworkController locked every node of the path, so the message crosses the switches
+     * of the intermediate hops right away, each hop logged as a routing, and is only sent
+     * over the last one.
+     * @param routMsg   the cut-through RoutingInfoMessage
+     */
+    private void sendCutThrough (RoutingInfoMessage routMsg) {
+        InfraNode dstNode = this.controller.getInfraNode(routMsg.getDst());
+        NetworkNode hopNode = this;
+
+        while (routMsg.getRoutingTimes() > 1) {
+            routMsg.decreaseRoutingTimes();
+            routMsg.getRoutedMsg().incrementRouting();
+
+            InfraNode fromNode = this.controller.getInfraNode(hopNode.ID);
+            InfraNode toNode = this.controller.getInfraNode(routMsg.getRoutNodeId());
+            this.controller.logIncrementRouting(fromNode, toNode);
+
+            InputNode inNode = hopNode.getRoutingNode(routMsg);
+            if (!inNode.isActive()) {
+                Tools.fatalError("Cut-through routing through inactive input node");
+
+            }
+
+            hopNode = inNode.getOutputNode().getConnectedNode();
+            routMsg.setRoutNodeId(toNode.getRoutingNode(dstNode).getNetId());
+        }
+
+        routMsg.decreaseRoutingTimes();
+        hopNode.sendMsg(routMsg);
+    }
+
     /**
      * This method sends the RoutingInfoMessage to the InputNode informed by the sendMsg method
      * @param routMsg   the RoutingInfoMessage
@@ -294,42 +333,60 @@ public class NetworkNode extends SynchronizerLayer {
     /**
      * This method informs the controller whether this NetworkNode has a message
      * that needs to be routed or if it has a message that can perform a new operation.
-     * If it has neither it doesn't do anything.
+     * The message with the highest priority is kept as currMsg until it is routed, and it
+     * is only exchanged if a message with higher priority arrives. While a message is
+     * being routed through this node, the request for currMsg is withdrawn.
      */
     @Override
     public void nodeInformStep () {
         if (this.routMsg != null) {
+            this.informController(null);
             this.sendDirect(this.routMsg, this.controller);
 
-        } else if (!buffer.isEmpty()) {
+            return;
+
+        }
+
+        if (this.currMsg == null) {
+            this.currMsg = this.buffer.poll();
+
+        } else if (!this.buffer.isEmpty() && this.buffer.peek().compareTo(this.currMsg) < 0) {
+            this.buffer.add(this.currMsg);
             this.currMsg = this.buffer.poll();
-            this.informController(this.currMsg);
 
         }
+
+        if (this.currMsg != null && this.currMsg.getDst() == this.ID) {
+            if (Trace.MESSAGES) {
+                Trace.message(this.currMsg.getSrc(), this.ID, false);
+
+            }
+
+            this.sendDirect(this.currMsg, this.controller);
+            this.currMsg = null;
+
+        }
+
+        this.informController(this.currMsg);
     }
 
     /**
      * This method sets up the necessary information to rout a RoutingInfoMessage if the node was
-     * allowed by the NetworkController.
+     * allowed by the NetworkController. A RoutingInfoMessage without an enclosed message grants
+     * the routing of currMsg, the message this node announced. Otherwise, currMsg stays
+     * announced for the following rounds.
      * @return  True if the message was configured and false if not
      */
     private boolean configureRoutingMessage () {
         if (this.routMsg == null) {
-            if (this.currMsg != null) {
-                this.buffer.add(this.currMsg);
-                this.currMsg = null;
-
-            }
-
             return false;
 
-        } else if (this.currMsg == null && this.routMsg.getRoutedMsg() == null) {
-            Tools.fatalError("Trying to route non-existing message");
+        } else if (this.routMsg.getRoutedMsg() == null) {
+            if (this.currMsg == null) {
+                Tools.fatalError("Trying to route non-existing message");
 
-        } else if (this.currMsg != null && this.routMsg.getRoutedMsg() != null) {
-            Tools.fatalError("Trying to route more than one message");
+            }
 
-        } else if (this.currMsg != null) {
             this.routMsg.setRoutedMsg(this.currMsg);
             this.currMsg = null;
 
@@ -341,22 +398,34 @@ public class NetworkNode extends SynchronizerLayer {
     /**
      * Sends the RoutingInfoMessage to the next NetworkNode in the path if it was allowed by the
      * NetworkController and correctly configured by the configureRoutingMessage, decrementing the
-     * number of necessary routing times assigned to the RoutInfoMessage.
+     * number of necessary routing times assigned to the RoutInfoMessage. A cut-through message
+     * is sent through all of its hops at once.
      */
     @Override
     public void nodeRoutingStep () {
         if (this.configureRoutingMessage()) {
             if (this.routMsg.getDst() == this.ID) {
-                System.out.println("ROUT-Message received from node " + this.routMsg.getSrc() + " to node " + this.ID);
+                if (Trace.MESSAGES) {
+                    Trace.message(this.routMsg.getSrc(), this.ID, true);
+
+                }
+
                 this.sendDirect(this.routMsg.getRoutedMsg(), this.controller);
+                RoutingInfoMessage.free(this.routMsg);
                 this.routMsg = null;
 
                 return;
 
             }
 
-            this.routMsg.decreaseRoutingTimes();
-            this.sendMsg(this.routMsg);
+            if (this.routMsg.isCutThrough()) {
+                this.sendCutThrough(this.routMsg);
+
+            } else {
+                this.routMsg.decreaseRoutingTimes();
+                this.sendMsg(this.routMsg);
+
+            }
 
             this.routMsg = null;
 
@@ -391,6 +460,7 @@ public class NetworkNode extends SynchronizerLayer {
 
                 } else {
                     this.buffer.add(allowmsg.getRoutedMsg());
+                    RoutingInfoMessage.free(allowmsg);
 
                 }
 
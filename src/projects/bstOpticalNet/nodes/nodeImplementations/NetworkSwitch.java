@@ -1,11 +1,11 @@
 package projects.bstOpticalNet.nodes.nodeImplementations;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 
 import projects.bstOpticalNet.nodes.infrastructureImplementations.InputNode;
 import projects.bstOpticalNet.nodes.infrastructureImplementations.OutputNode;
 import projects.bstOpticalNet.nodes.models.AvailablePorts;
+import projects.bstOpticalNet.nodes.models.FreePorts;
 import sinalgo.tools.Tools;
 
 public class NetworkSwitch {
@@ -15,12 +15,17 @@ public class NetworkSwitch {
     private int size = 0;
     private int offset = -1;
 
-    private HashMap<Integer, InputNode> inputId2Node;
-    private HashMap<Integer, OutputNode> outputId2Node;
+    private int minInputId;
+    private int minOutputId;
+    private InputNode[] inputId2Node;
+    private OutputNode[] outputId2Node;
 
     private ArrayList<InputNode> inputNodes;
     private ArrayList<OutputNode> outputNodes;
 
+    private FreePorts freePorts = null;
+    private int numActiveLinks = 0;
+
     public void setIndex (int index) {
         this.index = index;
     }
@@ -34,6 +39,31 @@ public class NetworkSwitch {
 
     }
 
+    public int getSize () {
+        return this.size;
+    }
+
+    /**
+     * Getter for the number of active links held by the switch
+     * @return          the number of active links
+     */
+    public int getNumActiveLinks () {
+        return this.numActiveLinks;
+    }
+
+    /**
+     * Attaches the free-port bitsets of the cluster to the switch, marking the ports of the
+     * switch as free or busy. From then on the switch updates them on every link change.
+     * @param freePorts the FreePorts of the cluster holding the switch
+     */
+    public void setFreePorts (FreePorts freePorts) {
+        this.freePorts = freePorts;
+
+        for (int i = 0; i < this.size; i++) {
+            this.updateFreePorts(this.inputNodes.get(i), this.outputNodes.get(i));
+        }
+    }
+
     /**
      * Constructor for switches belonging to clusters of type 1. Sets the ranges for the input
      * and output ports as the same, minId to maxId.
@@ -60,8 +90,10 @@ public class NetworkSwitch {
     ) {
         this.size = maxId1 - minId1 + 1;
         this.offset = offset;
-        this.inputId2Node = new HashMap<>();
-        this.outputId2Node = new HashMap<>();
+        this.minInputId = minId1;
+        this.minOutputId = minId2;
+        this.inputId2Node = new InputNode[this.size];
+        this.outputId2Node = new OutputNode[this.size];
         this.inputNodes = new ArrayList<>();
         this.outputNodes = new ArrayList<>();
 
@@ -75,7 +107,7 @@ public class NetworkSwitch {
             inNode.connectToNode(node);
 
             this.inputNodes.add(inNode);
-            this.inputId2Node.put(networkNodeId, inNode);
+            this.inputId2Node[networkNodeId - minId1] = inNode;
         }
 
         for (int i = 0; i < this.size; ++i) {
@@ -88,7 +120,7 @@ public class NetworkSwitch {
             outNode.connectToNode(node);
 
             this.outputNodes.add(outNode);
-            this.outputId2Node.put(networkNodeId, outNode);
+            this.outputId2Node[networkNodeId - minId2] = outNode;
         }
 
         for (int i = 0; i < this.size; ++i) {
@@ -99,9 +131,67 @@ public class NetworkSwitch {
         }
     }
 
+    /**
+     * Links the InputNode inNode to the OutputNode outNode, keeping the count of active links
+     * and the free-port bitsets of the cluster up to date.
+     * @param inNode    the InputNode
+     * @param outNode   the OutputNode
+     * @param active    true if the link is active
+     */
+    private void setLink (InputNode inNode, OutputNode outNode, boolean active) {
+        this.numActiveLinks += (active ? 1 : 0) - (inNode.isActive() ? 1 : 0);
+        inNode.setLinkToOutputNode(outNode, active);
+
+        if (this.freePorts != null) {
+            this.updateFreePorts(inNode, outNode);
+
+        }
+    }
+
+    /**
+     * Copies the state of the ports inNode and outNode to the free-port bitsets. The ports
+     * padding the last cluster share the id of the last node, and only the one reached through
+     * getInputNode or getOutputNode is tracked.
+     * @param inNode    the InputNode
+     * @param outNode   the OutputNode
+     */
+    private void updateFreePorts (InputNode inNode, OutputNode outNode) {
+        if (this.getInputNode(inNode.getIndex()) == inNode) {
+            this.freePorts.setInputFree(inNode.getIndex(), this.offset, !inNode.isActive());
+
+        }
+
+        if (this.getOutputNode(outNode.getIndex()) == outNode) {
+            this.freePorts.setOutputFree(outNode.getIndex(), this.offset, !outNode.isActive());
+
+        }
+    }
+
+    /**
+     * Getter for the InputNode connected to the NetworkNode in
+     * @param in    the network node id
+     * @return      the InputNode, or null if the node is not connected to the input ports
+     */
+    private InputNode getInputNode (int in) {
+        int idx = in - this.minInputId;
+
+        return (idx >= 0 && idx < this.size ? this.inputId2Node[idx] : null);
+    }
+
+    /**
+     * Getter for the OutputNode connected to the NetworkNode out
+     * @param out   the network node id
+     * @return      the OutputNode, or null if the node is not connected to the output ports
+     */
+    private OutputNode getOutputNode (int out) {
+        int idx = out - this.minOutputId;
+
+        return (idx >= 0 && idx < this.size ? this.outputId2Node[idx] : null);
+    }
+
     public boolean hasLink (int in, int out) {
-        InputNode inNode = this.inputId2Node.get(in);
-        OutputNode outNode = this.outputId2Node.get(out);
+        InputNode inNode = this.getInputNode(in);
+        OutputNode outNode = this.getOutputNode(out);
 
         if (inNode.getOutputConnectedNodeId() != out || outNode.getInputConnectedNodeId() != in)
             return false;
@@ -115,21 +205,21 @@ public class NetworkSwitch {
     }
 
     public int getConnectedInputNodeId (int out) {
-        OutputNode outNode = this.outputId2Node.get(out);
+        OutputNode outNode = this.getOutputNode(out);
 
         return outNode.getInputConnectedNodeId();
     }
 
     public int getConnectedOutputNodeId (int in) {
-        InputNode inNode = this.inputId2Node.get(in);
+        InputNode inNode = this.getInputNode(in);
 
         return inNode.getOutputConnectedNodeId();
     }
 
     public AvailablePorts getAvailablePorts (int in, int out) {
-        InputNode inNode = this.inputId2Node.get(in);
+        InputNode inNode = this.getInputNode(in);
         if (inNode == null) {
-        	if (this.outputId2Node.get(in) == null) {
+        	if (this.getOutputNode(in) == null) {
         		Tools.fatalError("Wrong cluster to check available ports");
 
         	}
@@ -137,7 +227,7 @@ public class NetworkSwitch {
         	return AvailablePorts.NONE;
 
         }
-        OutputNode outNode = this.outputId2Node.get(out);
+        OutputNode outNode = this.getOutputNode(out);
 
         boolean inActive = inNode.isActive();
         boolean outActive = outNode.isActive();
@@ -157,10 +247,10 @@ public class NetworkSwitch {
     }
 
     public void removeLink (int in, int out) {
-        InputNode inNode = this.inputId2Node.get(in);
-        OutputNode outNode = this.outputId2Node.get(out);
+        InputNode inNode = this.getInputNode(in);
+        OutputNode outNode = this.getOutputNode(out);
 
-        inNode.setLinkToOutputNode(outNode, false);
+        this.setLink(inNode, outNode, false);
     }
 
     /**
@@ -170,8 +260,8 @@ public class NetworkSwitch {
      * @param out   the child network node id
      */
     public void updateParent (int in, int out) {
-        InputNode inNode = this.inputId2Node.get(in);
-        OutputNode outNode = this.outputId2Node.get(out);
+        InputNode inNode = this.getInputNode(in);
+        OutputNode outNode = this.getOutputNode(out);
 
         this.connectNodes(inNode, outNode);
         inNode.getConnectedNode().setParent(inNode);
@@ -184,8 +274,8 @@ public class NetworkSwitch {
      * @param out   the parent network node id
      */
     public void updateChild (int in, int out) {
-        InputNode inNode = this.inputId2Node.get(in);
-        OutputNode outNode = this.outputId2Node.get(out);
+        InputNode inNode = this.getInputNode(in);
+        OutputNode outNode = this.getOutputNode(out);
 
         this.connectNodes(inNode, outNode);
         inNode.getConnectedNode().setChild(inNode);
@@ -201,8 +291,8 @@ public class NetworkSwitch {
         InputNode oldInNode = outNode.getInputNode();
         OutputNode oldOutNode = inNode.getOutputNode();
 
-        oldInNode.setLinkToOutputNode(oldOutNode, false);
-        inNode.setLinkToOutputNode(outNode, true);
+        this.setLink(oldInNode, oldOutNode, false);
+        this.setLink(inNode, outNode, true);
     }
 
     /**
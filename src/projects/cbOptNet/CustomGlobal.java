@@ -5,6 +5,10 @@ import java.util.Random;
 
 import projects.cbOptNet.nodes.timers.TriggerNodeOperation;
 import projects.cbOptNet.nodes.nodeImplementations.CBNetController;
+import projects.bstOpticalNet.nodes.models.Trace;
+import projects.bstOpticalNet.nodes.models.TraceLevel;
+import projects.bstOpticalNet.nodes.models.VerificationLevel;
+import projects.bstOpticalNet.nodes.models.WeightDecay;
 import projects.bstOpticalNet.nodes.nodeImplementations.NetworkNode;
 import projects.defaultProject.RequestQueue;
 
@@ -31,6 +35,18 @@ public class CustomGlobal extends AbstractCustomGlobal {
     public Random random = Tools.getRandomNumberGenerator();
     public double lambda = 0.05;
 
+    /**
+     * Builds the controller of the simulation. Tools that run the simulation with an
+     * instrumented controller replace it before the simulation starts.
+     */
+    public interface ControllerFactory {
+        CBNetController create (
+            int numNodes, int switchSize, ArrayList<NetworkNode> netNodes, boolean mirrored
+        );
+    }
+
+    public static ControllerFactory controllerFactory = CBNetController::new;
+
     @Override
     public void preRun () {
         String input = "";
@@ -38,6 +54,17 @@ public class CustomGlobal extends AbstractCustomGlobal {
         Integer switchSize = -1;
         Integer numberOfNodes = -1;
         boolean mirrored = true;
+        VerificationLevel verification = null;
+        boolean contentionProfiler = false;
+        boolean pipelinedPlanning = false;
+        int controllerShards = 0;
+        int cutThroughHops = 0;
+        boolean eventLog = false;
+        WeightDecay weightDecay = WeightDecay.NONE;
+        long decayRounds = 1000;
+        Double epsilon = null;
+        int epsilonTuning = 0;
+        int potentialLog = 0;
 
         try {
 
@@ -77,6 +104,61 @@ public class CustomGlobal extends AbstractCustomGlobal {
                 this.isSequential = Configuration.getBooleanParameter("isSequential");
             }
 
+            if (Configuration.hasParameter("verification")) {
+                verification = VerificationLevel.fromString(
+                    Configuration.getStringParameter("verification")
+                );
+            }
+
+            if (Configuration.hasParameter("contentionProfiler")) {
+                contentionProfiler = Configuration.getBooleanParameter("contentionProfiler");
+            }
+
+            if (Configuration.hasParameter("pipelinedPlanning")) {
+                pipelinedPlanning = Configuration.getBooleanParameter("pipelinedPlanning");
+            }
+
+            if (Configuration.hasParameter("controllerShards")) {
+                controllerShards = Configuration.getIntegerParameter("controllerShards");
+            }
+
+            if (Configuration.hasParameter("cutThroughHops")) {
+                String hops = Configuration.getStringParameter("cutThroughHops").trim();
+                cutThroughHops = (
+                    hops.equalsIgnoreCase("unlimited") ? -1 : Integer.parseInt(hops)
+                );
+            }
+
+            if (Configuration.hasParameter("eventLog")) {
+                eventLog = Configuration.getBooleanParameter("eventLog");
+            }
+
+            if (Configuration.hasParameter("weightDecay")) {
+                weightDecay = WeightDecay.fromString(
+                    Configuration.getStringParameter("weightDecay")
+                );
+            }
+
+            if (Configuration.hasParameter("decayRounds")) {
+                decayRounds = Configuration.getIntegerParameter("decayRounds");
+            }
+
+            if (Configuration.hasParameter("epsilon")) {
+                epsilon = Configuration.getDoubleParameter("epsilon");
+            }
+
+            if (Configuration.hasParameter("epsilonTuning")) {
+                epsilonTuning = Configuration.getIntegerParameter("epsilonTuning");
+            }
+
+            if (Configuration.hasParameter("potentialLog")) {
+                potentialLog = Configuration.getIntegerParameter("potentialLog");
+            }
+
+            if (Configuration.hasParameter("trace")) {
+                Trace.setLevel(TraceLevel.fromString(Configuration.getStringParameter("trace")));
+            }
+
         } catch (Exception e) {
             e.printStackTrace();
             System.out.println("Missing configuration parameters");
@@ -88,14 +170,43 @@ public class CustomGlobal extends AbstractCustomGlobal {
             netNodes.add(newNetNode);
         }
 
-        this.controller = new CBNetController(
+        this.controller = controllerFactory.create(
             numberOfNodes, switchSize, netNodes, mirrored
         );
         this.controller.finishInitializationWithDefaultModels(true);
 
+        if (verification != null) {
+            this.controller.setVerificationLevel(verification);
+        }
+
+        this.controller.setPipelinedPlanning(pipelinedPlanning);
+        this.controller.setControllerShards(controllerShards);
+        this.controller.setCutThroughHops(cutThroughHops);
+        this.controller.setWeightDecay(weightDecay, decayRounds);
+
         /* Set Log Path */
         this.controller.setLogPath(output);
 
+        if (contentionProfiler) {
+            this.controller.enableContentionProfiler(output);
+        }
+
+        if (eventLog) {
+            this.controller.enableEventLog(output);
+        }
+
+        if (potentialLog > 0) {
+            this.controller.enablePotentialLog(potentialLog);
+        }
+
+        if (epsilon != null) {
+            this.controller.setEpsilon(epsilon);
+        }
+
+        if (epsilonTuning > 0) {
+            this.controller.enableEpsilonTuning(output, epsilonTuning);
+        }
+
         for (int i = 0; i < numberOfNodes; i++) {
             netNodes.get(i).setController(this.controller);
         }
@@ -137,4 +248,15 @@ public class CustomGlobal extends AbstractCustomGlobal {
         return false;
     }
 
+    @Override
+    public void onExit () {
+        Trace.close();
+
+        if (this.controller != null) {
+            this.controller.stopPipelinedPlanning();
+            this.controller.closeEventLog();
+
+        }
+    }
+
 }
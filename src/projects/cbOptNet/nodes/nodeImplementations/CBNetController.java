@@ -1,14 +1,18 @@
 package projects.cbOptNet.nodes.nodeImplementations;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import projects.bstOpticalNet.nodes.messages.HasMessage;
 import projects.bstOpticalNet.nodes.messages.NewMessage;
 import projects.bstOpticalNet.nodes.messages.OpticalNetMessage;
 import projects.bstOpticalNet.nodes.messages.RoutingInfoMessage;
+import projects.bstOpticalNet.nodes.messages.WithdrawMessage;
 import projects.bstOpticalNet.nodes.models.Direction;
+import projects.bstOpticalNet.nodes.models.EpsilonTuner;
 import projects.bstOpticalNet.nodes.models.InfraNode;
 import projects.bstOpticalNet.nodes.models.Rotation;
+import projects.bstOpticalNet.nodes.models.WeightDecay;
 import projects.bstOpticalNet.nodes.nodeImplementations.NetworkController;
 import projects.bstOpticalNet.nodes.nodeImplementations.NetworkNode;
 
@@ -23,7 +27,37 @@ import sinalgo.tools.Tools;
  * This class implements the blunt of the CBNet algortithm over the OpticalNet framework.
  */
 public class CBNetController extends NetworkController {
+    /* Fast log2 lookup table, exact below 2^LOG_TABLE_BITS */
+    private static final int LOG_TABLE_BITS = 12;
+    private static final double[] LOG_TABLE = new double[(1 << LOG_TABLE_BITS) + 1];
+
+    /* Bound on the error of a difference in rank computed with fastLog2 */
+    private static final double RANK_ERROR = 1e-6;
+
+    /* Fixed point unit of the potential, so the changes added by the shards sum up to the
+     * same value in any order */
+    private static final double POTENTIAL_SCALE = 1L << 32;
+
+    static {
+        for (int value = 1; value < LOG_TABLE.length; value++) {
+            LOG_TABLE[value] = Math.log(value) / Math.log(2);
+
+        }
+    }
+
     private double epsilon = -1.5;
+    private EpsilonTuner epsilonTuner = null;
+
+    private WeightDecay weightDecay = WeightDecay.NONE;
+    private long weightUnit = 1;
+    private double weightUnitRank = 0;
+
+    private long potentialWindow = 0;
+    private AtomicLong potential = new AtomicLong();
+    private long potentialWindowStart = -1;
+    private double potentialWindowStartPotential = 0;
+    private double potentialWindowStartRotations = 0;
+    private long potentialWindowHops = 0;
 
     /**
      * Initializes the CBNetController and makes a call for it's parent constructor.
@@ -56,218 +90,158 @@ public class CBNetController extends NetworkController {
         this.projectName = "cbOptNet";
     }
 
-    @Override
-    public void controllerStep () {
-        super.controllerStep();
-    }
-
-    /* Rotations */
-
     /**
-     * {@inheritDoc} Specific to the CBNet Controller, this method first checks if the new
-     * edges disposition changes the network potential enough to justify the rotation, only
-     * performing it if the change is bigger than the predefined epsilon.
+     * {@inheritDoc} Also moves the node weights to the current round, logs the potential at
+     * the end of each window if enabled and, if the epsilon tuning is enabled, updates the
+     * rotation threshold before the rotations are decided.
      */
     @Override
-    protected boolean semiZigZigBottomUp (InfraNode x) {
-        InfraNode y = x.getParent();
-        InfraNode z = y.getParent();
+    public void controllerStep () {
+        this.infraTree.advanceRound(this.getCurrentRound());
 
-        boolean leftZigZig = (y == z.getLeftChild());
-        InfraNode c = (leftZigZig ? y.getRightChild() : y.getLeftChild());
+        if (this.potentialWindow > 0) {
+            this.logPotentialWindow();
 
-        double deltaRank = this.zigDiffRank(y, z);
+        }
 
-        if (deltaRank < this.epsilon && super.semiZigZigBottomUp(x)) {
-            this.zigZigWeightUpdate(y, z, c);
+        if (this.epsilonTuner != null) {
+            double alterations = this.getAlterationCounterSeries().getSum();
+            this.epsilon = this.epsilonTuner.startRound(
+                this.projectName, this.getCurrentRound(), alterations
+            );
 
-            return true;
         }
 
-        return false;
+        super.controllerStep();
     }
 
+    /* Rotations */
+
     /**
-     * {@inheritDoc} Specific to the CBNet Controller, this method first checks if the new
-     * edges disposition changes the network potential enough to justify the rotation, only
-     * performing it if the change is bigger than the predefined epsilon.
+     * {@inheritDoc} Specific to the CBNet Controller, the value is the change in the network
+     * potential caused by the new edges disposition, computed from the weights of the nodes
+     * involved.
      */
     @Override
-    protected boolean zigZagBottomUp (InfraNode x) {
-        InfraNode y = x.getParent();
-        InfraNode z = y.getParent();
+    protected double evaluateRotation (Rotation op, InfraNode node) {
+        switch (op) {
+            case SEMI_ZIGZIGLEFT_BOTTOMUP:
+            case SEMI_ZIGZIGRIGHT_BOTTOMUP: {
+                InfraNode y = node.getParent();
 
-        boolean leftZigZag = (y == z.getLeftChild());
-        InfraNode b = (leftZigZag) ? x.getLeftChild() : x.getRightChild();
-        InfraNode c = (leftZigZag) ? x.getRightChild() : x.getLeftChild();
+                return this.zigDiffRank(y, y.getParent());
+            }
 
-        double deltaRank = this.zigZagDiffRank(x, y, z);
+            case SEMI_ZIGZAGLEFT_BOTTOMUP:
+            case SEMI_ZIGZAGRIGHT_BOTTOMUP: {
+                InfraNode y = node.getParent();
 
-        if (deltaRank < this.epsilon && super.zigZagBottomUp(x)) {
-            this.zigZagWeightUpdate(x, y, z, b, c);
+                return this.zigZagDiffRank(node, y, y.getParent());
+            }
 
-            return true;
-        }
+            case SEMI_ZIGZIGLEFT_TOPDOWN:
+                return this.zigDiffRank(node.getLeftChild(), node);
 
-        return false;
-    }
+            case SEMI_ZIGZIGRIGHT_TOPDOWN:
+                return this.zigDiffRank(node.getRightChild(), node);
 
-    /**
-     * {@inheritDoc} Specific to the CBNet Controller, this method first checks if the new
-     * edges disposition changes the network potential enough to justify the rotation, only
-     * performing it if the change is bigger than the predefined epsilon.
-     */
-    @Override
-    protected boolean semiZigZigLeftTopDown (InfraNode z) {
-        InfraNode y = z.getLeftChild();
-        InfraNode c = y.getRightChild();
+            case SEMI_ZIGZAGLEFT_TOPDOWN: {
+                InfraNode y = node.getLeftChild();
 
-        double deltaRank = this.zigDiffRank(y, z);
+                return this.zigZagDiffRank(y.getRightChild(), y, node);
+            }
 
-        if (deltaRank < this.epsilon && super.semiZigZigLeftTopDown(z)) {
-            this.zigZigWeightUpdate(y, z, c);
+            case SEMI_ZIGZAGRIGHT_TOPDOWN: {
+                InfraNode y = node.getRightChild();
 
-            return true;
-        }
+                return this.zigZagDiffRank(y.getLeftChild(), y, node);
+            }
 
-        return false;
+            default:
+                return 0;
+        }
     }
 
     /**
-     * {@inheritDoc} Specific to the CBNet Controller, this method first checks if the new
-     * edges disposition changes the network potential enough to justify the rotation, only
-     * performing it if the change is bigger than the predefined epsilon.
+     * {@inheritDoc} Specific to the CBNet Controller, the rotation is only performed if it
+     * changes the network potential by more than the predefined epsilon.
      */
     @Override
-    protected boolean semiZigZigRightTopDown (InfraNode z) {
-        InfraNode y = z.getRightChild();
-        InfraNode c = y.getLeftChild();
-
-        double deltaRank = this.zigDiffRank(y, z);
-
-        if (deltaRank < this.epsilon && super.semiZigZigRightTopDown(z)) {
-            this.zigZigWeightUpdate(y, z, c);
-
-            return true;
-        }
-
-        return false;
+    protected boolean acceptsRotation (double value) {
+        return value < this.epsilon;
     }
 
     /**
-     * {@inheritDoc} Specific to the CBNet Controller, this method first checks if the new
-     * edges disposition changes the network potential enough to justify the rotation, only
-     * performing it if the change is bigger than the predefined epsilon.
+     * {@inheritDoc} Specific to the CBNet Controller, the change in rank is added to the
+     * network potential.
      */
     @Override
-    protected boolean zigZagLeftTopDown (InfraNode z) {
-        InfraNode y = z.getLeftChild();
-        InfraNode x = y.getRightChild();
-        InfraNode b = x.getLeftChild();
-        InfraNode c = x.getRightChild();
-
-        double deltaRank = this.zigZagDiffRank(x, y, z);
-
-        if (deltaRank < this.epsilon && super.zigZagLeftTopDown(z)) {
-            this.zigZagWeightUpdate(x, y, z, b, c);
+    protected void rotationPerformed (double value) {
+        this.addPotential(value);
+    }
 
-            return true;
-        }
+    /* End of Rotations */
 
-        return false;
-    }
+    /* Private Getters */
 
     /**
-     * {@inheritDoc} Specific to the CBNet Controller, this method first checks if the new
-     * edges disposition changes the network potential enough to justify the rotation, only
-     * performing it if the change is bigger than the predefined epsilon.
+     * Util function used to get the log2 of a value
+     * @param value long integer value
+     * @return      the log base 2 of this value
      */
-    @Override
-    protected boolean zigZagRightTopDown (InfraNode z) {
-        InfraNode y = z.getRightChild();
-        InfraNode x = y.getLeftChild();
-        InfraNode b = x.getRightChild();
-        InfraNode c = x.getLeftChild();
-
-        double deltaRank = this.zigZagDiffRank(x, y, z);
-
-        if (deltaRank < this.epsilon && super.zigZagRightTopDown(z)) {
-            this.zigZagWeightUpdate(x, y, z, b, c);
-
-            return true;
-        }
-
-        return false;
+    public static double log2 (long value) {
+        return (value == 0 ? 0 : Math.log(value) / Math.log(2));
     }
 
     /**
-     * This function updates the the weigth of the y and z's subtree, after one
-     * zig-zig rotation. Recalculating y's weigth with z as it's child, and z's
-     * weigth with c as it's child
-     * @param y initial parent of the x node in zig-zig rotation
-     * @param z initial parent of the y node in zig-zig rotation
-     * @param c initial child of x in zig-zig operation
+     * Util function used to get an approximation of the log2 of a value. Values below
+     * 2^LOG_TABLE_BITS are looked up with the same result as log2. Larger values are shifted
+     * down to their LOG_TABLE_BITS most significant bits, the shift, taken from the exponent,
+     * added to the log2 interpolated between the two neighbouring table entries. The leading
+     * bits being at least 2^(LOG_TABLE_BITS - 1), the interpolation error is below
+     * log2(e) / (8 * 2^22) < 5e-8.
+     * @param value long integer value
+     * @return      the approximate log base 2 of this value
      */
-    private void zigZigWeightUpdate (InfraNode y, InfraNode z, InfraNode c) {
-        long yOldWeight = y.getWeight();
-        long zOldWeight = z.getWeight();
-
-        long cWeight = (c.getId() != -1) ? c.getWeight() : 0;
+    public static double fastLog2 (long value) {
+        if (value < LOG_TABLE.length) {
+            return (value < 0 ? Double.NaN : LOG_TABLE[(int) value]);
 
-        long zNewWeight = zOldWeight - yOldWeight + cWeight;
-        long yNewWeight = yOldWeight - cWeight + zNewWeight;
+        }
 
-        z.setWeight(zNewWeight);
-        y.setWeight(yNewWeight);
+        int shift = 64 - Long.numberOfLeadingZeros(value) - LOG_TABLE_BITS;
+        int lead = (int) (value >>> shift);
+        double fraction = (double) (value & ((1L << shift) - 1)) / (1L << shift);
 
+        return shift + LOG_TABLE[lead] + fraction * (LOG_TABLE[lead + 1] - LOG_TABLE[lead]);
     }
 
     /**
-     * This function updates the the weigth of the x, y and z's subtree, after one
-     * zig-zag rotation. Recalculating y's weigth with b as it's child in the place of x,
-     * and z's weigth with c as it's child in the place of y, and x as the parent of both
-     * y and z.
-     * @param x reference node in zig-zag rotation
-     * @param y initial parent of the x node in zig-zag rotation
-     * @param z initial parent of the y node in zig-zag rotation
-     * @param b initial child of x in zig-zag operation
-     * @param c initial child of x in zig-zag operation
+     * Util function used to get the rank of a weight in endpoint units, the log2 of the number
+     * of endpoints the weight stands for, so the rank does not depend on the weight unit of
+     * the tree. Weights below one endpoint are ranked as one endpoint, as log2 ranks 0 as 1.
+     * @param weight    the weight
+     * @return          the approximate rank of the weight, computed with fastLog2
      */
-    private void zigZagWeightUpdate (
-        InfraNode x, InfraNode y, InfraNode z, InfraNode b, InfraNode c
-    ) {
-        long xOldWeight = x.getWeight();
-        long yOldWeight = y.getWeight();
-        long zOldWeight = z.getWeight();
-
-        long bWeight = (b.getId() != -1) ? b.getWeight() : 0;
-        long cWeight = (c.getId() != -1) ? c.getWeight() : 0;
-
-        long yNewWeight = yOldWeight - xOldWeight + bWeight;
-        long zNewWeight = zOldWeight - yOldWeight + cWeight;
-        long xNewWeight = xOldWeight - bWeight - cWeight + yNewWeight + zNewWeight;
-
-        y.setWeight(yNewWeight);
-        z.setWeight(zNewWeight);
-        x.setWeight(xNewWeight);
-
+    private double rank (long weight) {
+        return fastLog2(Math.max(weight, this.weightUnit)) - this.weightUnitRank;
     }
-    /* End of Rotations */
-
-    /* Private Getters */
 
     /**
-     * Util function used to get the log2 of a value
-     * @param value long integer value
-     * @return      the log base 2 of this value
+     * Util function used to get the rank of a weight as rank does, computed with log2
+     * @param weight    the weight
+     * @return          the rank of the weight
      */
-    private double log2 (long value) {
-        return (value == 0 ? 0 : Math.log(value) / Math.log(2));
+    private double exactRank (long weight) {
+        return log2(Math.max(weight, this.weightUnit)) - this.weightUnitRank;
     }
 
     /**
      * Compute the difference in rank between the current network topology
-     * and the network topology after realizing a zig-zig rotation
+     * and the network topology after realizing a zig-zig rotation. The difference is computed
+     * with rank, with an error of at most 4 * 5e-8, and computed again with exactRank when it
+     * lies within RANK_ERROR of epsilon, so the rotations performed are the same as with log2
+     * alone.
      * @param x     the reference node
      * @param y     x parent node
      * @return      (double) the difference in rank
@@ -285,19 +259,28 @@ public class CBNetController extends NetworkController {
         long yNewWeight = yOldWeight - xOldWeight + bWeight;
         long xNewWeight = xOldWeight - bWeight + yNewWeight;
 
-        double xOldRank = log2(xOldWeight);
-        double yOldRank = log2(yOldWeight);
-        double xNewRank = log2(xNewWeight);
-        double yNewRank = log2(yNewWeight);
+        double deltaRank = (
+            this.rank(yNewWeight) + this.rank(xNewWeight) - this.rank(yOldWeight) -
+            this.rank(xOldWeight)
+        );
 
-        double deltaRank = yNewRank + xNewRank - yOldRank - xOldRank;
+        if (Math.abs(deltaRank - this.epsilon) < RANK_ERROR) {
+            double xOldRank = this.exactRank(xOldWeight);
+            double yOldRank = this.exactRank(yOldWeight);
+            double xNewRank = this.exactRank(xNewWeight);
+            double yNewRank = this.exactRank(yNewWeight);
+
+            deltaRank = yNewRank + xNewRank - yOldRank - xOldRank;
+
+        }
 
         return deltaRank;
     }
 
     /**
      * Compute the difference in rank between the current network topology
-     * and the network topology after realizing a zig-zag rotation
+     * and the network topology after realizing a zig-zag rotation, with rank as in
+     * zigDiffRank.
      * @param x     the reference node
      * @param y     x parent node
      * @param z     y parent node
@@ -320,23 +303,32 @@ public class CBNetController extends NetworkController {
         long zNewWeight = zOldWeight - yOldWeight + cWeight;
         long xNewWeight = xOldWeight - bWeight - cWeight + yNewWeight + zNewWeight;
 
-        double xOldRank = log2(xOldWeight);
-        double yOldRank = log2(yOldWeight);
-        double zOldRank = log2(zOldWeight);
-        double xNewRank = log2(xNewWeight);
-        double yNewRank = log2(yNewWeight);
-        double zNewRank = log2(zNewWeight);
+        double deltaRank = (
+            this.rank(xNewWeight) + this.rank(yNewWeight) + this.rank(zNewWeight) -
+            this.rank(xOldWeight) - this.rank(yOldWeight) - this.rank(zOldWeight)
+        );
 
-        double deltaRank = xNewRank + yNewRank + zNewRank - xOldRank - yOldRank - zOldRank;
+        if (Math.abs(deltaRank - this.epsilon) < RANK_ERROR) {
+            double xOldRank = this.exactRank(xOldWeight);
+            double yOldRank = this.exactRank(yOldWeight);
+            double zOldRank = this.exactRank(zOldWeight);
+            double xNewRank = this.exactRank(xNewWeight);
+            double yNewRank = this.exactRank(yNewWeight);
+            double zNewRank = this.exactRank(zNewWeight);
+
+            deltaRank = xNewRank + yNewRank + zNewRank - xOldRank - yOldRank - zOldRank;
+
+        }
 
         return deltaRank;
     }
 
     /**
      * Increments the weigth over the path between the src and dst node. Even though this
-     * method is only called when the message reaches is destination, the weight updates after
-     * rotations make it so that the path, even if it's altered ends up with the same distribution
-     * of weigths as it would have if it wasn't altered.
+     * method is only called when the message reaches is destination, the weight of a node is
+     * resolved from the endpoints inside its subtree, so the path, even if it's altered by the
+     * rotations, ends up with the same distribution of weigths as it would have if it wasn't
+     * altered.
      * @param src   src node of the message
      * @param dst   dst node of the message
      */
@@ -344,7 +336,118 @@ public class CBNetController extends NetworkController {
         InfraNode srcNode = this.getInfraNode(src);
         InfraNode dstNode = this.getInfraNode(dst);
 
-        srcNode.incrementPathWeight(dstNode, false);
+        this.infraTree.advanceRound(this.getCurrentRound());
+
+        if (this.potentialWindow > 0 && this.weightDecay == WeightDecay.NONE) {
+            this.addPathPotential(srcNode, dstNode);
+
+        }
+
+        srcNode.incrementPathWeight(dstNode, this.getInfraNode(this.numNodes + 1));
+    }
+
+    /**
+     * Adds to the potential the change caused by the completion of a message from srcNode to
+     * dstNode, before its weights are incremented. The nodes from srcNode up to the control
+     * root gain one endpoint, or two if their subtree also holds dstNode, and the nodes from
+     * dstNode up to the first one holding srcNode gain one. The control root, discounted once,
+     * gains one. Every node on the path has its weight read from the Fenwick tree, so a
+     * completed message costs O(log n) per node of its path while the potential is logged.
+     * @param srcNode   src node of the message
+     * @param dstNode   dst node of the message
+     */
+    private void addPathPotential (InfraNode srcNode, InfraNode dstNode) {
+        int srcId = srcNode.getId();
+        int dstId = dstNode.getId();
+        double change = 0;
+
+        for (InfraNode node = srcNode; node.getId() != -1; node = node.getParent()) {
+            int gain = (
+                node.getParent().getId() == -1 ||
+                dstId < node.getMinId() || dstId > node.getMaxId() ? 1 : 2
+            );
+            long weight = node.getWeight();
+            change += this.rank(weight + gain * this.weightUnit) - this.rank(weight);
+
+        }
+
+        for (
+            InfraNode node = dstNode;
+            srcId < node.getMinId() || srcId > node.getMaxId();
+            node = node.getParent()
+        ) {
+            long weight = node.getWeight();
+            change += this.rank(weight + this.weightUnit) - this.rank(weight);
+
+        }
+
+        this.addPotential(change);
+    }
+
+    /**
+     * Adds a change to the network potential, the sum of the ranks of every node, if the
+     * potential is being logged
+     * @param change    the change in potential
+     */
+    private void addPotential (double change) {
+        if (this.potentialWindow > 0) {
+            this.potential.addAndGet(Math.round(change * POTENTIAL_SCALE));
+
+        }
+    }
+
+    /**
+     * Computes the network potential from the weights of every node, used when the weights
+     * decay and every rank changes from one round to the next.
+     * @return      the network potential
+     */
+    private double computePotential () {
+        double sum = 0;
+        for (int netId = 1; netId <= this.numNodes + 1; netId++) {
+            sum += this.rank(this.getInfraNode(netId).getWeight());
+
+        }
+
+        return sum;
+    }
+
+    /**
+     * Closes the window of the potential log once it reached its length, logging the
+     * potential, the actual cost and the amortized cost of the window.
+     */
+    private void logPotentialWindow () {
+        long round = this.getCurrentRound();
+        double rotations = this.getRotationCounterSeries().getSum();
+
+        if (
+            this.potentialWindowStart >= 0 &&
+            round - this.potentialWindowStart < this.potentialWindow
+        ) {
+            return;
+
+        }
+
+        if (this.weightDecay != WeightDecay.NONE) {
+            this.potential.set(Math.round(this.computePotential() * POTENTIAL_SCALE));
+
+        }
+
+        double currPotential = this.potential.get() / POTENTIAL_SCALE;
+
+        if (this.potentialWindowStart >= 0) {
+            long windowRotations = (long) (rotations - this.potentialWindowStartRotations);
+            this.logPotential(
+                currPotential, this.potentialWindowHops, windowRotations,
+                this.potentialWindowHops + windowRotations +
+                currPotential - this.potentialWindowStartPotential
+            );
+
+        }
+
+        this.potentialWindowStart = round;
+        this.potentialWindowStartPotential = currPotential;
+        this.potentialWindowStartRotations = rotations;
+        this.potentialWindowHops = 0;
     }
 
     /**
@@ -352,9 +455,9 @@ public class CBNetController extends NetworkController {
      * it means that this message has reached it's destination, so the number of completed
      * messages is incremented, the LoggerLayer reports this message information and the weigth
      * in the path between the src and destination node is updated. If it is a NewMessage the
-     * number of received messages is incremented. If it is a HasMessage, the sender node is
-     * marked as a nodeWithMessage for the controllerStep. If it is a RoutingInfoMessage, the
-     * sender node is marked as a routerNode.
+     * number of received messages is incremented. If it is a HasMessage or a WithdrawMessage,
+     * the request of the sender node is registered or removed. If it is a RoutingInfoMessage,
+     * the sender node is marked as a routerNode.
      */
     @Override
     public void handleMessages (Inbox inbox) {
@@ -366,6 +469,13 @@ public class CBNetController extends NetworkController {
                 this.logIncrementCompletedRequests();
                 this.logMessageRouting(optmsg.getRouting());
 
+                if (this.epsilonTuner != null) {
+                    this.epsilonTuner.recordCompletion(optmsg.getRouting());
+
+                }
+
+                this.potentialWindowHops += optmsg.getRouting();
+
                 this.incrementPathWeight(optmsg.getSrc(), optmsg.getDst());
 
                 this.cmpMsgs++;
@@ -373,10 +483,16 @@ public class CBNetController extends NetworkController {
 
             } else if (msg instanceof NewMessage) {
                 this.rcvMsgs++;
+                NewMessage.free((NewMessage) msg);
 
             } else if (msg instanceof HasMessage) {
                 HasMessage hasmsg = (HasMessage) msg;
-                this.nodesWithMsg.add(hasmsg);
+                this.registerRequest(hasmsg);
+
+            } else if (msg instanceof WithdrawMessage) {
+                WithdrawMessage wthmsg = (WithdrawMessage) msg;
+                this.withdrawRequest(wthmsg.getCurrId());
+                WithdrawMessage.free(wthmsg);
 
             } else if (msg instanceof RoutingInfoMessage) {
                 RoutingInfoMessage routmsg = (RoutingInfoMessage) msg;
@@ -402,4 +518,53 @@ public class CBNetController extends NetworkController {
         this.seq = false;
     }
 
+    /**
+     * Sets how the node weights forget old messages, so the rotations follow shifts in the
+     * traffic. The default, WeightDecay.NONE, counts every completed message forever.
+     * @param weightDecay   the WeightDecay
+     * @param decayRounds   the half-life of the EXPONENTIAL decay, or the length of the
+     *                      WINDOW, in rounds
+     */
+    public void setWeightDecay (WeightDecay weightDecay, long decayRounds) {
+        this.infraTree.setWeightDecay(weightDecay, decayRounds);
+        this.weightDecay = (decayRounds > 0 ? weightDecay : WeightDecay.NONE);
+        this.weightUnit = this.infraTree.getWeightUnit();
+        this.weightUnitRank = log2(this.weightUnit);
+    }
+
+    /**
+     * Enables the potential log. The potential, the sum of the ranks of every node, is kept
+     * up to date as the rotations and completed messages change the weights, and logged on
+     * the potential.csv file every windowRounds rounds, with the actual and amortized cost of
+     * the window. Keeping it up to date costs each completed message a walk over its path,
+     * with an O(log n) weight read per node. With decaying weights, every rank changes each
+     * round, so the potential is computed again at the end of each window instead, reading
+     * the weight of every node in O(n log n).
+     * @param windowRounds  the number of rounds between two lines of the log
+     */
+    public void enablePotentialLog (long windowRounds) {
+        this.potentialWindow = windowRounds;
+        this.potential.set(Math.round(this.computePotential() * POTENTIAL_SCALE));
+    }
+
+    /**
+     * Sets the rotation threshold epsilon, the change in the network potential a rotation
+     * must exceed to be performed. The initial value when the tuning of epsilon is enabled.
+     * @param epsilon       the rotation threshold, -1.5 by default
+     */
+    public void setEpsilon (double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Enables the online tuning of epsilon, adjusted every windowRounds rounds to the
+     * throughput and the cost of the completed requests, with its trajectory written on the
+     * folder given by path.
+     * @param path          path to the folder where the tuning log is stored
+     * @param windowRounds  the number of rounds between two adjustments
+     */
+    public void enableEpsilonTuning (String path, long windowRounds) {
+        this.epsilonTuner = new EpsilonTuner(this.epsilon, windowRounds, path);
+    }
+
 }
@@ -59,6 +59,18 @@ public abstract class MessageTransmissionModel extends Model {
 	 */
 	public abstract double timeToReach(Node startNode, Node endNode, Message msg);
 
+	/**
+	 * Returns the transmission time of this model if it is the same for all messages, 
+	 * independent of the sender, the receiver and the message itself. The framework 
+	 * uses this information to deliver messages without calling <code>timeToReach</code>.
+	 * <p>
+	 * The default implementation returns -1, i.e. the transmission time is not constant.
+	 * @return The constant transmission time, a negative value if the transmission time varies.
+	 */
+	public double getConstantTransmissionTime() {
+		return -1;
+	}
+
 	/* (non-Javadoc)
 	 * @see models.Model#getType()
 	 */
@@ -63,12 +63,14 @@ import sinalgo.models.MobilityModel;
 import sinalgo.models.Model;
 import sinalgo.models.ReliabilityModel;
 import sinalgo.nodes.edges.Edge;
+import sinalgo.nodes.messages.DirectMailbox;
 import sinalgo.nodes.messages.Inbox;
 import sinalgo.nodes.messages.Message;
 import sinalgo.nodes.messages.NackBox;
 import sinalgo.nodes.messages.Packet;
 import sinalgo.nodes.messages.PacketCollection;
 import sinalgo.nodes.messages.Packet.PacketType;
+import sinalgo.nodes.messages.TransferableMessage;
 import sinalgo.nodes.timers.Timer;
 import sinalgo.runtime.GUIRuntime;
 import sinalgo.runtime.Global;
@@ -459,10 +461,33 @@ public abstract class Node implements DoublyLinkedListEntry{
 	 * <li>However, the delivery time depends on the messageTransmissionModel.</li>
 	 * </ul>
 	 * This send method may be interesting to implement P2P situations. 
+	 * <p>
+	 * In synchronous mode, messages implementing {@link TransferableMessage} are delivered 
+	 * without being cloned or wrapped in a packet if the transmission time is constant. 
 	 * @param msg The message to send
 	 * @param target The destination node of the message
 	 */
 	public final void sendDirect(Message msg, Node target) {
+		if(!Global.isAsynchronousMode && msg instanceof TransferableMessage) {
+			double transmissionTime = Global.messageTransmissionModel.getConstantTransmissionTime();
+			if(transmissionTime >= 0) {
+				double arrivingTime = Global.currentTime + transmissionTime;
+				if(target.directMailbox == null) {
+					target.directMailbox = new DirectMailbox(target);
+				}
+				if(target.directMailbox.accepts(arrivingTime)) {
+					if(!Global.isRunning){
+						Main.fatalError("The node "+this.ID+" tried to send a message outside of its simulation " +
+						                "cycle. Due to synchroniazion issues, this is not allowed.\n" +
+						                "This problem probably came up due to a call from a nodes popup method.\n" +
+						                "Do not directly call the send-method but start a timer\n" + "so that the node sends during its simulation cycle.");
+					}
+					target.directMailbox.add(msg, this, arrivingTime, intensity);
+					Global.numberOfMessagesInThisRound++; // statistics
+					return;
+				}
+			}
+		}
 		Message clonedMsg = msg.clone(); // send a copy of the message
 		if(clonedMsg == null) {
 			Main.fatalError("The clone() method of '" + msg.getClass().getName() + "' returns null \n" + "instead of a copy of the message.");
@@ -929,6 +954,7 @@ public abstract class Node implements DoublyLinkedListEntry{
 		
 		//update the message buffer
 		packetBuffer.updateMessageBuffer();
+		boolean hasDirectMessages = directMailbox != null && directMailbox.updateArrivals() > 0;
 		
 		preStep();
 		
@@ -974,6 +1000,9 @@ public abstract class Node implements DoublyLinkedListEntry{
 		//call the 'handleMessages' ALWAYS, and pass the appropriate Inbox. This Inbox
 		//can also be a an Iterator over an empty list.
 		inbox = packetBuffer.getInbox();
+		if(hasDirectMessages) {
+			inbox.attachDirectMailbox(directMailbox);
+		}
 		handleMessages(inbox);
 		
 		// a custom method that may do something at the end of the step
@@ -1064,7 +1093,26 @@ public abstract class Node implements DoublyLinkedListEntry{
 	/**
 	 * The buffer, where all arriving messages are stored.
 	 */
-	private PacketBuffer packetBuffer = new InboxPacketBuffer(true);
+	private PacketBuffer packetBuffer = createPacketBuffer();
+	
+	/**
+	 * Creates the buffer that stores the packets on the way to this node. The default 
+	 * implementation returns an <code>InboxPacketBuffer</code>. Node classes that receive 
+	 * many packets per round may return a <code>RingBufferPacketBuffer</code> instead. 
+	 * <p>
+	 * Note that this method is called while the node object is constructed, before the 
+	 * members of subclasses are initialized.
+	 * @return A new packet buffer for this node. 
+	 */
+	protected PacketBuffer createPacketBuffer() {
+		return new InboxPacketBuffer(true);
+	}
+	
+	/**
+	 * The mailbox for messages sent through the direct delivery lane, created 
+	 * when the first such message is sent to this node.
+	 */
+	private DirectMailbox directMailbox = null;
 	
 	/**
 	 * Buffer that holds all packets that were sent by this round, and should
@@ -0,0 +1,234 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package sinalgo.nodes;
+
+import sinalgo.configuration.Configuration;
+import sinalgo.nodes.edges.Edge;
+import sinalgo.nodes.messages.Inbox;
+import sinalgo.nodes.messages.Packet;
+import sinalgo.nodes.messages.PacketCollection;
+import sinalgo.runtime.Global;
+import sinalgo.runtime.Runtime;
+
+/**
+ * A packet buffer for the synchronous simulation mode that stores the packets on the way 
+ * to a node in a ring of buckets, one bucket per round. The packets of a bucket are kept 
+ * in a growable array, such that adding a packet does not allocate a list entry, and 
+ * preparing the inbox of a round only touches the packets arriving in that round.
+ * <p>
+ * A packet is stored in the bucket of the first round whose time is not smaller than the 
+ * arriving time of the packet. The ring grows when a packet arrives further in the future 
+ * than the ring reaches.
+ * <p>
+ * The messages are delivered in the same order as with the <code>InboxPacketBuffer</code>.
+ * A node class selects this buffer by overwriting <code>Node.createPacketBuffer()</code>. 
+ */
+public class RingBufferPacketBuffer implements PacketBuffer {
+
+	private Packet[][] buckets; // the packets of each bucket, in the order they were added
+	private int[] bucketSizes; // the number of packets in each bucket
+	private int head = 0; // the bucket of round baseRound
+	private long baseRound = 0; // the first round that was not yet delivered
+	private int numPackets = 0; // the number of packets in all buckets
+	
+	// the packets that arrive in this step
+	private PacketCollection arrivingPackets = new PacketCollection();
+	
+	private Inbox inbox = null;
+	
+	/**
+	 * Creates a new, empty RingBufferPacketBuffer.
+	 */
+	public RingBufferPacketBuffer() {
+		buckets = new Packet[4][];
+		bucketSizes = new int[4];
+	}
+	
+	/**
+	 * @param round A round not before baseRound that fits into the ring.
+	 * @return The index of the bucket holding the packets of the given round.
+	 */
+	private int bucketOf(long round) {
+		return (int) ((head + (round - baseRound)) & (buckets.length - 1));
+	}
+	
+	/**
+	 * Doubles the number of buckets until the given round fits into the ring. 
+	 * @param round The round that needs to fit into the ring.
+	 */
+	private void growRing(long round) {
+		int capacity = buckets.length;
+		while(round - baseRound >= capacity) {
+			capacity *= 2;
+		}
+		Packet[][] b = new Packet[capacity][];
+		int[] s = new int[capacity];
+		for(int i = 0; i < buckets.length; i++) {
+			int from = (head + i) & (buckets.length - 1);
+			b[i] = buckets[from];
+			s[i] = bucketSizes[from];
+		}
+		buckets = b;
+		bucketSizes = s;
+		head = 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.PacketBuffer#addPacket(sinalgo.nodes.messages.Packet)
+	 */
+	public void addPacket(Packet p) {
+		// packets that are already due are delivered in the next step
+		long round = Math.max((long) Math.ceil(p.arrivingTime), baseRound);
+		if(round - baseRound >= buckets.length) {
+			growRing(round);
+		}
+		int b = bucketOf(round);
+		Packet[] bucket = buckets[b];
+		if(bucket == null) {
+			bucket = buckets[b] = new Packet[4];
+		} else if(bucketSizes[b] == bucket.length) {
+			Packet[] larger = new Packet[2 * bucket.length];
+			System.arraycopy(bucket, 0, larger, 0, bucket.length);
+			bucket = buckets[b] = larger;
+		}
+		bucket[bucketSizes[b]++] = p;
+		numPackets++;
+	}
+	
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.PacketBuffer#removePacket(sinalgo.nodes.messages.Packet)
+	 */
+	public void removePacket(Packet p) {
+		for(int b = 0; b < buckets.length; b++) {
+			Packet[] bucket = buckets[b];
+			for(int i = 0; i < bucketSizes[b]; i++) {
+				if(bucket[i] == p) {
+					System.arraycopy(bucket, i + 1, bucket, i, bucketSizes[b] - i - 1);
+					bucket[--bucketSizes[b]] = null;
+					numPackets--;
+					return;
+				}
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.PacketBuffer#invalidatePacketsSentOverThisEdge(sinalgo.nodes.edges.Edge)
+	 */
+	public void invalidatePacketsSentOverThisEdge(Edge e) {
+		for(int b = 0; b < buckets.length; b++) {
+			Packet[] bucket = buckets[b];
+			for(int i = 0; i < bucketSizes[b]; i++) {
+				Packet p = bucket[i];
+				if(p.edge != null && p.edge.getID() == e.getID()){
+					p.positiveDelivery = false;
+					p.edge = null; // the edge may have been removed and should not be refered to anymore
+				}
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.PacketBuffer#updateMessageBuffer()
+	 */
+	public void updateMessageBuffer() {
+		// ensure that the list of packets is clean (should already be empty)
+		arrivingPackets.clear();
+		
+		long currentRound = (long) Math.floor(Global.currentTime);
+		if(numPackets == 0) {
+			// nothing to deliver, skip the empty buckets
+			baseRound = Math.max(baseRound, currentRound + 1);
+			return;
+		}
+		while(baseRound <= currentRound) {
+			Packet[] bucket = buckets[head];
+			int size = bucketSizes[head];
+			for(int i = 0; i < size; i++) {
+				Packet p = bucket[i];
+				bucket[i] = null;
+				
+				if(Configuration.interference){
+					//remove it from the global queue
+					Runtime.packetsInTheAir.remove(p);
+				}
+				if(p.edge != null) {
+					p.edge.removeMessageForThisEdge(p.message);
+				}
+				if(p.positiveDelivery){
+					//successful transmission
+					arrivingPackets.add(p);
+				} else {
+					// failed transmission, drop the package
+					if(Configuration.generateNAckMessages) {
+						p.origin.addNackPacket(p); // return the packet to the sender
+					} else {
+						Packet.free(p);
+					}
+				}
+			}
+			bucketSizes[head] = 0;
+			numPackets -= size;
+			head = (head + 1) & (buckets.length - 1);
+			baseRound++;
+			if(numPackets == 0) {
+				baseRound = Math.max(baseRound, currentRound + 1);
+				break;
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.PacketBuffer#waitingPackets()
+	 */
+	public int waitingPackets() {
+		return arrivingPackets.size();
+	}
+	
+	/* (non-Javadoc)
+	 * @see sinalgo.nodes.PacketBuffer#getInbox()
+	 */
+	public Inbox getInbox() {
+		arrivingPackets.sort();
+		if(inbox == null){
+			inbox = new Inbox(arrivingPackets);
+		}	else {
+			inbox.resetForList(arrivingPackets);
+		}
+		return inbox;
+	}
+}
@@ -457,8 +457,7 @@ public class Edge implements DoublyLinkedListEntry{
 	 */
 	public final void removeEdgeFromGraph(){
 		if(Configuration.asynchronousMode) {
-			// This is quite slow as it iterates over all pending events. However,
-			// synchronous simulations are not mobile, therefore this method is not called often.
+			// The event queue indexes its packet events per edge, only the events sent over this edge are visited.
 			Runtime.eventQueue.invalidatePacketEventsForThisEdge(this);
 		} else {
 			this.endNode.getInboxPacketBuffer().invalidatePacketsSentOverThisEdge(this);
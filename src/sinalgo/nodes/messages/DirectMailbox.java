@@ -0,0 +1,257 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package sinalgo.nodes.messages;
+
+import sinalgo.nodes.Node;
+import sinalgo.runtime.Global;
+
+/**
+ * <b>This class is framework internal and should not be used by the project developer.</b>
+ * <p>
+ * The mailbox of a node for messages that were sent through the direct delivery lane
+ * (see {@link TransferableMessage}). The mailbox stores the messages together with their
+ * meta-information in a set of parallel arrays that are used as a ring buffer, such that
+ * no objects need to be allocated per message.
+ * <p>
+ * Messages are appended in the order they are sent, and all messages of a mailbox are 
+ * sent with the same transmission time. Therefore, the messages that arrive in a given
+ * round always form a prefix of the mailbox. 
+ */
+public class DirectMailbox {
+
+	private Message[] messages;
+	private Node[] origins;
+	private double[] arrivingTimes;
+	private double[] sendingTimes;
+	private double[] intensities;
+	private long[] sequenceNumbers;
+
+	private int head = 0; // the slot of the oldest message
+	private int count = 0; // the number of messages in the mailbox
+	private int arrived = 0; // the number of messages (starting at head) that arrive in this round
+	private int removed = 0; // the number of arrived messages removed through the inbox
+
+	private Node owner; // the node this mailbox belongs to
+
+	/**
+	 * Creates a new, empty mailbox.
+	 * @param owner The node this mailbox belongs to.
+	 */
+	public DirectMailbox(Node owner) {
+		this.owner = owner;
+		allocate(8);
+	}
+
+	/**
+	 * Allocates the arrays of this mailbox with the given capacity, and copies the 
+	 * messages currently stored to the beginning of the new arrays.
+	 * @param capacity The new capacity, a power of 2.
+	 */
+	private void allocate(int capacity) {
+		Message[] m = new Message[capacity];
+		Node[] o = new Node[capacity];
+		double[] a = new double[capacity];
+		double[] s = new double[capacity];
+		double[] i = new double[capacity];
+		long[] q = new long[capacity];
+		for(int k = 0; k < count; k++) {
+			int slot = slot(k);
+			m[k] = messages[slot];
+			o[k] = origins[slot];
+			a[k] = arrivingTimes[slot];
+			s[k] = sendingTimes[slot];
+			i[k] = intensities[slot];
+			q[k] = sequenceNumbers[slot];
+		}
+		messages = m;
+		origins = o;
+		arrivingTimes = a;
+		sendingTimes = s;
+		intensities = i;
+		sequenceNumbers = q;
+		head = 0;
+	}
+
+	/**
+	 * @param index The position of a message in this mailbox, 0 being the oldest message.
+	 * @return The array slot that holds the message at the given position.
+	 */
+	private int slot(int index) {
+		return (head + index) & (messages.length - 1);
+	}
+
+	/**
+	 * Tests whether a message arriving at the given time may be appended to this mailbox
+	 * without breaking the arrival order of the messages it holds. 
+	 * @param arrivingTime The time the message arrives.
+	 * @return True if the message can be appended, otherwise false.
+	 */
+	public boolean accepts(double arrivingTime) {
+		return count == 0 || arrivingTimes[slot(count - 1)] <= arrivingTime;
+	}
+
+	/**
+	 * Appends a message to this mailbox. 
+	 * @param msg The message, which is not copied.
+	 * @param origin The sender of the message.
+	 * @param arrivingTime The time when the message arrives.
+	 * @param intensity The intensity at which the message was sent.
+	 */
+	public void add(Message msg, Node origin, double arrivingTime, double intensity) {
+		if(count == messages.length) {
+			allocate(2 * messages.length);
+		}
+		int slot = slot(count++);
+		messages[slot] = msg;
+		origins[slot] = origin;
+		arrivingTimes[slot] = arrivingTime;
+		sendingTimes[slot] = Global.currentTime;
+		intensities[slot] = intensity;
+		// packets fabricated after this call obtain a larger ID, which lets the 
+		// inbox restore the order in which packets and messages were sent.
+		sequenceNumbers[slot] = Packet.peekNextID();
+	}
+
+	/**
+	 * Determines the messages that arrive in the current round.
+	 * @return The number of messages that arrive in the current round.
+	 */
+	public int updateArrivals() {
+		arrived = 0;
+		removed = 0;
+		while(arrived < count && arrivingTimes[slot(arrived)] <= Global.currentTime) {
+			arrived++;
+		}
+		return arrived;
+	}
+
+	/**
+	 * Drops all messages that arrived in the current round from this mailbox.
+	 */
+	public void freeArrived() {
+		for(int k = 0; k < arrived; k++) {
+			int slot = slot(k);
+			messages[slot] = null;
+			origins[slot] = null;
+		}
+		head = slot(arrived);
+		count -= arrived;
+		arrived = 0;
+		removed = 0;
+	}
+
+	/**
+	 * @return The number of messages that arrive in this round and were not removed. 
+	 */
+	public int arrivedSize() {
+		return arrived - removed;
+	}
+
+	/**
+	 * @return The number of messages that arrive in this round, including removed ones.
+	 */
+	public int getNumArrived() {
+		return arrived;
+	}
+
+	/**
+	 * Removes an arriving message from this mailbox.
+	 * @param index The position of the message, 0 being the oldest message.
+	 */
+	public void remove(int index) {
+		int slot = slot(index);
+		if(messages[slot] != null) {
+			messages[slot] = null;
+			removed++;
+		}
+	}
+
+	/**
+	 * @return The node this mailbox belongs to.
+	 */
+	public Node getOwner() {
+		return owner;
+	}
+
+	/**
+	 * @param index The position of a message, 0 being the oldest message.
+	 * @return The message at the given position, null if the message was removed. 
+	 */
+	public Message getMessage(int index) {
+		return messages[slot(index)];
+	}
+
+	/**
+	 * @param index The position of a message, 0 being the oldest message.
+	 * @return The sender of the message at the given position.
+	 */
+	public Node getOrigin(int index) {
+		return origins[slot(index)];
+	}
+
+	/**
+	 * @param index The position of a message, 0 being the oldest message.
+	 * @return The time when the message at the given position arrives.
+	 */
+	public double getArrivingTime(int index) {
+		return arrivingTimes[slot(index)];
+	}
+
+	/**
+	 * @param index The position of a message, 0 being the oldest message.
+	 * @return The time when the message at the given position was sent.
+	 */
+	public double getSendingTime(int index) {
+		return sendingTimes[slot(index)];
+	}
+
+	/**
+	 * @param index The position of a message, 0 being the oldest message.
+	 * @return The intensity at which the message at the given position was sent.
+	 */
+	public double getIntensity(int index) {
+		return intensities[slot(index)];
+	}
+
+	/**
+	 * @param index The position of a message, 0 being the oldest message.
+	 * @return The ID the next packet had when the message at the given position was sent.
+	 */
+	public long getSequenceNumber(int index) {
+		return sequenceNumbers[slot(index)];
+	}
+}
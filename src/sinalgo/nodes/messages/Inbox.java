@@ -94,6 +94,9 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	 * @see java.util.Iterator#hasNext()  
 	 */
 	public boolean hasNext() {
+		if(mailbox != null) {
+			return peekedPacket != null || packetIter.hasNext() || skipRemovedMailboxEntries() < mailbox.getNumArrived();
+		}
 		if(packetIter != null) {
 			return packetIter.hasNext();
 		} else {
@@ -113,6 +116,9 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	 * @see java.util.Iterator#next() 
 	 */
 	public Message next() {
+		if(mailbox != null) {
+			return nextMerged();
+		}
 		if(packetIter != null) {
 			activePacket = packetIter.next();
 		} else {
@@ -133,6 +139,15 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	 * @see java.util.Iterator#remove()
 	 */
 	public void remove() {
+		if(activeDirect >= 0) {
+			mailbox.remove(activeDirect);
+			activeDirect = -1;
+			return;
+		}
+		if(mailbox != null && activePacket == null) {
+			// the packet iterator may point to a packet that was not yet returned
+			throw new IllegalStateException("Call to 'Inbox.remove', but there is no active message.");
+		}
 		activePacket = null;
 		if(packetIter != null) {
 			//note that this method automatically forwards the exceptions of the original
@@ -152,7 +167,11 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 		if(packetList == null) {
 			resetForPacket(singlePacket);
 		} else {
+			DirectMailbox m = mailbox;
 			resetForList(this.packetList);
+			if(m != null) {
+				attachDirectMailbox(m);
+			}
 		}
 	}
 	
@@ -162,7 +181,7 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	 */
 	public int size() {
 		if(packetList != null) {
-			return packetList.size();
+			return packetList.size() + (mailbox != null ? mailbox.arrivedSize() : 0);
 		} else {
 			if(singlePacket != null) {
 				return 1;
@@ -189,6 +208,9 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 		if(activePacket != null){
 			return activePacket.origin;
 		}
+		else if(activeDirect >= 0){
+			return mailbox.getOrigin(activeDirect);
+		}
 		else{
 			throw new IllegalStateException("Call to 'Inbox.getSender', but there is no active packet.");
 		}
@@ -206,6 +228,9 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 		if(activePacket != null){
 			return activePacket.destination;
 		}
+		else if(activeDirect >= 0){
+			return mailbox.getOwner();
+		}
 		else{
 			throw new IllegalStateException("Call to 'Inbox.getReceiver', but there is no active packet.");
 		}
@@ -222,6 +247,8 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	public double getArrivingTime() {
 		if(activePacket != null) {
 			return activePacket.arrivingTime;
+		} else if(activeDirect >= 0) {
+			return mailbox.getArrivingTime(activeDirect);
 		} else {
 			throw new IllegalStateException("Call to 'Inbox.getArrivingTime', but there is no active packet.");
 		}
@@ -237,6 +264,8 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	public double getIntensity() {
 		if(activePacket != null) {
 			return activePacket.intensity;
+		} else if(activeDirect >= 0) {
+			return mailbox.getIntensity(activeDirect);
 		} else {
 			throw new IllegalStateException("Call to 'Inbox.getIntensitiy', but there is no active packet.");
 		}
@@ -252,6 +281,8 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	public double getSendingTime() {
 		if(activePacket != null) {
 			return activePacket.sendingTime;
+		} else if(activeDirect >= 0) {
+			return mailbox.getSendingTime(activeDirect);
 		} else {
 			throw new IllegalStateException("Call to 'Inbox.getSendingTime', but there is no active packet.");
 		}
@@ -264,6 +295,8 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	public Edge getIncomingEdge() {
 		if(activePacket != null) {
 			return activePacket.edge; 
+		} else if(activeDirect >= 0) {
+			return null; // direct messages are not sent over an edge
 		} else {
 			throw new IllegalStateException("Call to 'Inbox.getSendingTime', but there is no active packet.");
 		}
@@ -284,6 +317,57 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	private Packet activePacket = null; // The actual packet to return the information for.
 	private AbstractList<Packet> packetList; //the packet list
 	private Packet singlePacket = null; // if the inbox is initialized for a single packet, it is stored here.
+	private DirectMailbox mailbox = null; // the mailbox of messages sent through the direct lane, if attached
+	private int mailboxPos = 0; // the position of the next mailbox entry to consider
+	private int activeDirect = -1; // the mailbox position of the actual message, if it is a direct message
+	private Packet peekedPacket = null; // a packet taken from the packet iterator, but not yet returned
+	
+	/**
+	 * Returns the next message when a direct mailbox is attached. Packets and direct messages
+	 * are merged according to their arriving time, and according to the order in which they 
+	 * were sent if they arrive at the same time. 
+	 * @return The next message. 
+	 */
+	private Message nextMerged() {
+		activePacket = null;
+		activeDirect = -1;
+		if(peekedPacket == null && packetIter.hasNext()) {
+			peekedPacket = packetIter.next();
+		}
+		int index = skipRemovedMailboxEntries();
+		if(peekedPacket != null && (index >= mailbox.getNumArrived() || precedes(peekedPacket, index))) {
+			activePacket = peekedPacket;
+			peekedPacket = null;
+			return activePacket.message;
+		}
+		if(index >= mailbox.getNumArrived()) {
+			throw new IllegalStateException("Call to 'Inbox.next', even though hasNext() returned false.");
+		}
+		activeDirect = index;
+		mailboxPos = index + 1;
+		return mailbox.getMessage(index);
+	}
+	
+	/**
+	 * @param p A packet of this inbox
+	 * @param index The position of a message in the attached mailbox
+	 * @return True if the packet needs to be returned before the mailbox message.
+	 */
+	private boolean precedes(Packet p, int index) {
+		double time = mailbox.getArrivingTime(index);
+		return p.arrivingTime < time || (p.arrivingTime == time && p.ID < mailbox.getSequenceNumber(index));
+	}
+	
+	/**
+	 * Advances the mailbox position over messages that were removed from the mailbox.
+	 * @return The position of the next mailbox message that was not removed.
+	 */
+	private int skipRemovedMailboxEntries() {
+		while(mailboxPos < mailbox.getNumArrived() && mailbox.getMessage(mailboxPos) == null) {
+			mailboxPos++;
+		}
+		return mailboxPos;
+	}
 	
 	/**
 	 * <b>This is a framework internal method. Project developers should not need to call this method.</b><br>
@@ -292,6 +376,12 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 	 */
 	public void freePackets(){
 		activePacket = null;
+		activeDirect = -1;
+		peekedPacket = null;
+		if(mailbox != null) {
+			mailbox.freeArrived();
+			mailbox = null;
+		}
 		if(packetList != null) {
 			Iterator<Packet> packetIter = packetList.iterator();
 			while(packetIter.hasNext()){
@@ -342,6 +432,23 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 		activePacket = null;
 		packetIter = packetList.iterator();
 		singlePacket = null;
+		mailbox = null;
+		activeDirect = -1;
+		peekedPacket = null;
+		return this;
+	}
+	
+	/**
+	 * <b>This is a framework internal method. Project developers should not need to call this method.</b><br>
+	 * Adds the messages of a direct mailbox that arrive in this round to this inbox. This inbox 
+	 * needs to be reset for a list of packets before. 
+	 * @param m The mailbox whose arriving messages are included in this inbox.
+	 * @return This inbox instance.
+	 */
+	public Inbox attachDirectMailbox(DirectMailbox m) {
+		mailbox = m;
+		mailboxPos = 0;
+		activeDirect = -1;
 		return this;
 	}
 	
@@ -356,6 +463,9 @@ public class Inbox implements ReusableIterator<Message>, Iterable<Message> {
 		activePacket = null;
 		packetIter = null;
 		singlePacket = p;
+		mailbox = null;
+		activeDirect = -1;
+		peekedPacket = null;
 		return this;
 	}
 }
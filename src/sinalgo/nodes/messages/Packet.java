@@ -212,6 +212,13 @@ public final class Packet implements DoublyLinkedListEntry, Comparable<Packet> {
 		}
 		return nextID++;//implicit post-increment
 	}
+
+	/**
+	 * @return The ID the next fabricated packet will obtain, without consuming it.
+	 */
+	static long peekNextID(){
+		return nextID;
+	}
 	
 	/**
 	 * This is a stack containing all the unused packet instances. To reduce the garbage collection time,
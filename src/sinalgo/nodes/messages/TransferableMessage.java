@@ -0,0 +1,56 @@
+/*
+ Copyright (c) 2007, Distributed Computing Group (DCG)
+                    ETH Zurich
+                    Switzerland
+                    dcg.ethz.ch
+
+ All rights reserved.
+
+ Redistribution and use in source and binary forms, with or without
+ modification, are permitted provided that the following conditions
+ are met:
+
+ - Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+ - Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the
+   distribution.
+
+ - Neither the name 'Sinalgo' nor the names of its contributors may be
+   used to endorse or promote products derived from this software
+   without specific prior written permission.
+
+ THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package sinalgo.nodes.messages;
+
+/**
+ * Marker interface for message types whose instances are never modified after they
+ * have been sent, or whose ownership is handed over to the receiver by the sender.
+ * <p>
+ * In synchronous simulation mode with a constant message transmission time, messages 
+ * implementing this interface that are sent with <code>Node.sendDirect()</code> take
+ * a direct delivery lane: they are neither cloned nor wrapped in a <code>Packet</code>,
+ * but placed in a lightweight mailbox of the receiver and handed to the receiver's
+ * inbox in the round they arrive. The order in which the receiver sees its messages
+ * is the same as if they had been sent as packets.
+ * <p>
+ * By implementing this interface, a message type promises that the sender neither 
+ * modifies nor reuses an instance after it was sent. Consequently, the <code>clone()</code>
+ * method of such a message is not called when the direct lane is taken.
+ */
+public interface TransferableMessage {
+
+}
@@ -38,6 +38,7 @@ package sinalgo.runtime.events;
 
 
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.TreeSet;
@@ -45,16 +46,29 @@ import java.util.Vector;
 
 import sinalgo.nodes.Node;
 import sinalgo.nodes.edges.Edge;
+import sinalgo.tools.storage.DoublyLinkedList;
 
 /**
  * The queue that stores the events of the asynchronous mode. The entries (events) are sorted according to 
  * their execution time so that the first node in the list is the next to execute.
+ * <p>
+ * Besides the sorted set, the queue keeps secondary indices of the events per executing node, 
+ * of the packet events per sending node and of the packet events per edge. Thus, removing all 
+ * events of a node or invalidating all packets of an edge only touches the events concerned, 
+ * instead of traversing the entire queue.
  */
 @SuppressWarnings("serial")
 public class EventQueue extends TreeSet<Event> {
 	
 	private Vector<EventQueueListener> listeners = new Vector<EventQueueListener>(5);
 	
+	// the node events, indexed by the ID of the node on which they execute
+	private HashMap<Integer, DoublyLinkedList<Event>> eventsByNode = new HashMap<Integer, DoublyLinkedList<Event>>();
+	// the packet events, indexed by the ID of the node that sent the packet
+	private HashMap<Integer, DoublyLinkedList<Event>> packetEventsBySender = new HashMap<Integer, DoublyLinkedList<Event>>();
+	// the packet events, indexed by the ID of the edge over which the packet is sent
+	private HashMap<Long, DoublyLinkedList<Event>> packetEventsByEdge = new HashMap<Long, DoublyLinkedList<Event>>();
+	
 	/**
 	 * The number of events that have been taken out of the eventQueue. Gets automatically
 	 * reset with every getNextEvent call.
@@ -109,22 +123,23 @@ public class EventQueue extends TreeSet<Event> {
 	public void removeAllEventsForThisNode(Node n){
 		boolean changed = false;
 		
-		Iterator<Event> eventIter = iterator();
-		while(eventIter.hasNext()){
-			Event e = eventIter.next();
-			if(e.isNodeEvent() && n.equals(e.getEventNode())) {
+		DoublyLinkedList<Event> nodeEvents = eventsByNode.remove(n.ID);
+		if(nodeEvents != null) {
+			Event e = nodeEvents.pop();
+			while(e != null) {
 				// an event that would execute on this node
-				eventIter.remove();
+				removeFromSet(e);
 				e.free(); // free the event (and also the packet, if it's a packet event)
 				changed = true;
-			} else {
-				// test whether it's a msg event sent by this node, then invalidate
-				if(e instanceof PacketEvent) {
-					PacketEvent pe = (PacketEvent) e;
-					if(pe.packet.origin.equals(n)) {
-						pe.packet.denyDelivery();
-					}
-				}
+				e = nodeEvents.pop();
+			}
+		}
+		
+		// the messages sent by this node are invalidated, but remain in the queue
+		DoublyLinkedList<Event> sentEvents = packetEventsBySender.get(n.ID);
+		if(sentEvents != null) {
+			for(Event e : sentEvents) {
+				((PacketEvent) e).packet.denyDelivery();
 			}
 		}
 		
@@ -144,16 +159,16 @@ public class EventQueue extends TreeSet<Event> {
 	public void invalidatePacketEventsForThisEdge(Edge toDelFor){
 		boolean changed = false;
 		
-		Iterator<Event> eventIter = iterator();
-		while(eventIter.hasNext()){
-			Event eventInQueue = eventIter.next();
-			if(eventInQueue instanceof PacketEvent){
-				PacketEvent pe = (PacketEvent) eventInQueue;
-				if(pe.packet.edge != null && toDelFor.getID() == pe.packet.edge.getID()) {
-					pe.packet.positiveDelivery = false;
-					pe.packet.edge = null; // the edge may not exist anymore
-					changed = true;
-				}
+		DoublyLinkedList<Event> edgeEvents = packetEventsByEdge.remove(toDelFor.getID());
+		if(edgeEvents != null) {
+			Event e = edgeEvents.pop();
+			while(e != null) {
+				PacketEvent pe = (PacketEvent) e;
+				pe.packet.positiveDelivery = false;
+				pe.packet.edge = null; // the edge may not exist anymore
+				pe.indexedEdgeID = -1;
+				changed = true;
+				e = edgeEvents.pop();
 			}
 		}
 		
@@ -166,20 +181,16 @@ public class EventQueue extends TreeSet<Event> {
 	 * Removes all events related with a node (packet events and node-timer events).
 	 */
 	public void pruneAllNodeEvents() {
-		EventQueue eq = new EventQueue();
-		eq.listeners = this.listeners; // inherit the listeners
-
-		Iterator<Event> eventIter = iterator();
-		while(eventIter.hasNext()){
-			Event e = eventIter.next();
-			if(e.isNodeEvent()) {
+		HashMap<Integer, DoublyLinkedList<Event>> nodeIndex = eventsByNode;
+		eventsByNode = new HashMap<Integer, DoublyLinkedList<Event>>(); // detach, as the removal below updates the index
+		for(DoublyLinkedList<Event> nodeEvents : nodeIndex.values()) {
+			Event e = nodeEvents.pop();
+			while(e != null) {
+				removeFromSet(e);
 				e.free(); // also frees a corresponding packet event, inclusive the packet
-			} else {
-				eq.add(e);
+				e = nodeEvents.pop();
 			}
 		}
-		super.clear(); // kill this set
-		sinalgo.runtime.Runtime.eventQueue = eq; // replace the event queue
 		notifyListeners(); 
 	}
 	
@@ -193,7 +204,7 @@ public class EventQueue extends TreeSet<Event> {
 			e.drop();
 			e.free(); // free the event resources
 		}
-		super.clear(); // remove all events
+		clear(); // remove all events
 		notifyListeners(); 
 	}
 	
@@ -237,6 +248,119 @@ public class EventQueue extends TreeSet<Event> {
 		listeners.remove(eqList);
 	}
 	
+	/**
+	 * Adds an event to this queue and to the secondary indices.
+	 * @see java.util.TreeSet#add(java.lang.Object)
+	 */
+	public boolean add(Event e) {
+		if(!super.add(e)) {
+			return false;
+		}
+		if(e.isNodeEvent()) {
+			getIndexList(eventsByNode, e.getEventNode().ID).append(e);
+		}
+		if(e instanceof PacketEvent) {
+			PacketEvent pe = (PacketEvent) e;
+			if(pe.packet.origin != null) {
+				getIndexList(packetEventsBySender, pe.packet.origin.ID).append(e);
+			}
+			if(pe.packet.edge != null) {
+				pe.indexedEdgeID = pe.packet.edge.getID();
+				getIndexList(packetEventsByEdge, pe.indexedEdgeID).append(e);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Removes an event from this queue and from the secondary indices.
+	 * @see java.util.TreeSet#remove(java.lang.Object)
+	 */
+	public boolean remove(Object o) {
+		if(!super.remove(o)) {
+			return false;
+		}
+		removeFromIndices((Event) o);
+		return true;
+	}
+	
+	/**
+	 * Removes all events from this queue and clears the secondary indices.
+	 * The events are not freed.
+	 * @see java.util.TreeSet#clear()
+	 */
+	public void clear() {
+		super.clear();
+		clearIndex(eventsByNode);
+		clearIndex(packetEventsBySender);
+		clearIndex(packetEventsByEdge);
+	}
+	
+	/**
+	 * Removes an event only from the sorted set, and from the indices 
+	 * of which it is still an entry.
+	 * @param e The event to remove
+	 */
+	private void removeFromSet(Event e) {
+		super.remove(e);
+		removeFromIndices(e);
+	}
+	
+	/**
+	 * Removes an event from all secondary indices it is contained in.
+	 * @param e The event to remove
+	 */
+	private void removeFromIndices(Event e) {
+		if(e.isNodeEvent()) {
+			removeFromIndexList(eventsByNode, e.getEventNode().ID, e);
+		}
+		if(e instanceof PacketEvent) {
+			PacketEvent pe = (PacketEvent) e;
+			if(pe.packet.origin != null) {
+				removeFromIndexList(packetEventsBySender, pe.packet.origin.ID, e);
+			}
+			if(pe.indexedEdgeID != -1) {
+				removeFromIndexList(packetEventsByEdge, pe.indexedEdgeID, e);
+				pe.indexedEdgeID = -1;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the list of events stored for the given key, creates it if necessary.
+	 */
+	private static <K> DoublyLinkedList<Event> getIndexList(HashMap<K, DoublyLinkedList<Event>> index, K key) {
+		DoublyLinkedList<Event> list = index.get(key);
+		if(list == null) {
+			list = new DoublyLinkedList<Event>(true);
+			index.put(key, list);
+		}
+		return list;
+	}
+	
+	/**
+	 * Removes an event from the list stored for the given key, and drops the list once it is empty.
+	 */
+	private static <K> void removeFromIndexList(HashMap<K, DoublyLinkedList<Event>> index, K key, Event e) {
+		DoublyLinkedList<Event> list = index.get(key);
+		if(list != null) {
+			list.remove(e);
+			if(list.isEmpty()) {
+				index.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * Empties all lists of an index, such that the events release their fingers. 
+	 */
+	private static <K> void clearIndex(HashMap<K, DoublyLinkedList<Event>> index) {
+		for(DoublyLinkedList<Event> list : index.values()) {
+			while(list.pop() != null) {}
+		}
+		index.clear();
+	}
+	
 	public Iterator<Event> iterator(){
 		return new EventIter(super.iterator());
 	}
@@ -265,6 +389,7 @@ public class EventQueue extends TreeSet<Event> {
 
 		public void remove() {
 			iter.remove();
+			removeFromIndices(current);
 		}
 	}
 	
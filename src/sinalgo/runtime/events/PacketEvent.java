@@ -72,6 +72,12 @@ public class PacketEvent extends Event {
 	 */
 	public Packet packet;
 	
+	/**
+	 * The ID of the edge under which the event queue indexed this event, -1 if it is not indexed by edge.
+	 * The packet's edge may be reset while the event is pending, the index key must not change though.
+	 */
+	long indexedEdgeID = -1;
+	
 	/**
 	 * Creates a new PacketEvent for a given packet, a given time and a given node. This event
 	 * represents that the packet reaches eventNode at time. 